@@ -45,21 +45,44 @@ CREATE TABLE `file` (
   `original_name` varchar(255) NOT NULL COMMENT '原始文件名',
   `content_type` varchar(100) DEFAULT NULL COMMENT '文件类型（MIME类型）',
   `file_size` bigint DEFAULT NULL COMMENT '文件大小（字节）',
-  `file_path` varchar(500) DEFAULT NULL COMMENT '服务器存储路径（绝对路径）',
+  `file_path` varchar(500) DEFAULT NULL COMMENT '存储路径：volume://卷编码/相对路径（旧数据为绝对路径）',
   `access_path` varchar(500) DEFAULT NULL COMMENT '访问文件的相对路径/URL',
   `upload_time` datetime NOT NULL COMMENT '上传时间',
   `is_chunked` tinyint(1) NOT NULL DEFAULT '0' COMMENT '是否为分片上传',
   `total_chunks` int DEFAULT NULL COMMENT '分片总数',
   `chunk_size` bigint DEFAULT NULL COMMENT '分片大小（字节）',
   `upload_id` varchar(255) DEFAULT NULL COMMENT '上传会话ID（分片上传使用）',
+  `content_hash` char(64) DEFAULT NULL COMMENT '内容哈希（SHA-256）',
   `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
   `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
   `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
   PRIMARY KEY (`id`),
-  KEY `idx_upload_time` (`upload_time`),
-  KEY `idx_content_type` (`content_type`)
+  KEY `idx_deleted_upload_time` (`is_deleted`, `upload_time`, `id`),
+  KEY `idx_deleted_type_upload_time` (`is_deleted`, `content_type`, `upload_time`, `id`),
+  KEY `idx_deleted_chunked_upload_time` (`is_deleted`, `is_chunked`, `upload_time`, `id`),
+  KEY `idx_content_hash` (`content_hash`),
+  KEY `idx_file_path` (`file_path`),
+  KEY `idx_update_time` (`update_time`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件表';
 
+-- ----------------------------
+-- 2.1 文件内容表（按内容哈希去重，引用计数）
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_file_blob`;
+CREATE TABLE `sys_file_blob` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `content_hash` char(64) NOT NULL COMMENT '内容哈希（SHA-256）',
+  `file_size` bigint NOT NULL COMMENT '文件大小（字节）',
+  `file_path` varchar(500) NOT NULL COMMENT '存储路径：volume://卷编码/相对路径（旧数据为绝对路径）',
+  `ref_count` int NOT NULL DEFAULT '1' COMMENT '引用该内容的文件记录数',
+  `rag_file_id` bigint DEFAULT NULL COMMENT '持有RAG片段的文件ID',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_content_hash` (`content_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件内容表（内容去重）';
+
 -- ----------------------------
 -- 3. 文件片段表（RAG文档切片）
 -- ----------------------------
@@ -79,6 +102,113 @@ CREATE TABLE `file_chunk` (
   KEY `idx_file_id` (`file_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件片段表（RAG文档切片）';
 
+-- ----------------------------
+-- 3.1 RAG入库任务表
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_file_ingest_job`;
+CREATE TABLE `sys_file_ingest_job` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `file_id` bigint NOT NULL COMMENT '文件ID',
+  `status` varchar(20) NOT NULL DEFAULT 'QUEUED' COMMENT '任务状态：QUEUED/PARSING/EMBEDDING/INDEXED/FAILED',
+  `total_chunks` int NOT NULL DEFAULT '0' COMMENT '文本片段总数',
+  `processed_chunks` int NOT NULL DEFAULT '0' COMMENT '已处理片段数',
+  `attempts` int NOT NULL DEFAULT '0' COMMENT '执行次数',
+  `owner_node` varchar(64) DEFAULT NULL COMMENT '执行节点',
+  `lease_until` bigint DEFAULT NULL COMMENT '租约到期时间（毫秒时间戳）',
+  `error_message` varchar(500) DEFAULT NULL COMMENT '失败原因',
+  `start_time` datetime DEFAULT NULL COMMENT '开始执行时间',
+  `finish_time` datetime DEFAULT NULL COMMENT '结束时间',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  KEY `idx_file_id` (`file_id`),
+  KEY `idx_status_create_time` (`status`, `create_time`),
+  KEY `idx_status_lease_until` (`status`, `lease_until`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='RAG入库任务表';
+
+-- ----------------------------
+-- 3.2 文件访问令牌撤销表
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_file_token_revocation`;
+CREATE TABLE `sys_file_token_revocation` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `revoke_type` varchar(10) NOT NULL COMMENT '撤销类型：TOKEN-单个令牌，FILE-文件的全部令牌',
+  `target` varchar(64) NOT NULL COMMENT '撤销目标：令牌ID或文件ID',
+  `revoked_at` bigint NOT NULL COMMENT '撤销时间（毫秒时间戳）',
+  `expires_at` bigint NOT NULL COMMENT '记录失效时间（毫秒时间戳）',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  KEY `idx_revoked_at` (`revoked_at`),
+  KEY `idx_expires_at` (`expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件访问令牌撤销表';
+
+-- ----------------------------
+-- 3.3 文件清理任务表
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_file_purge_task`;
+CREATE TABLE `sys_file_purge_task` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `file_id` bigint NOT NULL COMMENT '已删除的文件ID',
+  `rag_file_id` bigint DEFAULT NULL COMMENT '需要删除片段和向量的文件ID',
+  `file_path` varchar(500) DEFAULT NULL COMMENT '需要删除的存储路径',
+  `is_chunked` tinyint(1) NOT NULL DEFAULT '0' COMMENT '是否为分片上传',
+  `upload_id` varchar(64) DEFAULT NULL COMMENT '上传会话ID',
+  `status` varchar(10) NOT NULL COMMENT '状态：PENDING-待清理，FAILED-多次重试后失败',
+  `attempts` int NOT NULL DEFAULT '0' COMMENT '已尝试次数',
+  `next_attempt_at` bigint NOT NULL COMMENT '下次可执行时间（毫秒时间戳，领取后作为租约）',
+  `claim_token` varchar(64) DEFAULT NULL COMMENT '领取批次标识',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_next` (`status`, `next_attempt_at`),
+  KEY `idx_claim_token` (`claim_token`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件清理任务表';
+
+-- ----------------------------
+-- 3.4 存储卷表
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_storage_volume`;
+CREATE TABLE `sys_storage_volume` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `volume_code` varchar(32) NOT NULL COMMENT '卷编码（文件存储路径 volume://卷编码/相对路径 中引用）',
+  `root_path` varchar(500) NOT NULL COMMENT '根目录（绝对路径）',
+  `weight` int NOT NULL DEFAULT '1' COMMENT '分配权重',
+  `status` varchar(10) NOT NULL DEFAULT 'ACTIVE' COMMENT '状态：ACTIVE-可写入，READONLY-只读',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_volume_code` (`volume_code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='存储卷表';
+
+-- ----------------------------
+-- 3.5 文件存储层级表
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_file_tier`;
+CREATE TABLE `sys_file_tier` (
+  `id` bigint NOT NULL COMMENT '主键ID（雪花算法生成）',
+  `storage_path` varchar(500) NOT NULL COMMENT '存储路径（与 file.file_path 一致，去重文件共用一条记录）',
+  `tier` varchar(10) NOT NULL DEFAULT 'HOT' COMMENT '存储层级：HOT-主存储卷，COLD-压缩归档',
+  `access_count` bigint NOT NULL DEFAULT '0' COMMENT '累计访问次数（内存计数后批量写入）',
+  `last_access_at` bigint NOT NULL DEFAULT '0' COMMENT '最近访问时间（毫秒时间戳）',
+  `file_size` bigint DEFAULT NULL COMMENT '原始大小（字节）',
+  `archive_path` varchar(500) DEFAULT NULL COMMENT '归档文件路径（绝对路径）',
+  `archived_size` bigint DEFAULT NULL COMMENT '归档后大小（字节）',
+  `archived_at` bigint DEFAULT NULL COMMENT '归档时间（毫秒时间戳）',
+  `data_modified_at` bigint DEFAULT NULL COMMENT '原数据文件修改时间（恢复时还原）',
+  `create_time` datetime NOT NULL COMMENT '创建时间（自动填充）',
+  `update_time` datetime NOT NULL COMMENT '修改时间（自动填充）',
+  `is_deleted` int NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-删除（自动填充）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_storage_path` (`storage_path`),
+  KEY `idx_tier` (`tier`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件存储层级表';
+
 -- ----------------------------
 -- 4. 用户表
 -- ----------------------------
@@ -226,11 +356,14 @@ SELECT 1, id FROM `sys_menu`;
    - 存储文件元数据
    - 支持分片上传
    - 文件访问路径管理
+   - 按内容哈希去重：相同内容共享 sys_file_blob 中的物理文件和RAG片段
+   - 访问令牌为 HMAC 签名令牌，服务端只在 sys_file_token_revocation 中保存有界的撤销记录
 
 3. file_chunk - 文件片段表
    - 用于RAG（检索增强生成）文档切片
    - 将大文档分割成可检索的片段
    - 记录每个片段的位置信息
+   - 由 sys_file_ingest_job 异步入库（上传请求不等待向量化）
 
 4. sys_user - 用户表
    - 存储系统用户信息
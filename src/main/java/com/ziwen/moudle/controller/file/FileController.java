@@ -1,28 +1,62 @@
 package com.ziwen.moudle.controller.file;
 
 import com.ziwen.moudle.common.AjaxResult;
+import com.ziwen.moudle.dto.file.FileListItemDTO;
+import com.ziwen.moudle.dto.file.FileQueryDTO;
 import com.ziwen.moudle.entity.file.FileEntity;
-import com.ziwen.moudle.mapper.file.FileChunkMapper;
+import com.ziwen.moudle.entity.file.FileIngestJobEntity;
+import com.ziwen.moudle.service.file.ChunkUploadService;
+import com.ziwen.moudle.service.file.FileBlobService;
+import com.ziwen.moudle.service.file.FileIngestService;
+import com.ziwen.moudle.service.file.FilePreviewService;
+import com.ziwen.moudle.service.file.FilePurgeService;
+import com.ziwen.moudle.service.file.FileSearchService;
 import com.ziwen.moudle.service.file.FileService;
-import com.ziwen.moudle.utils.FileUploadUtil;
+import com.ziwen.moudle.service.file.FileStorageService;
+import com.ziwen.moudle.service.file.FileTierService;
+import com.ziwen.moudle.service.file.FileTokenRevocationService;
+import com.ziwen.moudle.service.file.StorageVolumeService;
+import com.ziwen.moudle.utils.BandwidthScheduler;
+import com.ziwen.moudle.utils.ContentHashUtil;
 import com.ziwen.moudle.utils.FileAccessSessionManager;
+import com.ziwen.moudle.utils.FileContentSource;
+import com.ziwen.moudle.utils.FileTransferUtil;
+import com.ziwen.moudle.utils.HotFileCache;
+import com.ziwen.moudle.utils.HttpRangeUtil;
+import com.ziwen.moudle.utils.MemoryFileSource;
 import com.ziwen.moudle.utils.MimeTypeUtils;
+import com.ziwen.moudle.utils.MultipartStreamReader;
+import com.ziwen.moudle.utils.SegmentIndex;
+import com.ziwen.moudle.utils.SingleFileSource;
+import com.ziwen.moudle.utils.ZipStreamWriter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 文件管理 REST API
@@ -36,12 +70,19 @@ import java.util.UUID;
 public class FileController {
 
     private final FileService fileService;
-    private final FileUploadUtil fileUploadUtil;
     private final FileAccessSessionManager sessionManager;
-    private final com.ziwen.moudle.service.file.FileChunkingService fileChunkingService;
-
-    @Autowired
-    private FileChunkMapper chunkMapper;
+    private final FileStorageService fileStorageService;
+    private final ChunkUploadService chunkUploadService;
+    private final FileBlobService fileBlobService;
+    private final FileIngestService fileIngestService;
+    private final FileTokenRevocationService fileTokenRevocationService;
+    private final HotFileCache hotFileCache;
+    private final FileSearchService fileSearchService;
+    private final StorageVolumeService storageVolumeService;
+    private final FilePurgeService filePurgeService;
+    private final BandwidthScheduler bandwidthScheduler;
+    private final FilePreviewService filePreviewService;
+    private final FileTierService fileTierService;
 
     /** 允许上传的文件类型 */
     @Value("${file.upload.allowed-types}")
@@ -55,70 +96,28 @@ public class FileController {
     @Value("${file.upload.chunk.size:1048576}") // 默认1MB
     private long chunkSize;
 
+    /** 单个文件最大大小（流式上传不经过容器的 multipart 解析，需自行校验） */
+    @Value("${spring.servlet.multipart.max-file-size:4096MB}")
+    private DataSize maxFileSize;
+
+    /** 预览图未生成时请求等待的最长时间（毫秒） */
+    @Value("${file.preview.wait-millis:5000}")
+    private long previewWaitMillis;
+
+    /** 批量打包下载单次最多文件数 */
+    @Value("${file.archive.max-files:1000}")
+    private int maxArchiveFiles;
+
     /**
-     * 自动分片处理
+     * 自动分片处理：不复制数据，只为已写入的文件写入分段索引（校验值已在上传时边读边算，不重新读取文件）
      *
      * @param sourceFile 源文件
-     * @param fileId 文件ID
-     * @param chunkSize 分片大小
+     * @param segments 上传时累计的分段校验值
      * @return 分片数量
      * @throws IOException 分片失败
      */
-    private int autoChunkFile(File sourceFile, Long fileId, long chunkSize) throws IOException {
-        // 生成临时分片目录
-        String tempDirPath = fileUploadUtil.getUploadRootPath() + "temp/" + fileId + "/";
-        File tempDir = new File(tempDirPath);
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-
-        int totalChunks = 0;
-        try (FileInputStream fis = new FileInputStream(sourceFile)) {
-            byte[] buffer = new byte[(int) chunkSize];
-            int bytesRead;
-            int chunkNumber = 0;
-
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                // 保存分片文件
-                File chunkFile = new File(tempDirPath + chunkNumber);
-                try (FileOutputStream fos = new FileOutputStream(chunkFile)) {
-                    fos.write(buffer, 0, bytesRead);
-                }
-
-                chunkNumber++;
-                totalChunks++;
-            }
-        }
-
-        return totalChunks;
-    }
-
-    /**
-     * 自动合并分片文件
-     *
-     * @param fileId 文件ID
-     * @param totalChunks 分片总数
-     * @return 合并后的临时文件
-     * @throws IOException 合并失败
-     */
-    private File autoMergeChunks(Long fileId, int totalChunks) throws IOException {
-        String tempDirPath = fileUploadUtil.getUploadRootPath() + "temp/" + fileId + "/";
-        String mergedFileName = "merged_" + fileId;
-        File mergedFile = new File(tempDirPath + mergedFileName);
-
-        try (FileOutputStream fos = new FileOutputStream(mergedFile)) {
-            for (int i = 0; i < totalChunks; i++) {
-                File chunkFile = new File(tempDirPath + i);
-                if (!chunkFile.exists()) {
-                    throw new IOException("分片文件不存在：" + chunkFile.getAbsolutePath());
-                }
-
-                // 读取分片并写入合并文件
-                Files.copy(chunkFile.toPath(), fos);
-            }
-        }
-
-        return mergedFile;
+    private int autoChunkFile(File sourceFile, SegmentIndex.Builder segments) throws IOException {
+        return fileStorageService.writeSegmentIndex(sourceFile, segments.build());
     }
 
     /**
@@ -163,17 +162,151 @@ public class FileController {
             if (file == null) {
                 return AjaxResult.error("文件不存在");
             }
-            // 删除旧的片段和向量
-            chunkMapper.deleteByFileId(fileId);
-            // 重新处理
-            fileChunkingService.processFile(file);
-            return AjaxResult.success("重新向量化成功");
+            // 提交入库任务（任务执行时先删除旧的片段和向量）
+            return AjaxResult.success("已提交重新向量化任务", fileIngestService.submit(file));
         } catch (Exception e) {
             log.error("重新向量化失败", e);
             return AjaxResult.error("重新向量化失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 查询文件的 RAG 入库进度（最近一次任务）
+     */
+    @GetMapping("/ingest/{fileId}")
+    public AjaxResult getIngestStatus(@PathVariable Long fileId) {
+        FileIngestJobEntity job = fileIngestService.getLatestJob(fileId);
+        if (job == null) {
+            return AjaxResult.warn("文件没有入库任务，ID：" + fileId);
+        }
+        return AjaxResult.success(job);
+    }
+
+    /**
+     * 缓存统计：热点小文件内容缓存、文件元信息缓存（命中率、占用等）
+     */
+    @GetMapping("/cache/stats")
+    public AjaxResult getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("content", hotFileCache.getStats());
+        stats.put("metadata", fileService.getCacheStats());
+        stats.put("preview", filePreviewService.getStats());
+        return AjaxResult.success(stats);
+    }
+
+    /**
+     * 下载带宽调度统计（交互类 / 批量类的排队数、吞吐率、平均等待时间）
+     */
+    @GetMapping("/bandwidth/stats")
+    public AjaxResult getBandwidthStats() {
+        return AjaxResult.success(bandwidthScheduler.getStats());
+    }
+
+    /**
+     * 文件清理进度（待清理 / 失败任务数，已清理的文件、片段、向量数）
+     */
+    @GetMapping("/purge/stats")
+    public AjaxResult getPurgeStats() {
+        return AjaxResult.success(filePurgeService.getStats());
+    }
+
+    /**
+     * 重试多次失败的清理任务
+     */
+    @PostMapping("/purge/retry")
+    public AjaxResult retryFailedPurges() {
+        return AjaxResult.success("已重置 " + filePurgeService.retryFailed() + " 个清理任务");
+    }
+
+    /**
+     * 冷热分层统计（主存储命中率、恢复次数和耗时、归档释放的空间、各层级文件数）
+     */
+    @GetMapping("/tier/stats")
+    public AjaxResult getTierStats() {
+        return AjaxResult.success(fileTierService.getStats());
+    }
+
+    /**
+     * 立即执行一批归档（不等待定时任务）
+     */
+    @PostMapping("/tier/archive")
+    public AjaxResult archiveColdFiles() {
+        if (!fileTierService.isEnabled()) {
+            return AjaxResult.warn("冷热分层未启用");
+        }
+        return AjaxResult.success("已归档 " + fileTierService.runArchive() + " 个文件");
+    }
+
+    /**
+     * 存储卷列表（状态、权重、磁盘空间）
+     */
+    @GetMapping("/storage/volumes")
+    public AjaxResult listVolumes() {
+        return AjaxResult.success(storageVolumeService.getVolumeStats());
+    }
+
+    /**
+     * 登记新的存储卷（新磁盘），之后的新文件按权重分散到各卷
+     */
+    @PostMapping("/storage/volumes")
+    public AjaxResult addVolume(@RequestParam String volumeCode,
+                                @RequestParam String rootPath,
+                                @RequestParam(defaultValue = "1") int weight) {
+        try {
+            storageVolumeService.addVolume(volumeCode, rootPath, weight);
+            return AjaxResult.success("存储卷登记成功");
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * 修改存储卷：迁移挂载点后修改根目录，调整权重，或设为只读（READONLY）停止分配新文件
+     */
+    @PutMapping("/storage/volumes/{volumeCode}")
+    public AjaxResult updateVolume(@PathVariable String volumeCode,
+                                   @RequestParam(required = false) String rootPath,
+                                   @RequestParam(required = false) Integer weight,
+                                   @RequestParam(required = false) String status) {
+        try {
+            if (!storageVolumeService.updateVolume(volumeCode, rootPath, weight, status)) {
+                return AjaxResult.warn("存储卷不存在：" + volumeCode);
+            }
+            return AjaxResult.success("存储卷修改成功");
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * 迁移旧版自动分片：为仍保留数据文件的分片文件生成分段索引，删除重复的分片文件
+     * 按ID顺序分批读取分片存储的文件，不一次加载全表
+     */
+    @PostMapping("/storage/compact")
+    public AjaxResult compactStorage() {
+        int batchSize = 500;
+        int migrated = 0;
+        long reclaimed = 0;
+        long afterId = 0;
+        List<FileEntity> batch;
+        do {
+            batch = fileService.listChunkedFilesAfter(afterId, batchSize);
+            for (FileEntity file : batch) {
+                afterId = file.getId();
+                try {
+                    long bytes = fileStorageService.migrateLegacySegments(file);
+                    if (bytes > 0) {
+                        migrated++;
+                        reclaimed += bytes;
+                    }
+                } catch (IOException e) {
+                    log.error("迁移旧版分片失败: {}", file.getId(), e);
+                }
+            }
+        } while (batch.size() == batchSize);
+        return AjaxResult.success("已迁移" + migrated + "个文件，回收" + reclaimed + "字节");
+    }
+
     /**
      * 文件上传
      */
@@ -191,118 +324,275 @@ public class FileController {
             return AjaxResult.warn("不支持的文件类型，允许类型：" + allowedTypes);
         }
 
+        // 自动识别Content-Type：优先使用上传时浏览器提供的MIME类型，如果不可靠则根据文件扩展名识别
+        String contentType = file.getContentType();
+        if (contentType == null || contentType.isEmpty() ||
+            "application/octet-stream".equals(contentType) ||
+            contentType.contains("application/")) {
+            // 如果浏览器提供的类型不可靠（如application/octet-stream），则根据扩展名识别
+            contentType = MimeTypeUtils.getMimeType(originalFileName);
+        }
+
         File destFile = null; // 用于记录已创建的文件
-        boolean fileCreated = false; // 标记文件是否创建成功
+        FileEntity fileEntity = null;
         Long fileId = null; // 用于记录已保存的文件ID
+        boolean blobRegistered = false; // 标记内容是否已登记（登记后由引用计数负责删除物理文件）
 
         try {
-            // 3. 创建存储目录（按日期分目录）
-            String dateDir = fileUploadUtil.createStorageDir();
-            // 4. 生成安全的原始文件名（避免覆盖）
-            String finalFileName = fileUploadUtil.generateSafeFileName(originalFileName);
-            // 5. 构建文件绝对路径
-            String absolutePath = fileUploadUtil.getAbsolutePath(dateDir, finalFileName);
-            // 6. 构建访问路径
-            String accessPath = fileUploadUtil.buildAccessPath(
-                    dateDir.replace(fileUploadUtil.getUploadRootPath(), ""),
-                    finalFileName
-            );
-
-            // 7. 将文件写入服务器目录
-            destFile = new File(absolutePath);
-            file.transferTo(destFile); // 核心：写入文件到服务器
+            // 3. 计算内容哈希：相同内容已存在时直接复用，不再写盘、不再重复向量化；同一遍读取中累计分段校验值
+            MessageDigest digest = ContentHashUtil.newDigest();
+            SegmentIndex.Builder segments = new SegmentIndex.Builder(chunkSize);
+            try (InputStream in = file.getInputStream()) {
+                byte[] buffer = new byte[FileTransferUtil.SLICE_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, n);
+                    segments.update(buffer, 0, n);
+                }
+            }
+            String contentHash = ContentHashUtil.toHex(digest);
+            FileEntity existing = fileBlobService.acquire(contentHash, file.getSize());
+            if (existing != null) {
+                return AjaxResult.success("文件上传成功（内容已存在，已复用）",
+                        fileBlobService.saveReference(existing, originalFileName, contentType));
+            }
 
-            fileCreated = true; // 标记文件创建成功
+            // 4. 分配存储位置（按一致性哈希选择存储卷，卷内按哈希分目录）
+            StorageVolumeService.Placement placement = storageVolumeService.allocate(originalFileName);
+            String storagePath = placement.getStoragePath();
+            String accessPath = placement.getAccessPath();
 
-            // 8. 保存文件元信息到数据库
-            FileEntity fileEntity = new FileEntity();
-            fileEntity.setOriginalName(originalFileName); // 存储原始文件名
+            // 5. 将文件写入服务器目录
+            destFile = placement.getFile();
+            file.transferTo(destFile); // 核心：写入文件到服务器
 
-            // 自动识别Content-Type：优先使用上传时浏览器提供的MIME类型，如果不可靠则根据文件扩展名识别
-            String contentType = file.getContentType();
-            if (contentType == null || contentType.isEmpty() ||
-                "application/octet-stream".equals(contentType) ||
-                contentType.contains("application/")) {
-                // 如果浏览器提供的类型不可靠（如application/octet-stream），则根据扩展名识别
-                contentType = MimeTypeUtils.getMimeType(originalFileName);
+            // 6. 登记内容；并发上传相同内容时以先登记者为准，后到者删除自己的副本并复用
+            blobRegistered = fileBlobService.register(contentHash, storagePath, file.getSize());
+            if (!blobRegistered) {
+                existing = fileBlobService.acquireRegistered(contentHash, file.getSize());
+                if (existing != null) {
+                    destFile.delete();
+                    return AjaxResult.success("文件上传成功（内容已存在，已复用）",
+                            fileBlobService.saveReference(existing, originalFileName, contentType));
+                }
+                // 已登记的内容恰好在回收中，本次按独立文件保存，不参与去重
+                contentHash = null;
             }
-            fileEntity.setContentType(contentType);
 
+            // 7. 保存文件元信息到数据库
+            fileEntity = new FileEntity();
+            fileEntity.setOriginalName(originalFileName); // 存储原始文件名
+            fileEntity.setContentType(contentType);
             fileEntity.setFileSize(file.getSize());
-            fileEntity.setFilePath(absolutePath); // 存绝对路径
+            fileEntity.setFilePath(storagePath); // 存储路径（volume://卷编码/相对路径）
             fileEntity.setAccessPath(accessPath); // 存访问路径
+            fileEntity.setContentHash(contentHash);
             fileEntity.initUploadTime(); // 设置上传时间
 
             fileId = fileService.saveFile(fileEntity);
             fileEntity.setId(fileId);
 
-            // RAG处理：异步处理文件切片和向量化
+            // 8. 自动分片、提交入库任务和预览图生成
+            int totalChunks;
             try {
-                fileChunkingService.processFile(fileEntity);
-            } catch (Exception e) {
-                log.error("文件RAG处理失败: {}", fileEntity.getOriginalName(), e);
-                // RAG处理失败时，删除已保存的文件和数据库记录
-                if (destFile != null && destFile.exists()) {
-                    destFile.delete();
-                }
-                if (fileId != null) {
-                    fileService.deleteFile(fileId);
-                }
-                return AjaxResult.error("文件处理失败：" + e.getMessage());
+                totalChunks = afterUpload(fileEntity, destFile, segments);
+            } catch (IOException e) {
+                // 分片失败时也要清理资源
+                log.error("文件分片处理失败: {}", fileEntity.getOriginalName(), e);
+                rollbackUpload(destFile, fileEntity, fileId, blobRegistered);
+                return AjaxResult.error("文件分片处理失败：" + e.getMessage());
             }
 
-            // 自动分片处理：如果文件大小超过阈值，自动分片
-            if (fileEntity.getFileSize() > autoChunkThreshold) {
-                try {
-                    // 自动分片
-                    int totalChunks = autoChunkFile(destFile, fileId, chunkSize);
+            // 返回完整的文件信息，包括文件类型，便于前端识别
+            return AjaxResult.success(totalChunks > 0
+                    ? "文件上传成功（自动分片：" + totalChunks + "片）" : "文件上传成功", fileEntity);
 
-                    // 更新文件信息为分片模式
-                    fileEntity.setIsChunked(true);
-                    fileEntity.setTotalChunks(totalChunks);
-                    fileEntity.setChunkSize(chunkSize);
-                    fileEntity.setUploadId(String.valueOf(fileId));
-                    fileService.updateFile(fileEntity);
+        } catch (Exception e) {
+            e.printStackTrace();
+            // 事务回滚：删除已创建的文件和数据库记录
+            rollbackUpload(destFile, fileEntity, fileId, blobRegistered);
+            return AjaxResult.error("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 流式上传（大文件）
+     * 直接解析 multipart 请求体并写入最终存储位置，边写边计算哈希和字节数；
+     * 不经过容器临时文件，整个文件只落盘一次，后续处理与普通上传相同。文件字段名为 file
+     */
+    @PostMapping("/upload/stream")
+    public AjaxResult uploadFileStream(HttpServletRequest request) {
+        String boundary = null;
+        try {
+            MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+            if (MediaType.MULTIPART_FORM_DATA.includes(mediaType)) {
+                boundary = StringUtils.trimTrailingCharacter(
+                        StringUtils.trimLeadingCharacter(mediaType.getParameter("boundary"), '"'), '"');
+            }
+        } catch (Exception ignored) {
+            // 按非 multipart 请求处理
+        }
+        if (!StringUtils.hasText(boundary)) {
+            return AjaxResult.warn("请求类型必须为 multipart/form-data");
+        }
 
-                    // 可以删除原始文件节省空间（保留分片文件即可）
-                    // destFile.delete();
+        File destFile = null; // 用于记录已创建的文件
+        FileEntity fileEntity = null;
+        Long fileId = null; // 用于记录已保存的文件ID
+        boolean blobRegistered = false;
 
-                    return AjaxResult.success("文件上传成功（自动分片：" + totalChunks + "片）", fileEntity);
-                } catch (IOException e) {
-                    // 分片失败时也要清理资源
-                    log.error("文件分片处理失败: {}", fileEntity.getOriginalName(), e);
-                    if (destFile != null && destFile.exists()) {
-                        destFile.delete();
+        try {
+            // 1. 定位文件字段（之前的普通字段直接跳过）
+            MultipartStreamReader reader = new MultipartStreamReader(request.getInputStream(), boundary);
+            MultipartStreamReader.Part part;
+            do {
+                part = reader.nextPart();
+            } while (part != null && !(part.isFile() && "file".equals(part.getName())));
+            if (part == null || !StringUtils.hasText(part.getFileName())) {
+                return AjaxResult.warn("上传文件不能为空");
+            }
+
+            // 2. 校验文件类型
+            String originalFileName = StringUtils.cleanPath(part.getFileName());
+            String fileExtension = originalFileName.substring(originalFileName.lastIndexOf(".") + 1).toLowerCase();
+            if (!allowedTypes.contains(fileExtension)) {
+                return AjaxResult.warn("不支持的文件类型，允许类型：" + allowedTypes);
+            }
+            String contentType = part.getContentType();
+            if (contentType == null || contentType.isEmpty() ||
+                "application/octet-stream".equals(contentType) ||
+                contentType.contains("application/")) {
+                contentType = MimeTypeUtils.getMimeType(originalFileName);
+            }
+
+            // 3. 直接写入最终存储位置，同时计算哈希和大小
+            StorageVolumeService.Placement placement = storageVolumeService.allocate(originalFileName);
+            String storagePath = placement.getStoragePath();
+            String accessPath = placement.getAccessPath();
+
+            destFile = placement.getFile();
+            MessageDigest digest = ContentHashUtil.newDigest();
+            SegmentIndex.Builder segments = new SegmentIndex.Builder(chunkSize);
+            long size = 0;
+            long maxBytes = maxFileSize.toBytes();
+            try (InputStream in = part.getInputStream();
+                 FileChannel channel = FileChannel.open(destFile.toPath(),
+                         StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[FileTransferUtil.SLICE_SIZE];
+                ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    size += n;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("文件大小超过限制：" + maxFileSize.toMegabytes() + "MB");
                     }
-                    if (fileId != null) {
-                        fileService.deleteFile(fileId);
+                    digest.update(buffer, 0, n);
+                    segments.update(buffer, 0, n);
+                    wrapped.clear().limit(n);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
                     }
-                    return AjaxResult.error("文件分片处理失败：" + e.getMessage());
                 }
             }
+            if (size == 0) {
+                destFile.delete();
+                return AjaxResult.warn("上传文件不能为空");
+            }
 
-            // 返回完整的文件信息，包括文件类型，便于前端识别
-            return AjaxResult.success("文件上传成功", fileEntity);
+            // 4. 相同内容已存在时删除本次写入的文件，复用已有内容
+            String contentHash = ContentHashUtil.toHex(digest);
+            FileEntity existing = fileBlobService.acquire(contentHash, size);
+            if (existing != null) {
+                destFile.delete();
+                return AjaxResult.success("文件上传成功（内容已存在，已复用）",
+                        fileBlobService.saveReference(existing, originalFileName, contentType));
+            }
+            // 并发上传相同内容时以先登记者为准，后到者删除自己的副本并复用
+            blobRegistered = fileBlobService.register(contentHash, storagePath, size);
+            if (!blobRegistered) {
+                existing = fileBlobService.acquireRegistered(contentHash, size);
+                if (existing != null) {
+                    destFile.delete();
+                    return AjaxResult.success("文件上传成功（内容已存在，已复用）",
+                            fileBlobService.saveReference(existing, originalFileName, contentType));
+                }
+                // 已登记的内容恰好在回收中，本次按独立文件保存，不参与去重
+            }
+
+            // 5. 保存文件元信息并提交入库任务
+            fileEntity = new FileEntity();
+            fileEntity.setOriginalName(originalFileName);
+            fileEntity.setContentType(contentType);
+            fileEntity.setFileSize(size);
+            fileEntity.setFilePath(storagePath);
+            fileEntity.setAccessPath(accessPath);
+            fileEntity.setContentHash(blobRegistered ? contentHash : null);
+            fileEntity.initUploadTime();
+
+            fileId = fileService.saveFile(fileEntity);
+            fileEntity.setId(fileId);
+
+            // 6. 与普通上传相同的后续处理：自动分片、入库、预览图
+            int totalChunks = afterUpload(fileEntity, destFile, segments);
+            return AjaxResult.success(totalChunks > 0
+                    ? "文件上传成功（自动分片：" + totalChunks + "片）" : "文件上传成功", fileEntity);
 
+        } catch (IllegalArgumentException e) {
+            rollbackUpload(destFile, fileEntity, fileId, blobRegistered);
+            return AjaxResult.warn(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            // 事务回滚：删除已创建的文件和数据库记录
-            if (fileCreated && destFile != null && destFile.exists()) {
-                boolean deleted = destFile.delete();
-                if (!deleted) {
-                    System.err.println("警告：数据库保存失败，且无法删除已创建的文件：" + destFile.getAbsolutePath());
-                }
+            rollbackUpload(destFile, fileEntity, fileId, blobRegistered);
+            return AjaxResult.error("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 新内容上传完成后的处理（普通上传、流式上传共用）：
+     * 超过阈值的文件写入分段索引并更新为分片模式，然后提交入库任务和预览图生成
+     *
+     * @param segments 上传时累计的分段校验值
+     * @return 分片数；未分片返回 0
+     * @throws IOException 写入分段索引失败
+     */
+    private int afterUpload(FileEntity fileEntity, File destFile, SegmentIndex.Builder segments) throws IOException {
+        int totalChunks = 0;
+        if (fileEntity.getFileSize() > autoChunkThreshold) {
+            totalChunks = autoChunkFile(destFile, segments);
+
+            // 更新文件信息为分片模式（数据仍是同一个文件，分片由索引描述）
+            fileEntity.setIsChunked(true);
+            fileEntity.setTotalChunks(totalChunks);
+            fileEntity.setChunkSize(chunkSize);
+            fileService.updateFile(fileEntity);
+        }
+
+        // RAG处理：提交入库任务后立即返回，进度通过 /ingest/{fileId} 查询
+        fileIngestService.submit(fileEntity);
+        filePreviewService.submit(fileEntity);
+        return totalChunks;
+    }
+
+    /**
+     * 上传失败时回滚：删除文件记录；内容已登记时释放引用（无其他引用时才删除物理文件），否则直接删除文件
+     */
+    private void rollbackUpload(File destFile, FileEntity fileEntity, Long fileId, boolean blobRegistered) {
+        // 如果文件记录已保存到数据库，则删除它
+        if (fileId != null) {
+            try {
+                fileService.deleteFile(fileId);
+            } catch (Exception deleteEx) {
+                System.err.println("警告：无法删除已保存的文件记录，ID：" + fileId);
+                deleteEx.printStackTrace();
             }
-            // 如果文件记录已保存到数据库，则删除它
-            if (fileId != null) {
-                try {
-                    fileService.deleteFile(fileId);
-                } catch (Exception deleteEx) {
-                    System.err.println("警告：无法删除已保存的文件记录，ID：" + fileId);
-                    deleteEx.printStackTrace();
-                }
+        }
+        if (blobRegistered && fileEntity != null) {
+            fileBlobService.release(fileEntity);
+        } else if (destFile != null && destFile.exists()) {
+            boolean deleted = destFile.delete();
+            if (!deleted) {
+                System.err.println("警告：无法删除已创建的文件：" + destFile.getAbsolutePath());
             }
-            return AjaxResult.error("文件上传失败：" + e.getMessage());
         }
     }
 
@@ -310,53 +600,279 @@ public class FileController {
      * 文件下载
      */
     @GetMapping("/download/{id}")
-    public void downloadFile(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    public void downloadFile(@PathVariable Long id, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
         // 1. 查询文件信息
         FileEntity fileEntity = fileService.getFile(id);
         if (fileEntity == null) {
             throw new RuntimeException("文件不存在，ID：" + id);
         }
 
-        File file = new File(fileEntity.getFilePath());
-        if (!file.exists()) {
-            throw new RuntimeException("文件已被删除，路径：" + fileEntity.getFilePath());
+        // 2. 内容协商：文本类文件在客户端支持时使用 gzip 传输
+        long fileSize = fileSizeOf(fileEntity);
+        boolean compressible = fileStorageService.isCompressible(fileEntity, fileSize);
+        boolean gzip = compressible && HttpRangeUtil.acceptsEncoding(request, "gzip");
+
+        // 3. 条件请求：校验器只取自文件元信息，客户端缓存仍然有效时不打开文件（冷文件不会被恢复）直接返回 304
+        long lastModified = lastModifiedOf(fileEntity);
+        String etag = HttpRangeUtil.buildEtag(fileEntity.getContentHash(), id, fileSize, lastModified);
+        if (gzip) {
+            etag = HttpRangeUtil.encodedEtag(etag, "gzip");
+        }
+        if (compressible) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        // 命中客户端缓存同样是一次访问，不计入会让频繁访问的文件被误判为冷文件
+        fileTierService.recordAccess(fileEntity);
+        if (HttpRangeUtil.isNotModified(request, etag, lastModified)) {
+            HttpRangeUtil.sendNotModified(response, etag, lastModified);
+            return;
         }
 
-        // 2. 处理文件（分片文件需要先合并）
-        File downloadFile = file;
-        if (Boolean.TRUE.equals(fileEntity.getIsChunked())) {
-            try {
-                // 自动合并分片文件
-                downloadFile = autoMergeChunks(fileEntity.getId(), fileEntity.getTotalChunks());
-            } catch (IOException e) {
-                throw new RuntimeException("分片合并失败：" + e.getMessage(), e);
-            }
+        // 4. 打开文件内容源（分片文件直接按分片顺序读取，无需合并）
+        FileContentSource source;
+        try {
+            source = fileStorageService.openSource(fileEntity);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e.getMessage(), e);
         }
 
-        // 3. 设置响应头
-        // 设置Content-Type（不要添加charset=UTF-8，让浏览器根据文件类型自动处理）
-        response.setContentType(fileEntity.getContentType());
+        try (source) {
+            response.setHeader("ETag", etag);
+            response.setDateHeader("Last-Modified", lastModified);
+
+            // 设置响应头
+            // 设置Content-Type（不要添加charset=UTF-8，让浏览器根据文件类型自动处理）
+            response.setContentType(fileEntity.getContentType());
+
+            // 设置Content-Disposition头部（支持中文文件名）
+            setContentDisposition(response, fileEntity.getOriginalName());
 
-        // 设置Content-Disposition头部（支持中文文件名）
-        setContentDisposition(response, fileEntity.getOriginalName());
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+                writeGzip(fileEntity, source, request, response);
+                return;
+            }
 
-        response.setContentLengthLong(fileEntity.getFileSize());
+            response.setContentLengthLong(source.length());
 
-        // 4. 读取文件并写入响应流
-        try (FileInputStream fis = new FileInputStream(downloadFile);
-             OutputStream os = response.getOutputStream()) {
-            byte[] buffer = new byte[1024 * 8]; // 8KB缓冲区
-            int len;
-            while ((len = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, len);
+            // 5. 写出文件内容：未限速时单文件优先交给容器 sendfile，否则通过文件通道按切片输出
+            File file = source.singleFile();
+            if (file != null && !bandwidthScheduler.isEnabled()
+                    && FileTransferUtil.trySendfile(request, file, 0, source.length())) {
+                return;
             }
+            OutputStream os = response.getOutputStream();
+            source.transferTo(0, source.length(), os, bandwidthGuard(request, null, id, source.length(), false));
             os.flush();
-        } finally {
-            // 清理合并后的临时文件（可选）
-            if (downloadFile != file && downloadFile.exists() && downloadFile.getName().startsWith("merged_")) {
-                downloadFile.delete();
+        }
+    }
+
+    /**
+     * 创建带宽守卫：按用户（无用户时按客户端地址）、文件和全局限速
+     *
+     * @param length 本次输出的字节数
+     * @param range 是否为 Range 请求
+     */
+    private FileTransferUtil.TransferGuard bandwidthGuard(HttpServletRequest request, String userId, Long fileId,
+                                                          long length, boolean range) {
+        String clientKey = StringUtils.hasText(userId) ? "user:" + userId : request.getRemoteAddr();
+        return bandwidthScheduler.guard(clientKey, fileId, bandwidthScheduler.classify(length, range));
+    }
+
+    /**
+     * 文件元信息中的大小（条件请求在打开文件前使用）
+     */
+    private static long fileSizeOf(FileEntity fileEntity) {
+        return fileEntity.getFileSize() != null ? fileEntity.getFileSize() : 0L;
+    }
+
+    /**
+     * 文件元信息中的最后修改时间（毫秒）：内容在上传时确定，之后不会被原地修改
+     */
+    private static long lastModifiedOf(FileEntity fileEntity) {
+        LocalDateTime time = fileEntity.getUploadTime() != null ? fileEntity.getUploadTime() : fileEntity.getCreateTime();
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
+    /**
+     * gzip 输出：有预压缩副本时直接输出副本（长度已知，可 sendfile），否则边读边压缩
+     */
+    private void writeGzip(FileEntity fileEntity, FileContentSource source,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileContentSource variant = fileStorageService.openGzipVariant(fileEntity, source.lastModified());
+        OutputStream os;
+        if (variant != null) {
+            try (variant) {
+                response.setContentLengthLong(variant.length());
+                File file = variant.singleFile();
+                if (file != null && !bandwidthScheduler.isEnabled()
+                        && FileTransferUtil.trySendfile(request, file, 0, variant.length())) {
+                    return;
+                }
+                os = response.getOutputStream();
+                variant.transferTo(0, variant.length(), os,
+                        bandwidthGuard(request, null, fileEntity.getId(), variant.length(), false));
+            }
+        } else {
+            os = response.getOutputStream();
+            fileStorageService.writeGzip(fileEntity, source, os,
+                    bandwidthGuard(request, null, fileEntity.getId(), source.length(), false));
+        }
+        os.flush();
+    }
+
+    /**
+     * 批量打包下载
+     * 边读边压缩直接写入响应（不生成临时文件，内存占用与压缩包大小无关）；
+     * 文本类文件使用 DEFLATE，图片、音视频、压缩包等已压缩的文件不再压缩（DEFLATE 无压缩块，流式解压也能识别条目结尾），超过 4GB 自动使用 ZIP64
+     * URL格式: /api/files/download/zip?ids=1,2,3&name=archive
+     */
+    @GetMapping("/download/zip")
+    public void downloadZip(@RequestParam List<Long> ids,
+                            @RequestParam(required = false) String name,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        // 1. 先校验全部文件信息，响应开始写出后无法再返回错误
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            throw new RuntimeException("请选择要下载的文件");
+        }
+        if (distinctIds.size() > maxArchiveFiles) {
+            throw new RuntimeException("单次最多打包 " + maxArchiveFiles + " 个文件");
+        }
+        List<FileEntity> files = new ArrayList<>(distinctIds.size());
+        for (Long id : distinctIds) {
+            FileEntity fileEntity = fileService.getFile(id);
+            if (fileEntity == null) {
+                throw new RuntimeException("文件不存在，ID：" + id);
+            }
+            files.add(fileEntity);
+        }
+
+        // 2. 响应头（长度未知，使用分块传输）
+        response.setContentType("application/zip");
+        setContentDisposition(response, (StringUtils.hasText(name) ? name : "files") + ".zip");
+
+        // 3. 逐个文件写入 ZIP 条目
+        Map<String, Integer> usedNames = new HashMap<>();
+        OutputStream os = response.getOutputStream();
+        try (ZipStreamWriter zip = new ZipStreamWriter(os)) {
+            for (FileEntity fileEntity : files) {
+                FileContentSource source;
+                try {
+                    source = fileStorageService.openSource(fileEntity);
+                } catch (FileNotFoundException e) {
+                    log.warn("打包下载跳过已删除的文件: {}", fileEntity.getId());
+                    continue;
+                }
+                fileTierService.recordAccess(fileEntity);
+                try (source) {
+                    int method = MimeTypeUtils.isCompressible(fileEntity.getContentType())
+                            ? ZipStreamWriter.DEFLATED : ZipStreamWriter.STORED;
+                    OutputStream entry = zip.putEntry(archiveEntryName(fileEntity, usedNames), method,
+                            source.lastModified(), source.length());
+                    source.transferTo(0, source.length(), entry, bandwidthScheduler.guard(request.getRemoteAddr(),
+                            fileEntity.getId(), BandwidthScheduler.TrafficClass.BULK));
+                    zip.closeEntry();
+                }
+            }
+            zip.finish();
+        }
+        os.flush();
+    }
+
+    /**
+     * 生成压缩包内的条目名称：去掉路径分隔符，同名文件追加序号
+     */
+    private static String archiveEntryName(FileEntity fileEntity, Map<String, Integer> usedNames) {
+        String entryName = fileEntity.getOriginalName();
+        if (!StringUtils.hasText(entryName)) {
+            entryName = String.valueOf(fileEntity.getId());
+        }
+        entryName = entryName.replace('/', '_').replace('\\', '_');
+        if (entryName.equals(".") || entryName.equals("..")) {
+            entryName = String.valueOf(fileEntity.getId());
+        }
+
+        String candidate = entryName;
+        int count = usedNames.merge(entryName.toLowerCase(), 1, Integer::sum);
+        while (count > 1) {
+            int dot = entryName.lastIndexOf('.');
+            candidate = dot > 0
+                    ? entryName.substring(0, dot) + " (" + (count - 1) + ")" + entryName.substring(dot)
+                    : entryName + " (" + (count - 1) + ")";
+            if (!usedNames.containsKey(candidate.toLowerCase())) {
+                usedNames.put(candidate.toLowerCase(), 1);
+                break;
             }
+            count = usedNames.merge(entryName.toLowerCase(), 1, Integer::sum);
         }
+        return candidate;
+    }
+
+    /**
+     * 图片预览图（缩略图）
+     * 上传后由后台生成，未生成时本次请求触发生成并等待；内容不变时预览图不变，可长期缓存
+     * URL格式: /api/files/preview/{id}?size=320
+     */
+    @GetMapping("/preview/{id}")
+    public void previewFile(@PathVariable Long id,
+                            @RequestParam(defaultValue = "320") int size,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        FileEntity fileEntity = fileService.getFile(id);
+        if (fileEntity == null) {
+            sendJsonError(response, HttpServletResponse.SC_NOT_FOUND, "文件不存在，ID：" + id);
+            return;
+        }
+        if (!filePreviewService.isSupported(fileEntity)) {
+            sendJsonError(response, HttpServletResponse.SC_NOT_FOUND, "该文件类型不支持预览");
+            return;
+        }
+
+        // 预览图由内容（或文件ID + 修改时间）和尺寸唯一确定，随原文件变化
+        String etag = "\"" + filePreviewService.cacheKey(fileEntity) + "-" + filePreviewService.resolveSize(size) + "\"";
+        long lastModified = lastModifiedOf(fileEntity);
+        if (HttpRangeUtil.isNotModified(request, etag, lastModified)) {
+            HttpRangeUtil.sendNotModified(response, etag, lastModified);
+            return;
+        }
+
+        File preview;
+        try {
+            preview = filePreviewService.getPreview(fileEntity, size, previewWaitMillis);
+        } catch (TimeoutException e) {
+            response.setHeader("Retry-After", "1");
+            sendJsonError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "预览图生成中，请稍后重试");
+            return;
+        } catch (IOException e) {
+            sendJsonError(response, HttpServletResponse.SC_NOT_FOUND, "无法生成预览图：" + e.getMessage());
+            return;
+        }
+
+        // 预览图通常只有几十 KB，经热点缓存从内存输出
+        MemoryFileSource cached = hotFileCache.open(preview);
+        try (FileContentSource source = cached != null ? cached : new SingleFileSource(preview)) {
+            response.setContentType(FilePreviewService.contentTypeOf(preview));
+            response.setHeader("ETag", etag);
+            response.setDateHeader("Last-Modified", lastModified);
+            response.setHeader("Cache-Control", "private, max-age=86400");
+            response.setContentLengthLong(source.length());
+            OutputStream os = response.getOutputStream();
+            source.transferTo(0, source.length(), os, bandwidthGuard(request, null, id, source.length(), false));
+            os.flush();
+        }
+    }
+
+    /**
+     * 以 JSON 返回错误信息（用于直接写出响应体的接口）
+     */
+    private static void sendJsonError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(status);
+        response.getWriter().write(com.alibaba.fastjson.JSON.toJSONString(AjaxResult.error(message)));
     }
 
     /**
@@ -366,6 +882,7 @@ public class FileController {
     @GetMapping("/access/{id}")
     public void accessFile(@PathVariable Long id,
                           @RequestParam String token,
+                          HttpServletRequest request,
                           HttpServletResponse response) throws IOException {
         // 验证访问令牌
         FileAccessSessionManager.FileAccessSession session = sessionManager.validateToken(token);
@@ -398,37 +915,65 @@ public class FileController {
             return;
         }
 
-        File file = new File(fileEntity.getFilePath());
-        if (!file.exists()) {
+        // 条件请求只依赖文件元信息，返回 304 时不打开文件
+        long lastModified = lastModifiedOf(fileEntity);
+        String etag = HttpRangeUtil.buildEtag(fileEntity.getContentHash(), id, fileSizeOf(fileEntity), lastModified);
+        fileTierService.recordAccess(fileEntity);
+        if (HttpRangeUtil.isNotModified(request, etag, lastModified)) {
+            HttpRangeUtil.sendNotModified(response, etag, lastModified);
+            return;
+        }
+
+        FileContentSource source;
+        try {
+            source = fileStorageService.openSource(fileEntity);
+        } catch (FileNotFoundException e) {
             response.setContentType("application/json");
             response.setCharacterEncoding("UTF-8");
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            AjaxResult errorResult = AjaxResult.error("文件已被删除，路径：" + fileEntity.getFilePath());
+            AjaxResult errorResult = AjaxResult.error(e.getMessage());
             response.getWriter().write(com.alibaba.fastjson.JSON.toJSONString(errorResult));
             return;
         }
 
-        // 设置响应头（支持在线播放和预览）
-        response.setContentType(fileEntity.getContentType());
-        response.setHeader("Content-Length", String.valueOf(fileEntity.getFileSize()));
-        response.setHeader("Accept-Ranges", "bytes");
-
-        // 流式输出文件（在输出过程中持续检查令牌有效性）
-        try (FileInputStream fis = new FileInputStream(file);
-             OutputStream os = response.getOutputStream()) {
-            byte[] buffer = new byte[1024 * 16];
-            int len;
-            while ((len = fis.read(buffer)) != -1) {
-                // 在每次写入前检查令牌是否仍然有效
-                session = sessionManager.validateToken(token);
-                if (session == null) {
-                    // 令牌被撤销，强制停止输出
-                    try {
-                        response.getOutputStream().close();
-                    } catch (IOException ignored) {}
-                    return;
-                }
-                os.write(buffer, 0, len);
+        try (source) {
+            // 设置响应头（支持在线播放和预览）
+            long length = source.length();
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("ETag", etag);
+            response.setDateHeader("Last-Modified", lastModified);
+
+            // 解析 Range 头（播放器拖动进度时只读取对应区间）
+            List<HttpRangeUtil.ByteRange> ranges;
+            try {
+                ranges = HttpRangeUtil.resolveRanges(request, etag, lastModified, length);
+            } catch (IllegalArgumentException e) {
+                HttpRangeUtil.sendRangeNotSatisfiable(response, length);
+                return;
+            }
+
+            // 流式输出文件（在每个切片写出前检查会话是否已被撤销，再等待带宽配额）
+            long outputLength = ranges.isEmpty() ? length
+                    : ranges.stream().mapToLong(HttpRangeUtil.ByteRange::getLength).sum();
+            FileTransferUtil.TransferGuard guard = sessionManager.transferGuard(session)
+                    .and(bandwidthGuard(request, session.getUserId(), id, outputLength, !ranges.isEmpty()));
+            boolean completed;
+            if (ranges.isEmpty()) {
+                response.setContentType(fileEntity.getContentType());
+                response.setContentLengthLong(length);
+                completed = source.transferTo(0, length, response.getOutputStream(), guard) == length;
+            } else {
+                completed = HttpRangeUtil.writeRanges(response, source, length,
+                        fileEntity.getContentType(), ranges, guard);
+            }
+
+            OutputStream os = response.getOutputStream();
+            if (!completed) {
+                // 令牌被撤销，强制停止输出
+                try {
+                    os.close();
+                } catch (IOException ignored) {}
+                return;
             }
             os.flush();
 
@@ -453,7 +998,8 @@ public class FileController {
         // TODO: 根据实际权限系统验证用户是否有权访问此文件
         // String userId = getCurrentUserId();
 
-        // 生成访问令牌（无需登录的版本）
+        // 生成访问令牌（无需登录的版本），有效期不超过配置的上限
+        expiresInMinutes = Math.min(expiresInMinutes, sessionManager.getMaxExpiresMinutes());
         String token = sessionManager.createAccessToken(id, null, expiresInMinutes);
 
         // 构建访问URL
@@ -474,7 +1020,12 @@ public class FileController {
     @DeleteMapping("/token/{id}")
     public AjaxResult revokeAccessToken(@PathVariable Long id,
                                        @RequestParam String token) {
-        boolean success = sessionManager.revokeToken(token);
+        boolean success;
+        try {
+            success = fileTokenRevocationService.revokeToken(token);
+        } catch (IllegalStateException e) {
+            return AjaxResult.error("令牌撤销失败：" + e.getMessage());
+        }
         if (success) {
             return AjaxResult.success("令牌已撤销，播放已停止");
         } else {
@@ -488,8 +1039,8 @@ public class FileController {
      */
     @DeleteMapping("/tokens/{id}")
     public AjaxResult revokeAllFileTokens(@PathVariable Long id) {
-        int count = sessionManager.revokeFileTokens(id);
-        return AjaxResult.success("已撤销" + count + "个访问令牌");
+        fileTokenRevocationService.revokeFileTokens(id);
+        return AjaxResult.success("已撤销该文件的全部访问令牌");
     }
 
     /**
@@ -500,6 +1051,47 @@ public class FileController {
         return AjaxResult.success(fileService.listFiles());
     }
 
+    /**
+     * 分页查询文件列表（游标分页，支持按类型、大小、上传日期、是否分片筛选）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor
+     */
+    @GetMapping("/list/page")
+    public AjaxResult listFilesPage(FileQueryDTO query) {
+        try {
+            return AjaxResult.success(fileService.listFilesPage(query));
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * 按文件名搜索（子串或前缀匹配，不区分大小写）
+     */
+    @GetMapping("/search")
+    public AjaxResult searchFiles(@RequestParam("q") String query,
+                                  @RequestParam(defaultValue = "false") boolean prefix,
+                                  @RequestParam(defaultValue = "20") int limit) {
+        limit = Math.max(1, Math.min(limit, 200));
+        List<FileListItemDTO> items = new ArrayList<>();
+        for (Long id : fileSearchService.search(query, prefix, limit)) {
+            FileEntity file = fileService.getFile(id);
+            if (file == null) {
+                // 已在其他节点删除
+                fileSearchService.remove(id);
+                continue;
+            }
+            FileListItemDTO item = new FileListItemDTO();
+            item.setId(file.getId());
+            item.setOriginalName(file.getOriginalName());
+            item.setContentType(file.getContentType());
+            item.setFileSize(file.getFileSize());
+            item.setUploadTime(file.getUploadTime());
+            item.setIsChunked(file.getIsChunked());
+            items.add(item);
+        }
+        return AjaxResult.success(items);
+    }
+
     /**
      * 删除文件
      */
@@ -511,17 +1103,18 @@ public class FileController {
         }
 
         try {
-            // 1. 删除服务器文件
-            File file = new File(fileEntity.getFilePath());
-            if (file.exists()) {
-                boolean deleted = file.delete();
-                if (!deleted) {
-                    return AjaxResult.error("服务器文件删除失败");
-                }
+            // 按内容去重的文件：先删除记录再释放引用，最后一个引用释放时才清理物理文件
+            if (StringUtils.hasText(fileEntity.getContentHash())) {
+                fileService.deleteFile(id);
+                fileBlobService.release(fileEntity);
+                return AjaxResult.success("文件删除成功");
             }
 
-            // 2. 删除数据库记录（软删除）
+            // 1. 删除数据库记录（软删除）
             fileService.deleteFile(id);
+
+            // 2. 登记清理任务：物理文件、分段索引、旧版分片、RAG 片段和向量由后台批量清理
+            filePurgeService.submit(fileEntity, true, id);
             return AjaxResult.success("文件删除成功");
         } catch (Exception e) {
             e.printStackTrace();
@@ -530,7 +1123,7 @@ public class FileController {
     }
 
     /**
-     * 初始化分片上传
+     * 初始化分片上传（预分配目标文件，分片可并行上传）
      */
     @PostMapping("/chunk/init")
     public AjaxResult initChunkUpload(
@@ -546,18 +1139,15 @@ public class FileController {
                 return AjaxResult.warn("不支持的文件类型，允许类型：" + allowedTypes);
             }
 
-            // 2. 生成上传会话 ID
-            String uploadId = UUID.randomUUID().toString();
+            // 2. 创建上传会话并预分配目标文件
+            ChunkUploadService.ChunkUploadSession session =
+                    chunkUploadService.init(fileName, totalChunks, chunkSize, totalSize);
 
-            // 3. 创建临时存储目录（按 uploadId 分目录）
-            String tempDirPath = fileUploadUtil.getUploadRootPath() + "temp/" + uploadId + "/";
-            File tempDir = new File(tempDirPath);
-            if (!tempDir.exists()) {
-                tempDir.mkdirs();
-            }
-
-            return AjaxResult.success(new ChunkUploadResponse(uploadId, tempDirPath));
+            return AjaxResult.success(new ChunkUploadResponse(session.getUploadId(),
+                    fileStorageService.getChunkDir(session.getUploadId())));
 
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return AjaxResult.error("初始化分片上传失败：" + e.getMessage());
@@ -565,23 +1155,25 @@ public class FileController {
     }
 
     /**
-     * 上传分片
+     * 上传分片（按偏移直接写入目标文件）
      */
     @PostMapping("/chunk/{uploadId}/{chunkNumber}")
     public AjaxResult uploadChunk(
             @PathVariable String uploadId,
             @PathVariable Integer chunkNumber,
-            @RequestParam("file") MultipartFile chunk) {
+            @RequestParam("file") MultipartFile chunk,
+            @RequestParam(value = "crc32c", required = false) String crc32c,
+            @RequestHeader(value = "X-Chunk-CRC32C", required = false) String crc32cHeader) {
 
         try {
-            String tempDirPath = fileUploadUtil.getUploadRootPath() + "temp/" + uploadId + "/";
-            File chunkFile = new File(tempDirPath + chunkNumber);
-
-            // 保存分片文件
-            chunk.transferTo(chunkFile);
-
+            // 可选的分片 CRC32C（表单字段或请求头），写入时比对，不一致时只需重传该分片
+            String checksum = StringUtils.hasText(crc32c) ? crc32c : crc32cHeader;
+            Integer expectedCrc32c = StringUtils.hasText(checksum) ? ContentHashUtil.parseCrc32c(checksum) : null;
+            chunkUploadService.writeChunk(uploadId, chunkNumber, chunk, expectedCrc32c);
             return AjaxResult.success("分片 " + chunkNumber + " 上传成功");
 
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
         } catch (IOException e) {
             e.printStackTrace();
             return AjaxResult.error("分片上传失败：" + e.getMessage());
@@ -589,7 +1181,20 @@ public class FileController {
     }
 
     /**
-     * 合并分片
+     * 查询分片上传状态（断点续传：返回已接收分片数及缺失的分片区间）
+     */
+    @GetMapping("/chunk/{uploadId}/status")
+    public AjaxResult getChunkUploadStatus(@PathVariable String uploadId) {
+        try {
+            return AjaxResult.success(chunkUploadService.getStatus(uploadId));
+        } catch (IllegalArgumentException e) {
+            return AjaxResult.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * 合并分片（分片已写入目标文件，此处只校验完整性并保存元信息）
+     * 可选参数 sha256 为客户端计算的整文件摘要，与服务端增量计算的结果不一致时拒绝合并
      */
     @PostMapping("/chunk/merge/{uploadId}")
     public AjaxResult mergeChunks(
@@ -597,43 +1202,20 @@ public class FileController {
             @RequestParam("fileName") String fileName,
             @RequestParam("totalChunks") Integer totalChunks,
             @RequestParam("contentType") String contentType,
-            @RequestParam("totalSize") Long totalSize) {
-
-        String tempDirPath = fileUploadUtil.getUploadRootPath() + "temp/" + uploadId + "/";
-        File destFile = null; // 用于记录已创建的文件
-        boolean fileCreated = false; // 标记文件是否已创建
+            @RequestParam("totalSize") Long totalSize,
+            @RequestParam(value = "sha256", required = false) String sha256) {
 
         try {
-            String dateDir = fileUploadUtil.createStorageDir();
-            // 使用原始文件名（安全的）
-            String finalFileName = fileUploadUtil.generateSafeFileName(fileName);
-            String absolutePath = fileUploadUtil.getAbsolutePath(dateDir, finalFileName);
-            String accessPath = fileUploadUtil.buildAccessPath(
-                    dateDir.replace(fileUploadUtil.getUploadRootPath(), ""),
-                    finalFileName
-            );
-
-            // 1. 创建目标文件
-            destFile = new File(absolutePath);
-
-            // 2. 合并分片（按顺序写入）
-            try (FileOutputStream fos = new FileOutputStream(destFile)) {
-                for (int i = 0; i < totalChunks; i++) {
-                    File chunkFile = new File(tempDirPath + i);
-                    if (!chunkFile.exists()) {
-                        return AjaxResult.warn("分片 " + i + " 不存在");
-                    }
-
-                    // 写入分片内容
-                    Files.copy(chunkFile.toPath(), fos);
-                }
+            // 1. 校验分片是否全部到达
+            ChunkUploadService.ChunkUploadSession session;
+            try {
+                session = chunkUploadService.verifyComplete(uploadId);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                return AjaxResult.warn(e.getMessage());
+            }
+            if (session.getTotalChunks() != totalChunks || session.getTotalSize() != totalSize) {
+                return AjaxResult.warn("分片总数或文件大小与初始化时不一致");
             }
-
-            fileCreated = true; // 标记文件创建成功
-
-            // 3. 保存文件信息到数据库（关键：这必须在删除临时文件之前）
-            FileEntity fileEntity = new FileEntity();
-            fileEntity.setOriginalName(fileName); // 存储原始文件名
 
             // 自动识别Content-Type：优先使用上传时提供的类型，如果不可靠则根据文件扩展名识别
             String resolvedContentType = contentType;
@@ -642,47 +1224,81 @@ public class FileController {
                 resolvedContentType.contains("application/")) {
                 resolvedContentType = MimeTypeUtils.getMimeType(fileName);
             }
+
+            // 2. 内容哈希：上传过程中已按分片顺序增量计算，此处只补算剩余部分
+            // 相同内容已存在时删除本次写入的文件，复用已有内容
+            File destFile = fileStorageService.resolve(session.getFilePath());
+            String contentHash = chunkUploadService.contentHash(session);
+            if (StringUtils.hasText(sha256) && !sha256.trim().equalsIgnoreCase(contentHash)) {
+                return AjaxResult.warn("文件摘要不一致，请检查分片内容后重新上传");
+            }
+            FileEntity existing = fileBlobService.acquire(contentHash, session.getTotalSize());
+            if (existing != null) {
+                FileEntity fileEntity = fileBlobService.saveReference(existing, fileName, resolvedContentType);
+                if (!destFile.getAbsolutePath().equals(fileStorageService.resolve(existing.getFilePath()).getAbsolutePath())) {
+                    destFile.delete();
+                }
+                chunkUploadService.finish(uploadId);
+                return AjaxResult.success("文件合并成功（内容已存在，已复用）", fileEntity);
+            }
+            boolean blobRegistered = fileBlobService.register(contentHash, session.getFilePath(), session.getTotalSize());
+            if (!blobRegistered) {
+                // 并发上传相同内容时以先登记者为准，复用已登记的内容
+                existing = fileBlobService.acquireRegistered(contentHash, session.getTotalSize());
+                if (existing != null) {
+                    FileEntity fileEntity = fileBlobService.saveReference(existing, fileName, resolvedContentType);
+                    destFile.delete();
+                    chunkUploadService.finish(uploadId);
+                    return AjaxResult.success("文件合并成功（内容已存在，已复用）", fileEntity);
+                }
+            }
+
+            // 分段索引直接使用写入分片时算出的 CRC32C，无需再读一遍数据；
+            // 限制分片大小之前创建的会话分片可能过大，按服务端分片大小重新扫描
+            long segmentSize = session.getChunkSize();
+            int segmentCount = session.getTotalChunks();
+            if (segmentSize <= SegmentIndex.MAX_SEGMENT_SIZE) {
+                fileStorageService.writeSegmentIndex(destFile, segmentSize, session.checksumsSnapshot());
+            } else {
+                segmentSize = chunkSize;
+                segmentCount = fileStorageService.writeSegmentIndex(destFile, SegmentIndex.build(destFile, segmentSize));
+            }
+
+            // 3. 保存文件信息到数据库
+            FileEntity fileEntity = new FileEntity();
+            fileEntity.setOriginalName(fileName); // 存储原始文件名
             fileEntity.setContentType(resolvedContentType);
 
-            fileEntity.setFileSize(totalSize);
-            fileEntity.setFilePath(absolutePath);
-            fileEntity.setAccessPath(accessPath);
+            fileEntity.setFileSize(session.getTotalSize());
+            fileEntity.setFilePath(session.getFilePath());
+            fileEntity.setAccessPath(session.getAccessPath());
             fileEntity.setIsChunked(true);
-            fileEntity.setTotalChunks(totalChunks);
-            fileEntity.setChunkSize(totalSize / totalChunks);
+            fileEntity.setTotalChunks(segmentCount);
+            fileEntity.setChunkSize(segmentSize);
             fileEntity.setUploadId(uploadId);
+            fileEntity.setContentHash(blobRegistered ? contentHash : null);
             fileEntity.initUploadTime(); // 设置上传时间
 
-            Long fileId = fileService.saveFile(fileEntity);
-            fileEntity.setId(fileId);
-
-            // 4. 数据库保存成功后，删除临时分片文件
-            for (int i = 0; i < totalChunks; i++) {
-                File chunkFile = new File(tempDirPath + i);
-                if (chunkFile.exists()) {
-                    chunkFile.delete();
+            try {
+                fileEntity.setId(fileService.saveFile(fileEntity));
+            } catch (RuntimeException e) {
+                // 撤销登记但保留目标文件，便于重试合并
+                if (blobRegistered) {
+                    fileBlobService.unregister(contentHash);
                 }
+                throw e;
             }
-            // 删除临时目录
-            File tempDir = new File(tempDirPath);
-            if (tempDir.exists()) {
-                tempDir.delete();
-            }
+
+            // 4. 数据库保存成功后，清理上传会话
+            chunkUploadService.finish(uploadId);
+            filePreviewService.submit(fileEntity);
 
             // 返回完整的文件信息，包括文件类型，便于前端识别
             return AjaxResult.success("文件合并成功", fileEntity);
 
         } catch (Exception e) {
             e.printStackTrace();
-            // 事务回滚：清理所有文件
-            if (fileCreated && destFile != null && destFile.exists()) {
-                boolean deleted = destFile.delete();
-                if (!deleted) {
-                    System.err.println("警告：数据库保存失败，且无法删除已创建的文件：" + destFile.getAbsolutePath());
-                }
-            }
-            // 注意：不需要删除临时分片文件，因为它们是用户上传的原始数据
-            // 临时目录会在下次上传或定期清理任务中处理
+            // 注意：不删除目标文件，分片数据已写入其中，保留会话以便重试合并
             return AjaxResult.error("分片合并失败：" + e.getMessage());
         }
     }
@@ -718,17 +1334,14 @@ public class FileController {
     }
 
     /**
-     * 定时清理过期令牌
-     * 每10分钟清理一次过期无效的访问令牌
+     * 定时清理失效的令牌撤销记录
+     * 每10分钟清理一次（被撤销的令牌已自然过期的记录）
      */
     @Scheduled(fixedRate = 600000) // 10分钟
     public void cleanupExpiredTokens() {
-        int beforeCount = sessionManager.getActiveTokenCount();
-        sessionManager.cleanupExpiredTokens();
-        int afterCount = sessionManager.getActiveTokenCount();
-
-        if (beforeCount != afterCount) {
-            System.out.println("文件访问令牌清理完成：清理了 " + (beforeCount - afterCount) + " 个过期令牌");
+        int removed = fileTokenRevocationService.cleanupExpired();
+        if (removed > 0) {
+            System.out.println("令牌撤销记录清理完成：清理了 " + removed + " 条失效记录");
         }
     }
 }
\ No newline at end of file
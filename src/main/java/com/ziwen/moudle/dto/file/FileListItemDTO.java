@@ -0,0 +1,44 @@
+package com.ziwen.moudle.dto.file;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件列表项（列表只返回展示所需字段，不含存储路径等内部信息）
+ *
+ * @author ziwen
+ */
+@Data
+public class FileListItemDTO {
+
+    /**
+     * 文件ID
+     */
+    private Long id;
+
+    /**
+     * 原始文件名
+     */
+    private String originalName;
+
+    /**
+     * 文件类型（MIME类型）
+     */
+    private String contentType;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 上传时间
+     */
+    private LocalDateTime uploadTime;
+
+    /**
+     * 是否分片存储
+     */
+    private Boolean isChunked;
+}
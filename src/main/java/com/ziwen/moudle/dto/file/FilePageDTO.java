@@ -0,0 +1,29 @@
+package com.ziwen.moudle.dto.file;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 文件列表分页结果
+ *
+ * @author ziwen
+ */
+@Data
+public class FilePageDTO {
+
+    /**
+     * 当前页文件
+     */
+    private List<FileListItemDTO> items;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+}
@@ -0,0 +1,57 @@
+package com.ziwen.moudle.dto.file;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * 文件列表查询条件（游标分页）
+ *
+ * @author ziwen
+ */
+@Data
+public class FileQueryDTO {
+
+    /**
+     * 文件类型：完整类型精确匹配（如 image/png），以 / 结尾按前缀匹配（如 image/）
+     */
+    private String contentType;
+
+    /**
+     * 最小文件大小（字节，包含）
+     */
+    private Long minSize;
+
+    /**
+     * 最大文件大小（字节，包含）
+     */
+    private Long maxSize;
+
+    /**
+     * 上传日期起（包含）
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate uploadFrom;
+
+    /**
+     * 上传日期止（包含）
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate uploadTo;
+
+    /**
+     * 是否分片存储
+     */
+    private Boolean isChunked;
+
+    /**
+     * 游标（上一页返回的 nextCursor），为空表示第一页
+     */
+    private String cursor;
+
+    /**
+     * 每页数量
+     */
+    private Integer limit;
+}
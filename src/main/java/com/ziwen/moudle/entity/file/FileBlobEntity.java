@@ -0,0 +1,30 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 文件内容实体 - 按内容哈希去重的物理存储（引用计数）
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FileBlobEntity extends BaseEntity<FileBlobEntity> {
+
+    /** 内容哈希（SHA-256，十六进制） */
+    private String contentHash;
+
+    /** 文件大小（字节） */
+    private Long fileSize;
+
+    /** 服务器存储路径（绝对路径） */
+    private String filePath;
+
+    /** 引用该内容的文件记录数 */
+    private Integer refCount;
+
+    /** 持有 RAG 片段和向量的文件ID（重复上传复用该文件的片段） */
+    private Long ragFileId;
+}
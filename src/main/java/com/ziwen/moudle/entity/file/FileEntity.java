@@ -39,6 +39,9 @@ public class FileEntity extends BaseEntity<FileEntity> {
     /** 上传会话ID（分片上传使用） */
     private String uploadId;
 
+    /** 内容哈希（SHA-256，相同内容的文件共享物理存储） */
+    private String contentHash;
+
     // 初始化上传时间（MyBatis 手动设置）
     public void initUploadTime() {
         this.uploadTime = LocalDateTime.now();
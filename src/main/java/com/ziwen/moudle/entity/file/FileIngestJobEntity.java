@@ -0,0 +1,47 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * RAG 入库任务实体
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FileIngestJobEntity extends BaseEntity<FileIngestJobEntity> {
+
+    /** 文件ID */
+    private Long fileId;
+
+    /** 任务状态（IngestStatusEnum） */
+    private String status;
+
+    /** 文本片段总数 */
+    private Integer totalChunks;
+
+    /** 已处理片段数 */
+    private Integer processedChunks;
+
+    /** 执行次数 */
+    private Integer attempts;
+
+    /** 执行节点 */
+    private String ownerNode;
+
+    /** 租约到期时间（毫秒时间戳），执行节点定时续约，过期后任务重新排队 */
+    private Long leaseUntil;
+
+    /** 失败原因 */
+    private String errorMessage;
+
+    /** 开始执行时间 */
+    private LocalDateTime startTime;
+
+    /** 结束时间 */
+    private LocalDateTime finishTime;
+}
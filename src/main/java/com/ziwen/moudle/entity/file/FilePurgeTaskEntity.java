@@ -0,0 +1,45 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 文件清理任务 - 文件记录删除后，由后台批量清理物理存储、RAG 片段和向量，完成后删除任务
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FilePurgeTaskEntity extends BaseEntity<FilePurgeTaskEntity> {
+
+    /** 已删除的文件ID */
+    private Long fileId;
+
+    /** 需要删除片段和向量的文件ID（为空表示没有 RAG 数据） */
+    private Long ragFileId;
+
+    /** 存储路径（为空表示不删除物理存储） */
+    private String filePath;
+
+    /** 是否为分片上传（旧版分片目录一并删除） */
+    private Boolean isChunked;
+
+    /** 上传会话ID */
+    private String uploadId;
+
+    /** 状态（PENDING / FAILED） */
+    private String status;
+
+    /** 已尝试次数 */
+    private Integer attempts;
+
+    /** 下次可执行时间（毫秒时间戳），领取后顺延作为租约，节点宕机后租约到期由其他节点接手 */
+    private Long nextAttemptAt;
+
+    /** 领取批次标识 */
+    private String claimToken;
+
+    /** 最近一次失败原因 */
+    private String lastError;
+}
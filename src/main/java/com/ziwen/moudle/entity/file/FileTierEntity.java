@@ -0,0 +1,48 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 文件存储层级 - 按存储路径记录访问次数、最近访问时间及归档信息（按内容去重的文件共用一条记录）
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FileTierEntity extends BaseEntity<FileTierEntity> {
+
+    /** 存储路径（与 file.file_path 一致） */
+    private String storagePath;
+
+    /** 存储层级（HOT / COLD） */
+    private String tier;
+
+    /** 累计访问次数 */
+    private Long accessCount;
+
+    /** 最近访问时间（毫秒时间戳） */
+    private Long lastAccessAt;
+
+    /** 存储路径下最小的文件ID（归档候选查询时返回，作为扫描游标） */
+    private Long fileId;
+
+    /** 文件内容类型（归档候选查询时返回，决定压缩级别） */
+    private String contentType;
+
+    /** 原始大小（字节） */
+    private Long fileSize;
+
+    /** 归档文件路径（绝对路径） */
+    private String archivePath;
+
+    /** 归档后大小（字节） */
+    private Long archivedSize;
+
+    /** 归档时间（毫秒时间戳） */
+    private Long archivedAt;
+
+    /** 原数据文件的修改时间（恢复时还原，保持 ETag / Last-Modified 不变） */
+    private Long dataModifiedAt;
+}
@@ -0,0 +1,27 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 文件访问令牌撤销记录 - 各节点定时同步到内存撤销列表
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FileTokenRevocationEntity extends BaseEntity<FileTokenRevocationEntity> {
+
+    /** 撤销类型（TOKEN / FILE） */
+    private String revokeType;
+
+    /** 撤销目标：令牌ID 或 文件ID */
+    private String target;
+
+    /** 撤销时间（毫秒时间戳），FILE 类型撤销此时间之前签发的令牌 */
+    private Long revokedAt;
+
+    /** 记录失效时间（毫秒时间戳），之后被撤销的令牌已自然过期，记录可删除 */
+    private Long expiresAt;
+}
@@ -0,0 +1,27 @@
+package com.ziwen.moudle.entity.file;
+
+import com.ziwen.moudle.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 存储卷 - 一个存储根目录（通常对应一块磁盘），文件存储路径以卷编码引用，迁移挂载点只需修改根目录
+ *
+ * @author ziwen
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class StorageVolumeEntity extends BaseEntity<StorageVolumeEntity> {
+
+    /** 卷编码（写入文件存储路径，创建后不可修改） */
+    private String volumeCode;
+
+    /** 根目录（绝对路径） */
+    private String rootPath;
+
+    /** 分配权重（一致性哈希的虚拟节点倍数） */
+    private Integer weight;
+
+    /** 状态（ACTIVE / READONLY） */
+    private String status;
+}
@@ -0,0 +1,33 @@
+package com.ziwen.moudle.enums;
+
+import lombok.Getter;
+
+/**
+ * RAG 入库任务状态
+ *
+ * @author ziwen
+ */
+@Getter
+public enum IngestStatusEnum {
+
+    QUEUED("排队中"),
+    PARSING("解析中"),
+    EMBEDDING("向量化中"),
+    INDEXED("已入库"),
+    FAILED("失败");
+
+    private String desc;
+
+    IngestStatusEnum(String desc) {
+        this.desc = desc;
+    }
+
+    public static IngestStatusEnum getByName(String name) {
+        for (IngestStatusEnum status : IngestStatusEnum.values()) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
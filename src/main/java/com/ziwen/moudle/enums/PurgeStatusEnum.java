@@ -0,0 +1,30 @@
+package com.ziwen.moudle.enums;
+
+import lombok.Getter;
+
+/**
+ * 文件清理任务状态
+ *
+ * @author ziwen
+ */
+@Getter
+public enum PurgeStatusEnum {
+
+    PENDING("待清理"),
+    FAILED("多次重试后失败");
+
+    private String desc;
+
+    PurgeStatusEnum(String desc) {
+        this.desc = desc;
+    }
+
+    public static PurgeStatusEnum getByName(String name) {
+        for (PurgeStatusEnum status : PurgeStatusEnum.values()) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
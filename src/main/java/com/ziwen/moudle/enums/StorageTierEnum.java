@@ -0,0 +1,30 @@
+package com.ziwen.moudle.enums;
+
+import lombok.Getter;
+
+/**
+ * 文件存储层级
+ *
+ * @author ziwen
+ */
+@Getter
+public enum StorageTierEnum {
+
+    HOT("主存储卷"),
+    COLD("压缩归档");
+
+    private String desc;
+
+    StorageTierEnum(String desc) {
+        this.desc = desc;
+    }
+
+    public static StorageTierEnum getByName(String name) {
+        for (StorageTierEnum tier : StorageTierEnum.values()) {
+            if (tier.name().equals(name)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.ziwen.moudle.enums;
+
+import lombok.Getter;
+
+/**
+ * 文件访问令牌撤销类型
+ *
+ * @author ziwen
+ */
+@Getter
+public enum TokenRevokeTypeEnum {
+
+    TOKEN("单个令牌"),
+    FILE("文件的全部令牌");
+
+    private String desc;
+
+    TokenRevokeTypeEnum(String desc) {
+        this.desc = desc;
+    }
+
+    public static TokenRevokeTypeEnum getByName(String name) {
+        for (TokenRevokeTypeEnum type : TokenRevokeTypeEnum.values()) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
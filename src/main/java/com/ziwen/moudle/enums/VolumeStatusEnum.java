@@ -0,0 +1,30 @@
+package com.ziwen.moudle.enums;
+
+import lombok.Getter;
+
+/**
+ * 存储卷状态
+ *
+ * @author ziwen
+ */
+@Getter
+public enum VolumeStatusEnum {
+
+    ACTIVE("可写入"),
+    READONLY("只读（不再分配新文件，已有文件照常读取）");
+
+    private String desc;
+
+    VolumeStatusEnum(String desc) {
+        this.desc = desc;
+    }
+
+    public static VolumeStatusEnum getByName(String name) {
+        for (VolumeStatusEnum status : VolumeStatusEnum.values()) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.FileBlobEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 文件内容Mapper（内容去重 / 引用计数）
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface FileBlobMapper {
+
+    /**
+     * 根据内容哈希查询
+     *
+     * @param contentHash 内容哈希
+     * @return 文件内容信息
+     */
+    FileBlobEntity selectByHash(@Param("contentHash") String contentHash);
+
+    /**
+     * 插入文件内容（哈希已存在时忽略）
+     *
+     * @param blob 文件内容信息
+     * @return 影响行数，0 表示已被其他上传抢先登记
+     */
+    int insertIgnore(FileBlobEntity blob);
+
+    /**
+     * 增加引用（引用数已归零、即将被回收的内容不再增加）
+     *
+     * @param contentHash 内容哈希
+     * @return 影响行数
+     */
+    int incrementRef(@Param("contentHash") String contentHash);
+
+    /**
+     * 减少引用
+     *
+     * @param contentHash 内容哈希
+     * @return 影响行数
+     */
+    int decrementRef(@Param("contentHash") String contentHash);
+
+    /**
+     * 删除引用数已归零的内容记录
+     *
+     * @param contentHash 内容哈希
+     * @return 影响行数
+     */
+    int deleteUnreferenced(@Param("contentHash") String contentHash);
+
+    /**
+     * 尚无持有 RAG 片段的文件时，设置为指定文件
+     *
+     * @param contentHash 内容哈希
+     * @param ragFileId 文件ID
+     * @return 影响行数，0 表示已有其他文件持有
+     */
+    int claimRagFileId(@Param("contentHash") String contentHash, @Param("ragFileId") Long ragFileId);
+
+    /**
+     * 持有 RAG 片段的文件仍为 expected 时改为 ragFileId
+     *
+     * @param contentHash 内容哈希
+     * @param expected 当前持有片段的文件ID
+     * @param ragFileId 新的文件ID
+     * @return 影响行数，0 表示持有者已被改变
+     */
+    int replaceRagFileId(@Param("contentHash") String contentHash,
+                         @Param("expected") Long expected,
+                         @Param("ragFileId") Long ragFileId);
+}
@@ -21,6 +21,11 @@ public interface FileChunkMapper {
      */
     void insert(FileChunkEntity chunk);
 
+    /**
+     * 批量插入片段（ID 由调用方生成）
+     */
+    void insertBatch(@Param("chunks") List<FileChunkEntity> chunks);
+
     /**
      * 根据ID查询
      */
@@ -40,5 +45,23 @@ public interface FileChunkMapper {
      * 删除文件的所有片段
      */
     void deleteByFileId(@Param("fileId") Long fileId);
-}
 
+    /**
+     * 查询多个文件的片段ID（包括已软删除的片段）
+     */
+    List<Long> selectIdsByFileIds(@Param("fileIds") List<Long> fileIds);
+
+    /**
+     * 物理删除多个文件的片段，单次最多删除 limit 行
+     *
+     * @return 删除的行数
+     */
+    int purgeByFileIds(@Param("fileIds") List<Long> fileIds, @Param("limit") int limit);
+
+    /**
+     * 把文件的片段转给另一个文件（向量按片段ID关联，无需改动）
+     *
+     * @return 转移的行数
+     */
+    int updateFileId(@Param("fromFileId") Long fromFileId, @Param("toFileId") Long toFileId);
+}
@@ -0,0 +1,88 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.FileIngestJobEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * RAG 入库任务Mapper
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface FileIngestJobMapper {
+
+    /**
+     * 插入任务
+     *
+     * @param job 任务信息
+     */
+    void insert(FileIngestJobEntity job);
+
+    /**
+     * 根据ID查询任务
+     *
+     * @param id 任务ID
+     * @return 任务信息
+     */
+    FileIngestJobEntity selectById(@Param("id") Long id);
+
+    /**
+     * 查询文件最近一次入库任务
+     *
+     * @param fileId 文件ID
+     * @return 任务信息
+     */
+    FileIngestJobEntity selectLatestByFileId(@Param("fileId") Long fileId);
+
+    /**
+     * 按状态查询任务（按创建时间先后）
+     *
+     * @param status 任务状态
+     * @param limit 最大数量
+     * @return 任务列表
+     */
+    List<FileIngestJobEntity> selectByStatus(@Param("status") String status, @Param("limit") int limit);
+
+    /**
+     * 根据ID更新任务
+     * 指定了执行节点时，只在任务仍由该节点执行时更新（租约过期被其他节点接手后不再覆盖）
+     *
+     * @param job 任务信息
+     * @return 影响行数
+     */
+    int updateById(FileIngestJobEntity job);
+
+    /**
+     * 领取排队中的任务
+     *
+     * @param id 任务ID
+     * @param ownerNode 执行节点
+     * @param leaseUntil 租约到期时间（毫秒时间戳）
+     * @return 影响行数，0 表示任务已被其他节点领取或不再排队
+     */
+    int claim(@Param("id") Long id, @Param("ownerNode") String ownerNode, @Param("leaseUntil") long leaseUntil);
+
+    /**
+     * 续约本节点执行中的任务
+     *
+     * @param ids 任务ID
+     * @param ownerNode 执行节点
+     * @param leaseUntil 新的租约到期时间（毫秒时间戳）
+     * @return 续约的任务数
+     */
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("ownerNode") String ownerNode,
+                    @Param("leaseUntil") long leaseUntil);
+
+    /**
+     * 将执行中的任务重置为排队：指定节点的任务，以及租约已过期的任务
+     *
+     * @param ownerNode 执行节点（该节点重启，之前的任务均已中断），为空时只重置租约过期的任务
+     * @param now 当前时间（毫秒时间戳）
+     * @return 重置的任务数
+     */
+    int resetRunning(@Param("ownerNode") String ownerNode, @Param("now") long now);
+}
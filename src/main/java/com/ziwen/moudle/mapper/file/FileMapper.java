@@ -1,9 +1,12 @@
 package com.ziwen.moudle.mapper.file;
 
+import com.ziwen.moudle.dto.file.FileListItemDTO;
+import com.ziwen.moudle.dto.file.FileQueryDTO;
 import com.ziwen.moudle.entity.file.FileEntity;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -21,6 +24,54 @@ public interface FileMapper {
      */
     List<FileEntity> selectFileList();
 
+    /**
+     * 按条件分页查询文件列表（游标分页，按上传时间、ID倒序）
+     *
+     * @param query 查询条件
+     * @param uploadFrom 上传时间起（包含），可为空
+     * @param uploadBefore 上传时间止（不包含），可为空
+     * @param cursorTime 游标位置的上传时间，第一页为空
+     * @param cursorId 游标位置的文件ID，第一页为空
+     * @param limit 查询数量
+     * @return 文件列表项
+     */
+    List<FileListItemDTO> selectPage(@Param("query") FileQueryDTO query,
+                                     @Param("uploadFrom") LocalDateTime uploadFrom,
+                                     @Param("uploadBefore") LocalDateTime uploadBefore,
+                                     @Param("cursorTime") LocalDateTime cursorTime,
+                                     @Param("cursorId") Long cursorId,
+                                     @Param("limit") int limit);
+
+    /**
+     * 按ID顺序分批查询文件名（构建搜索索引用）
+     *
+     * @param afterId 起始ID（不包含），第一批传 0
+     * @param limit 批量大小
+     * @return 文件（只有 id、originalName、updateTime）
+     */
+    List<FileEntity> selectNamesAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按ID顺序分批查询分片存储的文件（迁移旧版分片、校验分段索引用）
+     *
+     * @param afterId 起始ID（不包含），第一批传 0
+     * @param limit 批量大小
+     * @return 文件列表
+     */
+    List<FileEntity> selectChunkedAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按修改时间顺序分批查询变更的文件名（包含已删除的文件，同步搜索索引用）
+     *
+     * @param afterTime 起始修改时间
+     * @param afterId 与 afterTime 相同时的起始ID（不包含），第一批传 0
+     * @param limit 批量大小
+     * @return 文件（只有 id、originalName、updateTime、isDeleted）
+     */
+    List<FileEntity> selectNamesChangedSince(@Param("afterTime") LocalDateTime afterTime,
+                                             @Param("afterId") long afterId,
+                                             @Param("limit") int limit);
+
     /**
      * 根据ID查询文件
      *
@@ -29,6 +80,14 @@ public interface FileMapper {
      */
     FileEntity selectById(@Param("id") Long id);
 
+    /**
+     * 根据内容哈希查询任意一条未删除的文件
+     *
+     * @param contentHash 内容哈希
+     * @return 文件信息
+     */
+    FileEntity selectByContentHash(@Param("contentHash") String contentHash);
+
     /**
      * 插入文件
      *
@@ -0,0 +1,74 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.FilePurgeTaskEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 文件清理任务Mapper
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface FilePurgeTaskMapper {
+
+    /**
+     * 插入清理任务
+     *
+     * @param task 清理任务
+     */
+    void insert(FilePurgeTaskEntity task);
+
+    /**
+     * 领取到期的待清理任务：写入领取标识并把下次执行时间顺延到租约结束
+     *
+     * @param claimToken 领取标识
+     * @param now 当前时间（毫秒时间戳）
+     * @param leaseUntil 租约结束时间（毫秒时间戳）
+     * @param limit 最多领取数量
+     * @return 领取的任务数
+     */
+    int claim(@Param("claimToken") String claimToken, @Param("now") long now,
+              @Param("leaseUntil") long leaseUntil, @Param("limit") int limit);
+
+    /**
+     * 查询领取到的任务
+     *
+     * @param claimToken 领取标识
+     * @return 任务列表
+     */
+    List<FilePurgeTaskEntity> selectByClaimToken(@Param("claimToken") String claimToken);
+
+    /**
+     * 根据ID更新任务（重试信息）
+     *
+     * @param task 任务
+     */
+    void updateById(FilePurgeTaskEntity task);
+
+    /**
+     * 删除已完成的任务（物理删除）
+     *
+     * @param ids 任务ID
+     * @return 删除的行数
+     */
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 将失败的任务重置为待清理
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 重置的任务数
+     */
+    int resetFailed(@Param("now") long now);
+
+    /**
+     * 按状态统计任务数
+     *
+     * @param status 状态
+     * @return 任务数
+     */
+    long countByStatus(@Param("status") String status);
+}
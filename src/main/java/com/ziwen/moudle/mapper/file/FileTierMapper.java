@@ -0,0 +1,84 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.FileTierEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件存储层级Mapper
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface FileTierMapper {
+
+    /**
+     * 批量累加访问次数并更新最近访问时间（记录不存在时插入）
+     *
+     * @param entries 存储路径、本批访问次数、最近访问时间、新记录的ID
+     * @return 影响行数
+     */
+    int upsertAccess(@Param("entries") List<FileTierEntity> entries);
+
+    /**
+     * 查询扫描窗口的结束ID（从起始ID往后按ID顺序取 limit 个文件）
+     *
+     * @param afterId 起始ID（不包含）
+     * @param limit 窗口大小
+     * @return 窗口内最大的文件ID；起始ID之后没有文件时返回 null
+     */
+    Long selectScanEnd(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 查询归档候选：文件ID在 (afterId, untilId] 内、仍在主存储、最近访问（无访问记录时按上传时间）早于截止时间的存储路径
+     * 按存储路径中最小的文件ID排序
+     *
+     * @param cutoff 截止时间（毫秒时间戳）
+     * @param minSize 最小文件大小
+     * @param afterId 窗口起始ID（不包含）
+     * @param untilId 窗口结束ID（包含）
+     * @param limit 最大数量
+     * @return 文件ID、存储路径、内容类型、文件大小
+     */
+    List<FileTierEntity> selectColdCandidates(@Param("cutoff") long cutoff,
+                                              @Param("minSize") long minSize,
+                                              @Param("afterId") long afterId,
+                                              @Param("untilId") long untilId,
+                                              @Param("limit") int limit);
+
+    /**
+     * 按存储路径查询
+     */
+    FileTierEntity selectByStoragePath(@Param("storagePath") String storagePath);
+
+    /**
+     * 标记为已归档（记录不存在时插入）
+     *
+     * @param tier 存储路径、归档路径、原始大小、归档后大小、归档时间、原修改时间
+     * @return 影响行数
+     */
+    int markCold(FileTierEntity tier);
+
+    /**
+     * 标记为已恢复到主存储，清除归档信息
+     *
+     * @param storagePath 存储路径
+     * @return 影响行数
+     */
+    int markHot(@Param("storagePath") String storagePath);
+
+    /**
+     * 物理删除记录（文件存储被删除时）
+     */
+    int deleteByStoragePath(@Param("storagePath") String storagePath);
+
+    /**
+     * 各层级的文件数、原始大小合计、归档后大小合计
+     *
+     * @return 每行包含 tier、files、fileBytes、archivedBytes
+     */
+    List<Map<String, Object>> selectTierSummary();
+}
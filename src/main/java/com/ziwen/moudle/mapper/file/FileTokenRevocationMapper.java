@@ -0,0 +1,40 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.FileTokenRevocationEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 文件访问令牌撤销记录Mapper
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface FileTokenRevocationMapper {
+
+    /**
+     * 插入撤销记录
+     *
+     * @param revocation 撤销记录
+     */
+    void insert(FileTokenRevocationEntity revocation);
+
+    /**
+     * 查询指定时间之后撤销、仍然有效的撤销记录
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @param since 撤销时间下限（毫秒时间戳，包含）
+     * @return 撤销记录列表
+     */
+    List<FileTokenRevocationEntity> selectActiveSince(@Param("now") long now, @Param("since") long since);
+
+    /**
+     * 删除已失效的撤销记录
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 删除的记录数
+     */
+    int deleteExpired(@Param("now") long now);
+}
@@ -0,0 +1,37 @@
+package com.ziwen.moudle.mapper.file;
+
+import com.ziwen.moudle.entity.file.StorageVolumeEntity;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+
+/**
+ * 存储卷Mapper
+ *
+ * @author ziwen
+ */
+@Mapper
+public interface StorageVolumeMapper {
+
+    /**
+     * 插入存储卷
+     *
+     * @param volume 存储卷
+     */
+    void insert(StorageVolumeEntity volume);
+
+    /**
+     * 按卷编码更新根目录、权重和状态（为空的字段不更新）
+     *
+     * @param volume 存储卷
+     * @return 影响行数
+     */
+    int updateByCode(StorageVolumeEntity volume);
+
+    /**
+     * 查询全部存储卷
+     *
+     * @return 存储卷列表
+     */
+    List<StorageVolumeEntity> selectAll();
+}
@@ -258,6 +258,17 @@ public class EmbeddingService {
      * 批量文本向量化 - 终极修复：替换为RestTemplate避开WebClient底层编码坑
      */
     public Mono<List<List<Float>>> embedTexts(List<String> texts) {
+        return embedTexts(texts, "document");
+    }
+
+    /**
+     * 批量文本向量化 - 可指定类型
+     * 一次请求发送多个文本（调用方负责不超过接口的单次文本数上限），结果按 text_index 对应回输入顺序
+     *
+     * @param texts 文本列表
+     * @param textType "query" 用于查询，"document" 用于文档入库
+     */
+    public Mono<List<List<Float>>> embedTexts(List<String> texts, String textType) {
         return Mono.fromCallable(() -> {
             try {
                 log.info("批量向量化 {} 个文本", texts.size());
@@ -267,7 +278,7 @@ public class EmbeddingService {
                     .map(this::cleanTextForJson) // 使用统一清洗方法
                     .toList();
 
-                log.info("最终清理后文本数量: {}", cleanedTexts.size());
+                log.debug("最终清理后文本数量: {}", cleanedTexts.size());
 
                 // 2. 用JSONObject工具构建标准JSON请求体（符合DashScope原生API格式）
                 JSONObject requestJson = new JSONObject();
@@ -283,14 +294,14 @@ public class EmbeddingService {
                 // parameters 也需要包装成对象
                 JSONObject parameters = new JSONObject();
                 parameters.put("dimension", 1024);
-                parameters.put("text_type", "document");
+                parameters.put("text_type", textType);
                 requestJson.put("parameters", parameters);
 
                 String requestBody = requestJson.toJSONString();
-                log.info("【工具构建的JSON请求体】: {}", requestBody);
+                log.debug("【工具构建的JSON请求体】: {}", requestBody);
 
                 String fullUrl = dashScopeConfig.getBaseUrl() + "/services/embeddings/text-embedding/text-embedding";
-                log.info("正在调用批量文本向量API: {}", fullUrl);
+                log.debug("正在调用批量文本向量API: {}", fullUrl);
 
                 // 3. 构建请求头（强制UTF-8编码）
                 HttpHeaders headers = new HttpHeaders();
@@ -313,7 +324,7 @@ public class EmbeddingService {
                             "，响应体：" + responseEntity.getBody());
                 }
                 String response = responseEntity.getBody();
-                log.info("API响应: {}", response);
+                log.debug("API响应: {}", response);
 
                 // 6. 解析向量
                 JSONObject jsonResponse = JSONObject.parseObject(response);
@@ -326,20 +337,25 @@ public class EmbeddingService {
                     throw new RuntimeException("embeddings数组为空：" + response);
                 }
 
-                List<List<Float>> result = new ArrayList<>();
+                // 按 text_index 放回输入顺序（缺少 text_index 时按返回顺序），任一文本缺少向量都视为失败，避免错位
+                List<List<Float>> result = new ArrayList<>(Collections.nCopies(texts.size(), null));
                 for (int i = 0; i < embeddings.size(); i++) {
                     JSONObject item = embeddings.getJSONObject(i);
                     JSONArray embedding = item.getJSONArray("embedding");
-
-                    if (embedding != null) {
-                        List<Float> vector = new ArrayList<>();
-                        for (int j = 0; j < embedding.size(); j++) {
-                            vector.add(embedding.getFloat(j));
-                        }
-                        result.add(vector);
+                    int index = item.containsKey("text_index") ? item.getIntValue("text_index") : i;
+                    if (embedding == null || index < 0 || index >= texts.size()) {
+                        throw new RuntimeException("embeddings第 " + i + " 项无效");
                     }
+                    List<Float> vector = new ArrayList<>(embedding.size());
+                    for (int j = 0; j < embedding.size(); j++) {
+                        vector.add(embedding.getFloat(j));
+                    }
+                    result.set(index, vector);
+                }
+                if (result.contains(null)) {
+                    throw new RuntimeException("返回的向量数与文本数不一致：" + embeddings.size() + " != " + texts.size());
                 }
-                log.info("批量文本向量化完成，共 {} 个向量，维度: {}",
+                log.debug("批量文本向量化完成，共 {} 个向量，维度: {}",
                     result.size(), result.isEmpty() ? 0 : result.get(0).size());
                 return result;
 
@@ -0,0 +1,679 @@
+package com.ziwen.moudle.service.file;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.ziwen.moudle.utils.ContentHashUtil;
+import com.ziwen.moudle.utils.SegmentIndex;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * 分片上传服务
+ * 初始化时预分配目标文件，各分片按 chunkNumber * chunkSize 偏移直接写入目标文件，
+ * 合并阶段只校验完整性，不再复制数据；分片之间可并行上传
+ *
+ * 断点续传：每个分片写入并落盘后向 temp/{uploadId}/chunks.log 追加一条定长记录（序号、大小、CRC32C，同样落盘后才应答），
+ * 重启后回放日志即可恢复已接收分片位图，客户端通过状态接口获取缺失区间后只补传缺失分片
+ *
+ * 未完成的会话（清单仍存在）超过 file.upload.session-ttl-hours 没有写入时，定时清理会话目录和预分配的目标文件
+ *
+ * 完整性校验：
+ * - 写入分片时同时计算 CRC32C，客户端提供了校验值时当场比对，不一致立即拒绝，客户端只需重传该分片
+ * - 整文件 SHA-256 按分片顺序增量计算：恰好是下一个分片时边写边算，乱序到达的分片在前面的分片到齐后
+ *   从页缓存读取补算，合并时只需补算剩余部分，顺序上传的文件合并时无需再读数据
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class ChunkUploadService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String JOURNAL_FILE = "chunks.log";
+
+    /** 分片日志记录长度：chunkNumber(int) + size(long) + crc32c(int) */
+    private static final int JOURNAL_RECORD_SIZE = 16;
+    /** 分片作废记录的 size 值 */
+    private static final long JOURNAL_INVALIDATED = -1;
+    /** 补算整文件摘要时的读取缓冲区大小 */
+    private static final int DIGEST_BUFFER_SIZE = 256 * 1024;
+
+    private final StorageVolumeService storageVolumeService;
+    private final FileStorageService fileStorageService;
+
+    /** 单个文件最大大小（与普通上传一致） */
+    private final long maxFileSize;
+    /** 未完成会话的最长空闲时间（毫秒） */
+    private final long sessionTtlMillis;
+
+    /**
+     * 上传会话
+     * key: uploadId, value: 会话信息
+     */
+    private final ConcurrentHashMap<String, ChunkUploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkUploadService(StorageVolumeService storageVolumeService, FileStorageService fileStorageService,
+                              @Value("${spring.servlet.multipart.max-file-size:4096MB}") DataSize maxFileSize,
+                              @Value("${file.upload.session-ttl-hours:24}") long sessionTtlHours) {
+        this.storageVolumeService = storageVolumeService;
+        this.fileStorageService = fileStorageService;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.sessionTtlMillis = TimeUnit.HOURS.toMillis(Math.max(1, sessionTtlHours));
+    }
+
+    /**
+     * 分片上传会话
+     */
+    @Data
+    public static class ChunkUploadSession {
+        private String uploadId;
+        private String fileName;
+        private int totalChunks;
+        private long chunkSize;
+        private long totalSize;
+        /** 预分配的目标文件（绝对路径） */
+        private String filePath;
+        /** 目标文件访问路径 */
+        private String accessPath;
+        /** 已接收的分片 */
+        private final BitSet received = new BitSet();
+        /** 各分片的 CRC32C 校验值（按分片序号） */
+        private int[] checksums;
+
+        /** 整文件 SHA-256 的增量计算状态：已按顺序计入前 digestedChunks 个分片，持有 digestLock 时读写 */
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private final ReentrantLock digestLock = new ReentrantLock();
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private MessageDigest digest = ContentHashUtil.newDigest();
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private int digestedChunks;
+
+        /**
+         * 指定分片的期望大小（最后一个分片可能不足 chunkSize）
+         */
+        public long expectedChunkSize(int chunkNumber) {
+            long offset = chunkNumber * chunkSize;
+            return Math.min(chunkSize, totalSize - offset);
+        }
+
+        /**
+         * 标记分片已接收
+         *
+         * @return 该分片之前已接收且内容（校验值）发生了变化
+         */
+        public synchronized boolean markReceived(int chunkNumber, int checksum) {
+            if (checksums == null) {
+                checksums = new int[totalChunks];
+            }
+            boolean changed = received.get(chunkNumber) && checksums[chunkNumber] != checksum;
+            received.set(chunkNumber);
+            checksums[chunkNumber] = checksum;
+            return changed;
+        }
+
+        /**
+         * 标记分片未接收（重传失败，目标文件中该区间的内容已不可信）
+         */
+        public synchronized void markMissing(int chunkNumber) {
+            received.clear(chunkNumber);
+        }
+
+        public synchronized boolean isReceived(int chunkNumber) {
+            return received.get(chunkNumber);
+        }
+
+        public synchronized int checksumOf(int chunkNumber) {
+            return checksums != null ? checksums[chunkNumber] : 0;
+        }
+
+        /**
+         * 各分片 CRC32C 的副本（按分片序号）
+         */
+        public synchronized int[] checksumsSnapshot() {
+            return checksums != null ? checksums.clone() : new int[totalChunks];
+        }
+
+        public synchronized int receivedCount() {
+            return received.cardinality();
+        }
+
+        public synchronized int firstMissing() {
+            int missing = received.nextClearBit(0);
+            return missing < totalChunks ? missing : -1;
+        }
+
+        /**
+         * 缺失的分片区间（闭区间，按分片序号）
+         */
+        public synchronized List<int[]> missingRanges() {
+            List<int[]> ranges = new ArrayList<>();
+            int start = received.nextClearBit(0);
+            while (start < totalChunks) {
+                int end = received.nextSetBit(start);
+                if (end < 0 || end > totalChunks) {
+                    end = totalChunks;
+                }
+                ranges.add(new int[]{start, end - 1});
+                start = received.nextClearBit(end);
+            }
+            return ranges;
+        }
+
+        /**
+         * 已接收的字节数
+         */
+        public synchronized long receivedBytes() {
+            long bytes = 0;
+            for (int i = received.nextSetBit(0); i >= 0 && i < totalChunks; i = received.nextSetBit(i + 1)) {
+                bytes += expectedChunkSize(i);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 分片上传状态（供客户端断点续传）
+     */
+    @Data
+    public static class ChunkUploadStatus {
+        private String uploadId;
+        private String fileName;
+        private int totalChunks;
+        private long chunkSize;
+        private long totalSize;
+        private int receivedChunks;
+        private long receivedBytes;
+        /** 缺失的分片区间，每项为 [起始序号, 结束序号] */
+        private List<int[]> missingRanges;
+        private boolean complete;
+    }
+
+    /**
+     * 初始化分片上传：创建会话并预分配目标文件
+     *
+     * @param fileName 文件名
+     * @param totalChunks 分片总数
+     * @param chunkSize 分片大小（同时作为分段索引的段大小，不超过 {@link SegmentIndex#MAX_SEGMENT_SIZE}）
+     * @param totalSize 文件总大小
+     * @return 上传会话
+     * @throws IOException 预分配失败
+     */
+    public ChunkUploadSession init(String fileName, int totalChunks, long chunkSize, long totalSize) throws IOException {
+        if (chunkSize <= 0 || totalSize <= 0 || totalChunks <= 0) {
+            throw new IllegalArgumentException("分片参数无效");
+        }
+        if (chunkSize > SegmentIndex.MAX_SEGMENT_SIZE) {
+            // 分片大小即分段索引的段大小
+            throw new IllegalArgumentException("分片大小超过限制: " + chunkSize + " > " + SegmentIndex.MAX_SEGMENT_SIZE);
+        }
+        if (totalSize > maxFileSize) {
+            throw new IllegalArgumentException("文件大小超过限制: " + totalSize + " > " + maxFileSize);
+        }
+        long expectedChunks = (totalSize + chunkSize - 1) / chunkSize;
+        if (expectedChunks != totalChunks) {
+            throw new IllegalArgumentException("分片总数与文件大小不匹配，应为 " + expectedChunks + " 片");
+        }
+
+        StorageVolumeService.Placement placement = storageVolumeService.allocate(fileName);
+
+        ChunkUploadSession session = new ChunkUploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setFileName(fileName);
+        session.setTotalChunks(totalChunks);
+        session.setChunkSize(chunkSize);
+        session.setTotalSize(totalSize);
+        session.setFilePath(placement.getStoragePath());
+        session.setAccessPath(placement.getAccessPath());
+
+        // 预分配目标文件
+        try (RandomAccessFile raf = new RandomAccessFile(placement.getFile(), "rw")) {
+            raf.setLength(totalSize);
+        }
+
+        // 持久化会话清单，服务重启后仍可继续上传
+        File sessionDir = new File(fileStorageService.getChunkDir(session.getUploadId()));
+        if (!sessionDir.exists()) {
+            sessionDir.mkdirs();
+        }
+        writeManifest(session);
+
+        sessions.put(session.getUploadId(), session);
+        log.info("分片上传初始化: {}, 共 {} 片, 预分配 {} 字节", session.getUploadId(), totalChunks, totalSize);
+        return session;
+    }
+
+    /**
+     * 写入分片：按偏移直接写入预分配的目标文件
+     *
+     * @param uploadId 上传会话ID
+     * @param chunkNumber 分片序号（从0开始）
+     * @param chunk 分片内容
+     * @param expectedCrc32c 客户端计算的 CRC32C，为空不校验
+     * @throws IllegalArgumentException 参数错误或校验不一致（该分片需要重传）
+     * @throws IOException 写入失败
+     */
+    public void writeChunk(String uploadId, int chunkNumber, MultipartFile chunk, Integer expectedCrc32c)
+            throws IOException {
+        ChunkUploadSession session = getSession(uploadId);
+        if (chunkNumber < 0 || chunkNumber >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("分片序号超出范围: " + chunkNumber);
+        }
+        long expectedSize = session.expectedChunkSize(chunkNumber);
+        if (chunk.getSize() != expectedSize) {
+            throw new IllegalArgumentException("分片 " + chunkNumber + " 大小应为 " + expectedSize
+                    + " 字节，实际 " + chunk.getSize() + " 字节");
+        }
+
+        // 恰好是下一个待计入摘要的分片时，边写边计算整文件摘要；失败时恢复写入前的摘要状态
+        boolean digesting = session.digestLock.tryLock();
+        if (digesting && session.digestedChunks != chunkNumber) {
+            session.digestLock.unlock();
+            digesting = false;
+        }
+        MessageDigest backup = digesting ? cloneDigest(session.digest) : null;
+
+        long offset = chunkNumber * session.getChunkSize();
+        CRC32C crc = new CRC32C();
+        boolean success = false;
+        boolean changed;
+        try {
+            try (InputStream checked = new CheckedInputStream(chunk.getInputStream(), crc);
+                 InputStream in = digesting ? new DigestInputStream(checked, session.digest) : checked;
+                 FileChannel channel = FileChannel.open(fileStorageService.resolve(session.getFilePath()).toPath(), StandardOpenOption.WRITE);
+                 ReadableByteChannel src = Channels.newChannel(in)) {
+                long written = 0;
+                while (written < expectedSize) {
+                    long n = channel.transferFrom(src, offset + written, expectedSize - written);
+                    if (n <= 0) {
+                        break;
+                    }
+                    written += n;
+                }
+                if (written != expectedSize) {
+                    throw new IOException("分片 " + chunkNumber + " 写入不完整: " + written + "/" + expectedSize);
+                }
+                // 数据先落盘再写日志，宕机后日志记录的分片一定已在目标文件中
+                channel.force(false);
+            }
+
+            int checksum = (int) crc.getValue();
+            if (expectedCrc32c != null && checksum != expectedCrc32c) {
+                throw new IllegalArgumentException(String.format(
+                        "分片 %d 校验失败（CRC32C 应为 %08x，实际 %08x），请重新上传该分片",
+                        chunkNumber, expectedCrc32c, checksum));
+            }
+            appendJournal(session, chunkNumber, expectedSize, checksum);
+            changed = session.markReceived(chunkNumber, checksum);
+            if (digesting) {
+                session.digestedChunks++;
+            }
+            success = true;
+        } finally {
+            if (digesting) {
+                if (!success) {
+                    session.digest = backup;
+                }
+                session.digestLock.unlock();
+            }
+            if (!success && session.isReceived(chunkNumber)) {
+                // 已接收过的分片被部分覆盖，作废后由客户端重传
+                invalidateChunk(session, chunkNumber);
+            }
+        }
+
+        if (changed && !digesting) {
+            resetDigestIfCovered(session, chunkNumber);
+        }
+        try {
+            advanceDigest(session, false);
+        } catch (IOException e) {
+            // 合并时会再次补算
+            log.warn("补算上传摘要失败: {}", uploadId, e);
+        }
+    }
+
+    /**
+     * 整文件 SHA-256：补算尚未计入的分片（只读取剩余部分）
+     *
+     * @param session 分片已全部到达的上传会话
+     * @return 十六进制摘要
+     * @throws IOException 读取失败
+     */
+    public String contentHash(ChunkUploadSession session) throws IOException {
+        session.digestLock.lock();
+        try {
+            advanceDigest(session, true);
+            if (session.digestedChunks != session.getTotalChunks()) {
+                throw new IllegalStateException("分片 " + session.digestedChunks + " 不存在");
+            }
+            // 使用副本输出，合并失败重试时摘要状态仍然可用
+            return ContentHashUtil.toHex(cloneDigest(session.digest));
+        } finally {
+            session.digestLock.unlock();
+        }
+    }
+
+    /**
+     * 按顺序把已到达的分片计入摘要（从目标文件读取，刚写入的分片通常命中页缓存）
+     *
+     * @param wait 是否等待其他线程释放摘要锁；不等待时由持有锁的线程或合并时补算
+     */
+    private void advanceDigest(ChunkUploadSession session, boolean wait) throws IOException {
+        if (wait) {
+            session.digestLock.lock();
+        } else if (!session.digestLock.tryLock()) {
+            return;
+        }
+        FileChannel channel = null;
+        try {
+            ByteBuffer buffer = null;
+            while (session.digestedChunks < session.getTotalChunks() && session.isReceived(session.digestedChunks)) {
+                if (channel == null) {
+                    channel = FileChannel.open(fileStorageService.resolve(session.getFilePath()).toPath(),
+                            StandardOpenOption.READ);
+                    buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
+                }
+                int chunkNumber = session.digestedChunks;
+                long position = chunkNumber * session.getChunkSize();
+                long end = position + session.expectedChunkSize(chunkNumber);
+                MessageDigest next = cloneDigest(session.digest);
+                while (position < end) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                    int n = channel.read(buffer, position);
+                    if (n < 0) {
+                        throw new IOException("目标文件长度不足: " + session.getFilePath());
+                    }
+                    buffer.flip();
+                    next.update(buffer);
+                    position += n;
+                }
+                session.digest = next;
+                session.digestedChunks++;
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+            session.digestLock.unlock();
+        }
+    }
+
+    /**
+     * 已计入摘要的分片内容发生变化时，从头重新计算
+     */
+    private void resetDigestIfCovered(ChunkUploadSession session, int chunkNumber) {
+        session.digestLock.lock();
+        try {
+            if (chunkNumber < session.digestedChunks) {
+                session.digest = ContentHashUtil.newDigest();
+                session.digestedChunks = 0;
+            }
+        } finally {
+            session.digestLock.unlock();
+        }
+    }
+
+    /**
+     * 作废分片：记录作废日志并标记为未接收
+     */
+    private void invalidateChunk(ChunkUploadSession session, int chunkNumber) {
+        try {
+            appendJournal(session, chunkNumber, JOURNAL_INVALIDATED, 0);
+        } catch (IOException e) {
+            log.error("写入分片作废记录失败: {}/{}", session.getUploadId(), chunkNumber, e);
+        }
+        session.markMissing(chunkNumber);
+        resetDigestIfCovered(session, chunkNumber);
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            // JDK 的 SHA-256 实现支持克隆
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 查询上传状态：已接收分片及缺失区间
+     *
+     * @param uploadId 上传会话ID
+     * @return 上传状态
+     */
+    public ChunkUploadStatus getStatus(String uploadId) {
+        ChunkUploadSession session = getSession(uploadId);
+        ChunkUploadStatus status = new ChunkUploadStatus();
+        status.setUploadId(session.getUploadId());
+        status.setFileName(session.getFileName());
+        status.setTotalChunks(session.getTotalChunks());
+        status.setChunkSize(session.getChunkSize());
+        status.setTotalSize(session.getTotalSize());
+        status.setReceivedChunks(session.receivedCount());
+        status.setReceivedBytes(session.receivedBytes());
+        status.setMissingRanges(session.missingRanges());
+        status.setComplete(session.firstMissing() < 0);
+        return status;
+    }
+
+    /**
+     * 校验分片是否全部到达
+     *
+     * @param uploadId 上传会话ID
+     * @return 上传会话
+     * @throws IllegalStateException 存在缺失的分片
+     */
+    public ChunkUploadSession verifyComplete(String uploadId) {
+        ChunkUploadSession session = getSession(uploadId);
+        int missing = session.firstMissing();
+        if (missing >= 0) {
+            throw new IllegalStateException("分片 " + missing + " 不存在");
+        }
+        return session;
+    }
+
+    /**
+     * 上传完成（元信息已保存）后清理会话
+     */
+    public void finish(String uploadId) {
+        sessions.remove(uploadId);
+        File sessionDir = new File(fileStorageService.getChunkDir(uploadId));
+        for (String name : new String[]{MANIFEST_FILE, JOURNAL_FILE}) {
+            File file = new File(sessionDir, name);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+        if (sessionDir.exists()) {
+            sessionDir.delete();
+        }
+    }
+
+    /**
+     * 定时清理长时间没有写入的未完成会话：删除会话目录和预分配的目标文件
+     * 空闲时间按会话清单和分片日志的修改时间计算（每个分片写入都会追加日志），重启后同样适用
+     */
+    @Scheduled(fixedDelayString = "${file.upload.session-cleanup-interval:3600000}")
+    public void cleanupExpiredSessions() {
+        File[] dirs = new File(fileStorageService.getChunkDir("")).listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - sessionTtlMillis;
+        int count = 0;
+        for (File dir : dirs) {
+            File manifest = new File(dir, MANIFEST_FILE);
+            // 没有清单的目录是旧版自动分片的分片目录，不在此处理
+            if (!manifest.isFile()) {
+                continue;
+            }
+            long lastActivity = Math.max(manifest.lastModified(), new File(dir, JOURNAL_FILE).lastModified());
+            if (lastActivity >= cutoff) {
+                continue;
+            }
+            String uploadId = dir.getName();
+            ChunkUploadSession session = sessions.remove(uploadId);
+            if (session == null) {
+                session = readManifest(uploadId);
+            }
+            if (session != null && session.getFilePath() != null) {
+                File target = fileStorageService.resolve(session.getFilePath());
+                if (target.exists() && !target.delete()) {
+                    log.warn("删除过期上传的目标文件失败: {}", target.getAbsolutePath());
+                    continue;
+                }
+            }
+            finish(uploadId);
+            count++;
+        }
+        if (count > 0) {
+            log.info("清理过期的分片上传会话 {} 个", count);
+        }
+    }
+
+    /**
+     * 获取上传会话（内存中不存在时从会话清单和分片日志恢复）
+     */
+    public ChunkUploadSession getSession(String uploadId) {
+        ChunkUploadSession session = sessions.get(uploadId);
+        if (session != null) {
+            return session;
+        }
+        session = readManifest(uploadId);
+        if (session == null) {
+            throw new IllegalArgumentException("上传会话不存在: " + uploadId);
+        }
+        ChunkUploadSession existing = sessions.putIfAbsent(uploadId, session);
+        return existing != null ? existing : session;
+    }
+
+    private void writeManifest(ChunkUploadSession session) throws IOException {
+        JSONObject manifest = new JSONObject();
+        manifest.put("uploadId", session.getUploadId());
+        manifest.put("fileName", session.getFileName());
+        manifest.put("totalChunks", session.getTotalChunks());
+        manifest.put("chunkSize", session.getChunkSize());
+        manifest.put("totalSize", session.getTotalSize());
+        manifest.put("filePath", session.getFilePath());
+        manifest.put("accessPath", session.getAccessPath());
+
+        File file = new File(fileStorageService.getChunkDir(session.getUploadId()), MANIFEST_FILE);
+        Files.writeString(file.toPath(), manifest.toJSONString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 追加分片日志记录（同一会话内串行追加）
+     */
+    private void appendJournal(ChunkUploadSession session, int chunkNumber, long size, int checksum)
+            throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(JOURNAL_RECORD_SIZE);
+        record.putInt(chunkNumber).putLong(size).putInt(checksum).flip();
+
+        File journal = new File(fileStorageService.getChunkDir(session.getUploadId()), JOURNAL_FILE);
+        synchronized (session) {
+            try (FileChannel channel = FileChannel.open(journal.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                // 日志落盘后才确认分片
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * 回放分片日志，恢复已接收分片位图
+     */
+    private void replayJournal(ChunkUploadSession session) throws IOException {
+        File journal = new File(fileStorageService.getChunkDir(session.getUploadId()), JOURNAL_FILE);
+        if (!journal.isFile()) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journal.toPath()));
+        // 末尾不完整的记录（写入时宕机）截掉，否则之后追加的记录会整体错位
+        int torn = records.remaining() % JOURNAL_RECORD_SIZE;
+        if (torn != 0) {
+            try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(records.remaining() - torn);
+                channel.force(false);
+            }
+            log.warn("分片日志末尾有不完整的记录，已截掉 {} 字节: {}", torn, session.getUploadId());
+        }
+        while (records.remaining() >= JOURNAL_RECORD_SIZE) {
+            int chunkNumber = records.getInt();
+            long size = records.getLong();
+            int checksum = records.getInt();
+            if (chunkNumber < 0 || chunkNumber >= session.getTotalChunks()) {
+                continue;
+            }
+            if (size == JOURNAL_INVALIDATED) {
+                session.markMissing(chunkNumber);
+            } else if (size == session.expectedChunkSize(chunkNumber)) {
+                session.markReceived(chunkNumber, checksum);
+            }
+        }
+    }
+
+    private ChunkUploadSession readManifest(String uploadId) {
+        // uploadId 来自请求路径，防止路径穿越
+        if (uploadId == null || !uploadId.matches("[0-9a-fA-F\\-]+")) {
+            return null;
+        }
+        File file = new File(fileStorageService.getChunkDir(uploadId), MANIFEST_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject manifest = JSONObject.parseObject(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            ChunkUploadSession session = new ChunkUploadSession();
+            session.setUploadId(manifest.getString("uploadId"));
+            session.setFileName(manifest.getString("fileName"));
+            session.setTotalChunks(manifest.getIntValue("totalChunks"));
+            session.setChunkSize(manifest.getLongValue("chunkSize"));
+            session.setTotalSize(manifest.getLongValue("totalSize"));
+            session.setFilePath(manifest.getString("filePath"));
+            session.setAccessPath(manifest.getString("accessPath"));
+            replayJournal(session);
+            log.info("从分片日志恢复上传会话: {}, 已接收 {}/{} 片",
+                    uploadId, session.receivedCount(), session.getTotalChunks());
+            return session;
+        } catch (Exception e) {
+            log.error("读取上传会话清单失败: {}", uploadId, e);
+            return null;
+        }
+    }
+}
@@ -22,6 +22,12 @@ import java.nio.file.Files;
 @Service
 public class DocumentParserService {
 
+    private final FileStorageService fileStorageService;
+
+    public DocumentParserService(FileStorageService fileStorageService) {
+        this.fileStorageService = fileStorageService;
+    }
+
     /**
      * 解析结果
      */
@@ -83,7 +89,7 @@ public class DocumentParserService {
             }
             
             // 使用File类确保路径分隔符正确，然后转换为Path
-            File textFile = new File(file.getFilePath());
+            File textFile = fileStorageService.resolve(file.getFilePath());
             String text = Files.readString(textFile.toPath(), StandardCharsets.UTF_8);
 
             ParseResult result = new ParseResult();
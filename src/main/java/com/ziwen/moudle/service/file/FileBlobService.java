@@ -0,0 +1,214 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileBlobEntity;
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.mapper.file.FileBlobMapper;
+import com.ziwen.moudle.mapper.file.FileChunkMapper;
+import com.ziwen.moudle.mapper.file.FileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 文件内容去重服务
+ * 以内容 SHA-256 为键登记物理文件，多条文件记录共享同一份内容和 RAG 片段，
+ * 引用数归零时才删除物理文件和向量
+ *
+ * RAG 片段只挂在一个文件（rag_file_id）下：入库和重新入库都作用于该文件的片段，
+ * 该文件被删除而内容仍有其他引用时，片段转给仍存在的引用
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileBlobService {
+
+    /** 登记冲突后获取已登记内容的最大尝试次数 */
+    private static final int CONFLICT_MAX_ATTEMPTS = 5;
+    /** 登记冲突后的重试间隔（毫秒），每次递增 */
+    private static final long CONFLICT_RETRY_MILLIS = 50;
+
+    private final FileBlobMapper blobMapper;
+    private final FileMapper fileMapper;
+    private final FileChunkMapper chunkMapper;
+    private final FileService fileService;
+    private final FilePurgeService filePurgeService;
+
+    public FileBlobService(FileBlobMapper blobMapper,
+                           FileMapper fileMapper,
+                           FileChunkMapper chunkMapper,
+                           FileService fileService,
+                           FilePurgeService filePurgeService) {
+        this.blobMapper = blobMapper;
+        this.fileMapper = fileMapper;
+        this.chunkMapper = chunkMapper;
+        this.fileService = fileService;
+        this.filePurgeService = filePurgeService;
+    }
+
+    /**
+     * 查找可复用的已有内容，命中时引用数加一
+     *
+     * @param contentHash 内容哈希
+     * @param fileSize 文件大小
+     * @return 共享该内容的文件记录（用于复制存储信息），未命中返回 null
+     */
+    public FileEntity acquire(String contentHash, long fileSize) {
+        FileBlobEntity blob = blobMapper.selectByHash(contentHash);
+        if (blob == null || blob.getFileSize() == null || blob.getFileSize() != fileSize) {
+            return null;
+        }
+        if (blobMapper.incrementRef(contentHash) == 0) {
+            // 内容正在被回收
+            return null;
+        }
+        FileEntity existing = fileMapper.selectByContentHash(contentHash);
+        if (existing == null) {
+            unregister(contentHash);
+            return null;
+        }
+        return existing;
+    }
+
+    /**
+     * 登记冲突（相同内容已被并发上传先登记）后获取已登记的内容，命中时引用数加一
+     * 先登记者可能尚未保存文件记录，此时短暂等待后重试
+     *
+     * @return 共享该内容的文件记录；内容正在回收或先登记者上传失败时返回 null
+     */
+    public FileEntity acquireRegistered(String contentHash, long fileSize) {
+        for (int attempt = 1; ; attempt++) {
+            FileEntity existing = acquire(contentHash, fileSize);
+            if (existing != null || attempt >= CONFLICT_MAX_ATTEMPTS
+                    || blobMapper.selectByHash(contentHash) == null) {
+                return existing;
+            }
+            try {
+                Thread.sleep(CONFLICT_RETRY_MILLIS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 登记新内容（引用数为 1）
+     *
+     * @return 登记成功返回 true；相同内容已被其他上传登记时返回 false
+     */
+    public boolean register(String contentHash, String filePath, long fileSize) {
+        FileBlobEntity blob = new FileBlobEntity();
+        blob.setContentHash(contentHash);
+        blob.setFilePath(filePath);
+        blob.setFileSize(fileSize);
+        blob.setRefCount(1);
+        return blobMapper.insertIgnore(blob) == 1;
+    }
+
+    /**
+     * 确定持有该文件内容 RAG 片段的文件（尚无持有者时由该文件持有，后续重复上传直接复用其片段和向量）
+     *
+     * @param file 文件记录
+     * @return 持有片段的文件ID；没有内容哈希的文件返回自身ID
+     */
+    public Long ragFileIdOf(FileEntity file) {
+        String contentHash = file.getContentHash();
+        if (contentHash == null || contentHash.isEmpty()) {
+            return file.getId();
+        }
+        blobMapper.claimRagFileId(contentHash, file.getId());
+        FileBlobEntity blob = blobMapper.selectByHash(contentHash);
+        return blob != null && blob.getRagFileId() != null ? blob.getRagFileId() : file.getId();
+    }
+
+    /**
+     * 持有片段的文件已不存在时改由指定文件持有
+     *
+     * @param previous 原持有者
+     * @param fileId 新持有者
+     * @return 更换成功返回 true；持有者已被其他线程更换时返回 false
+     */
+    public boolean takeOverRagFile(String contentHash, Long previous, Long fileId) {
+        return blobMapper.replaceRagFileId(contentHash, previous, fileId) == 1;
+    }
+
+    /**
+     * 为重复上传的内容保存新的文件记录（复用已有文件的存储信息，不写盘、不重新向量化）
+     *
+     * @param existing 共享该内容的文件记录（{@link #acquire} 的返回值）
+     * @param originalName 原始文件名
+     * @param contentType 文件类型
+     * @return 新的文件记录
+     */
+    public FileEntity saveReference(FileEntity existing, String originalName, String contentType) {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setOriginalName(originalName);
+        fileEntity.setContentType(contentType);
+        fileEntity.setFileSize(existing.getFileSize());
+        fileEntity.setFilePath(existing.getFilePath());
+        fileEntity.setAccessPath(existing.getAccessPath());
+        fileEntity.setIsChunked(existing.getIsChunked());
+        fileEntity.setTotalChunks(existing.getTotalChunks());
+        fileEntity.setChunkSize(existing.getChunkSize());
+        fileEntity.setUploadId(existing.getUploadId());
+        fileEntity.setContentHash(existing.getContentHash());
+        fileEntity.initUploadTime();
+
+        try {
+            fileEntity.setId(fileService.saveFile(fileEntity));
+        } catch (RuntimeException e) {
+            release(fileEntity);
+            throw e;
+        }
+        log.info("重复内容复用: {} -> {}", fileEntity.getId(), existing.getId());
+        return fileEntity;
+    }
+
+    /**
+     * 减少引用，不处理物理文件
+     *
+     * @return 引用归零且内容记录已删除时返回 true
+     */
+    public boolean unregister(String contentHash) {
+        blobMapper.decrementRef(contentHash);
+        return blobMapper.deleteUnreferenced(contentHash) == 1;
+    }
+
+    /**
+     * 释放文件记录对内容的引用，引用归零时登记清理物理文件和 RAG 片段（后台执行）
+     *
+     * @param file 文件记录（需包含内容哈希和存储信息）
+     */
+    public void release(FileEntity file) {
+        String contentHash = file.getContentHash();
+        if (contentHash == null || contentHash.isEmpty()) {
+            return;
+        }
+        FileBlobEntity blob = blobMapper.selectByHash(contentHash);
+        if (!unregister(contentHash)) {
+            if (blob != null && file.getId() != null && file.getId().equals(blob.getRagFileId())) {
+                handOverRagFile(contentHash, file.getId());
+            }
+            return;
+        }
+
+        filePurgeService.submit(file, true, blob != null ? blob.getRagFileId() : null);
+        log.info("内容引用归零，已登记清理: {}", contentHash);
+    }
+
+    /**
+     * 持有 RAG 片段的文件被删除而内容仍有引用时，把片段转给仍存在的引用，检索结果不再指向已删除的文件
+     * 其他引用尚未保存记录时不处理，由下一次入库接手并清理
+     */
+    private void handOverRagFile(String contentHash, Long deletedFileId) {
+        FileEntity survivor = fileMapper.selectByContentHash(contentHash);
+        if (survivor == null || survivor.getId().equals(deletedFileId)) {
+            return;
+        }
+        if (!takeOverRagFile(contentHash, deletedFileId, survivor.getId())) {
+            return;
+        }
+        int moved = chunkMapper.updateFileId(deletedFileId, survivor.getId());
+        log.info("RAG 片段转给仍存在的引用: {} -> {}, 共 {} 个", deletedFileId, survivor.getId(), moved);
+    }
+}
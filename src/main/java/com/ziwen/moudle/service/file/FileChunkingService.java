@@ -5,11 +5,26 @@ import com.ziwen.moudle.entity.file.FileEntity;
 import com.ziwen.moudle.mapper.file.FileChunkMapper;
 import com.ziwen.moudle.service.embedding.EmbeddingService;
 import com.ziwen.moudle.service.vector.MilvusService;
+import com.ziwen.moudle.utils.EmbeddingBatcher;
 import com.ziwen.moudle.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 /**
  * 文件切片编排服务
@@ -23,6 +38,15 @@ import java.util.List;
 @Service
 public class FileChunkingService {
 
+    /** 向量化接口限流时的最大重试次数 */
+    private static final int EMBEDDING_MAX_RETRIES = 5;
+
+    /** 向量化接口限流时的初始退避时间（毫秒），每次重试翻倍 */
+    private static final long EMBEDDING_RETRY_BACKOFF_MS = 500;
+
+    /** 进度汇报间隔（片段数） */
+    private static final int PROGRESS_INTERVAL = 50;
+
     private final DocumentParserService documentParser;
     private final TextChunkingService textChunker;
     private final EmbeddingService embeddingService;
@@ -30,24 +54,73 @@ public class FileChunkingService {
     private final FileChunkMapper chunkMapper;
     private final SnowflakeIdGenerator idGenerator;
 
+    /** 向量化线程池，线程数即所有入库任务同时进行的向量化请求数上限 */
+    private final ThreadPoolExecutor embeddingExecutor;
+    /** 每次向量化请求的最多片段数 */
+    private final int embeddingBatchSize;
+    /** 每次向量化请求的估算 token 上限 */
+    private final int embeddingBatchTokens;
+    /** 单个文件同时进行的批次数 */
+    private final int embeddingInFlight;
+
     public FileChunkingService(DocumentParserService documentParser,
                               TextChunkingService textChunker,
                               EmbeddingService embeddingService,
                               MilvusService milvusService,
                               FileChunkMapper chunkMapper,
-                              SnowflakeIdGenerator idGenerator) {
+                              SnowflakeIdGenerator idGenerator,
+                              @Value("${rag.ingest.embedding-concurrency:4}") int embeddingConcurrency,
+                              @Value("${rag.ingest.embedding-batch-size:10}") int embeddingBatchSize,
+                              @Value("${rag.ingest.embedding-batch-tokens:40000}") int embeddingBatchTokens,
+                              @Value("${rag.ingest.embedding-in-flight:4}") int embeddingInFlight) {
         this.documentParser = documentParser;
         this.textChunker = textChunker;
         this.embeddingService = embeddingService;
         this.milvusService = milvusService;
         this.chunkMapper = chunkMapper;
         this.idGenerator = idGenerator;
+        this.embeddingBatchSize = Math.max(1, embeddingBatchSize);
+        this.embeddingBatchTokens = Math.max(1, embeddingBatchTokens);
+        this.embeddingInFlight = Math.max(1, embeddingInFlight);
+
+        int threads = Math.max(1, embeddingConcurrency);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 每个文件最多 embeddingInFlight 批排队，队列长度受入库线程数限制
+        this.embeddingExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rag-embedding-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 取消未执行的批次，使等待它们的调用不会一直阻塞
+        for (Runnable pending : embeddingExecutor.shutdownNow()) {
+            if (pending instanceof Future<?> future) {
+                future.cancel(false);
+            }
+        }
     }
 
     /**
      * 处理文件：解析 → 切割 → 向量化 → 存储
      */
     public void processFile(FileEntity file) {
+        List<TextChunkingService.TextChunk> chunks = parseAndChunk(file);
+        if (!chunks.isEmpty()) {
+            indexChunks(file, chunks, null);
+        }
+    }
+
+    /**
+     * 解析并切割文档
+     *
+     * @return 文本片段；文件不支持切片时返回空列表
+     */
+    public List<TextChunkingService.TextChunk> parseAndChunk(FileEntity file) {
         log.info("开始处理文件: {}", file.getOriginalName());
 
         try {
@@ -56,7 +129,7 @@ public class FileChunkingService {
 
             if (!parseResult.isCanChunk()) {
                 log.warn("文件不支持切片: {}", parseResult.getWarning());
-                return;
+                return List.of();
             }
 
             // 2. 使用流式方式处理文本，避免一次性加载整个文件到内存
@@ -68,73 +141,187 @@ public class FileChunkingService {
                 throw new RuntimeException("文件过大，无法处理，请使用较小的文件");
             }
             
-            List<TextChunkingService.TextChunk> chunks = textChunker.smartChunk(text);
+            return textChunker.smartChunk(text);
 
-            log.info("开始处理 {} 个文本片段", chunks.size());
+        } catch (Exception e) {
+            log.error("文件处理失败: {}", file.getOriginalName(), e);
+            throw new RuntimeException("文件处理失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 向量化并存储文本片段
+     * 片段按接口的单次文本数和 token 上限打包成批，每批一次向量化请求、一次批量写入片段行和向量；
+     * 同一文件最多 {@code embeddingInFlight} 批同时进行，按提交顺序等待结果并汇报进度
+     *
+     * @param file 文件信息
+     * @param chunks 文本片段
+     * @param progress 进度回调（已处理片段数），可为 null
+     */
+    public void indexChunks(FileEntity file, List<TextChunkingService.TextChunk> chunks, IntConsumer progress) {
+        List<String> texts = chunks.stream().map(TextChunkingService.TextChunk::getText).toList();
+        List<int[]> batches = EmbeddingBatcher.pack(texts, embeddingBatchSize, embeddingBatchTokens);
+        log.info("开始处理 {} 个文本片段，共 {} 批", chunks.size(), batches.size());
 
-            // 3. 处理每个片段
-            for (TextChunkingService.TextChunk chunk : chunks) {
-                processChunk(file, chunk.getText(), chunk.getIndex(), chunk.getStartPos(), chunk.getEndPos());
-                
-                // 每处理50个片段输出一次进度日志
-                if (chunk.getIndex() % 50 == 0) {
-                    log.info("已处理 {} 个片段，共 {} 个", chunk.getIndex(), chunks.size());
+        // 失败后置位：尚未开始的批次直接跳过
+        AtomicBoolean aborted = new AtomicBoolean();
+        Deque<Future<Integer>> window = new ArrayDeque<>();
+        try {
+            int processed = 0;
+            int reported = 0;
+            for (int[] range : batches) {
+                List<TextChunkingService.TextChunk> batch = chunks.subList(range[0], range[1]);
+                window.addLast(embeddingExecutor.submit(() -> aborted.get() ? 0 : indexBatch(file, batch)));
+                if (window.size() < embeddingInFlight) {
+                    continue;
+                }
+                processed += window.removeFirst().get();
+                // 每处理约50个片段输出一次进度
+                if (processed - reported >= PROGRESS_INTERVAL) {
+                    reported = processed;
+                    log.info("已处理 {} 个片段，共 {} 个", processed, chunks.size());
+                    if (progress != null) {
+                        progress.accept(processed);
+                    }
                 }
             }
+            while (!window.isEmpty()) {
+                processed += window.removeFirst().get();
+            }
 
-            log.info("文件处理完成: {}, 共处理 {} 个片段", file.getOriginalName(), chunks.size());
+            log.info("文件处理完成: {}, 共处理 {} 个片段", file.getOriginalName(), processed);
 
         } catch (Exception e) {
-            log.error("文件处理失败: {}", file.getOriginalName(), e);
-            throw new RuntimeException("文件处理失败: " + e.getMessage(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // 等待已提交的批次全部结束，避免失败后仍有批次写入（重试前会先清理片段和向量）；
+            // 不能取消：取消进行中的批次后 get 会立即返回，等不到其真正结束
+            aborted.set(true);
+            awaitQuietly(window);
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            log.error("文件处理失败: {}", file.getOriginalName(), cause);
+            throw new RuntimeException("文件处理失败: " + cause.getMessage(), cause);
         }
     }
 
     /**
-     * 处理单个文本片段
+     * 等待批次结束（忽略批次结果和异常）
      */
-    private void processChunk(FileEntity file, String chunkText, int index, int startPos, int endPos) {
+    private void awaitQuietly(Deque<Future<Integer>> window) {
+        boolean interrupted = false;
+        for (Future<Integer> future : window) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // 仍要等批次结束，结束后再恢复中断状态
+                    interrupted = true;
+                } catch (Exception ignored) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 处理一批文本片段：一次向量化请求 → 批量写入片段行 → 批量写入向量（向量与片段ID按批内顺序对应）
+     *
+     * @return 本批片段数
+     */
+    private int indexBatch(FileEntity file, List<TextChunkingService.TextChunk> batch) {
+        TextChunkingService.TextChunk first = batch.get(0);
         try {
-            // 保存到MySQL
-            FileChunkEntity chunkEntity = new FileChunkEntity();
-            chunkEntity.setId(idGenerator.nextId());
-            chunkEntity.setFileId(file.getId());
-            chunkEntity.setChunkIndex(index);
-            chunkEntity.setChunkText(chunkText);
-            chunkEntity.setStartPos(startPos);
-            chunkEntity.setEndPos(endPos);
-            chunkMapper.insert(chunkEntity);
-
-            // 向量化并存储到Milvus（使用 document 类型）
-            List<Float> vector = embeddingService.embedText(chunkText, "document").block();
-            milvusService.insertVector(chunkEntity.getId(), vector);
-
-            log.debug("片段 {} 处理完成，长度: {}", index, chunkText.length());
+            List<List<Float>> vectors = embedDocuments(batch.stream().map(TextChunkingService.TextChunk::getText).toList());
+
+            List<FileChunkEntity> entities = new ArrayList<>(batch.size());
+            List<Long> chunkIds = new ArrayList<>(batch.size());
+            for (TextChunkingService.TextChunk chunk : batch) {
+                FileChunkEntity chunkEntity = new FileChunkEntity();
+                chunkEntity.setId(idGenerator.nextId());
+                chunkEntity.setFileId(file.getId());
+                chunkEntity.setChunkIndex(chunk.getIndex());
+                chunkEntity.setChunkText(chunk.getText());
+                chunkEntity.setStartPos(chunk.getStartPos());
+                chunkEntity.setEndPos(chunk.getEndPos());
+                entities.add(chunkEntity);
+                chunkIds.add(chunkEntity.getId());
+            }
+            // 保存到MySQL，再存储向量到Milvus
+            chunkMapper.insertBatch(entities);
+            milvusService.insertVectors(chunkIds, vectors);
+
+            log.debug("片段 {} ~ {} 处理完成", first.getIndex(), batch.get(batch.size() - 1).getIndex());
+            return batch.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("片段处理被中断", e);
         } catch (Exception e) {
-            log.error("片段 {} 处理失败", index, e);
+            log.error("片段 {} 起的一批处理失败", first.getIndex(), e);
             throw new RuntimeException("片段处理失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 批量文档向量化（带背压）
+     * 同时进行的向量化请求数受线程池大小限制；接口限流（429）时占用线程退避重试，
+     * 使其他批次一并等待，而不是继续向已饱和的接口发请求
+     */
+    private List<List<Float>> embedDocuments(List<String> texts) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                List<List<Float>> vectors = embeddingService.embedTexts(texts, "document").block();
+                if (vectors == null || vectors.size() != texts.size()) {
+                    throw new IllegalStateException("向量数与片段数不一致");
+                }
+                return vectors;
+            } catch (RuntimeException e) {
+                if (attempt >= EMBEDDING_MAX_RETRIES || !isThrottled(e)) {
+                    throw e;
+                }
+                long backoff = EMBEDDING_RETRY_BACKOFF_MS << attempt;
+                log.warn("向量化接口限流，{} ms 后重试（第 {} 次）", backoff, attempt + 1);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 是否为接口限流错误
+     */
+    private boolean isThrottled(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpClientErrorException.TooManyRequests) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     /**
-     * 删除文件的所有片段
+     * 删除文件的所有片段（向量按表达式一次批量删除，片段行物理删除）
      */
     public void deleteFileChunks(Long fileId) {
-        log.info("删除文件片段: {}", fileId);
-        
-        // 1. 查询所有片段ID
-        List<FileChunkEntity> chunks = chunkMapper.selectByFileId(fileId);
-        
-        // 2. 从Milvus删除向量
-        for (FileChunkEntity chunk : chunks) {
-            milvusService.deleteVector(chunk.getId());
+        List<Long> fileIds = List.of(fileId);
+        List<Long> chunkIds = chunkMapper.selectIdsByFileIds(fileIds);
+        if (chunkIds.isEmpty()) {
+            return;
         }
-        
-        // 3. 从MySQL删除片段
-        chunkMapper.deleteByFileId(fileId);
-        
-        log.info("文件片段删除完成，共 {} 个", chunks.size());
+
+        // 1. 从Milvus批量删除向量
+        milvusService.deleteVectors(chunkIds);
+
+        // 2. 从MySQL删除片段（物理删除，重新入库时片段序号不冲突）
+        int total = 0;
+        int deleted;
+        while ((deleted = chunkMapper.purgeByFileIds(fileIds, 1000)) > 0) {
+            total += deleted;
+        }
+        log.info("文件片段删除完成: {}, 共 {} 个", fileId, total);
     }
 }
-
@@ -0,0 +1,317 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.entity.file.FileIngestJobEntity;
+import com.ziwen.moudle.enums.IngestStatusEnum;
+import com.ziwen.moudle.mapper.file.FileIngestJobMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RAG 入库任务服务
+ * 上传后只登记任务并立即返回，由固定大小的工作线程池执行 解析 → 切割 → 向量化 → 存储
+ *
+ * 任务状态持久化在 sys_file_ingest_job 中，数据库即任务队列：
+ * - 内存队列有界，满时任务保持 QUEUED，由定时任务在队列有空位时补投
+ * - 向量化接口饱和时工作线程在许可上等待，内存队列随之积压，新任务自然留在数据库中
+ * - 多节点部署时各节点都会补投，执行前以条件更新（QUEUED → PARSING）领取任务，只有一个节点领取成功
+ * - 领取时写入执行节点和租约，执行期间定时续约；节点重启时重置本节点中断的任务，
+ *   其他节点宕机留下的任务在租约过期后重新排队
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileIngestService {
+
+    /** 失败原因最大长度 */
+    private static final int MAX_ERROR_LENGTH = 500;
+    /** 续约间隔（毫秒） */
+    private static final long RENEW_INTERVAL_MILLIS = 60_000;
+
+    private final FileIngestJobMapper jobMapper;
+    private final FileService fileService;
+    private final FileChunkingService fileChunkingService;
+    private final FileBlobService fileBlobService;
+
+    private final ThreadPoolExecutor executor;
+
+    /** 本节点标识（重启后不变，用于恢复本节点中断的任务） */
+    private final String nodeId;
+    /** 任务租约时长（毫秒） */
+    private final long leaseMillis;
+
+    /** 已投递到内存队列的任务ID，避免定时补投时重复投递 */
+    private final Set<Long> dispatched = ConcurrentHashMap.newKeySet();
+    /** 本节点正在执行的任务ID（定时续约） */
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    public FileIngestService(FileIngestJobMapper jobMapper,
+                             FileService fileService,
+                             FileChunkingService fileChunkingService,
+                             FileBlobService fileBlobService,
+                             @Value("${rag.ingest.workers:2}") int workers,
+                             @Value("${rag.ingest.queue-capacity:100}") int queueCapacity,
+                             @Value("${rag.ingest.node-id:}") String nodeId,
+                             @Value("${rag.ingest.lease-seconds:300}") long leaseSeconds) {
+        this.jobMapper = jobMapper;
+        this.fileService = fileService;
+        this.fileChunkingService = fileChunkingService;
+        this.fileBlobService = fileBlobService;
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : defaultNodeId();
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(Math.max(leaseSeconds, 3 * RENEW_INTERVAL_MILLIS / 1000));
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rag-ingest-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 本节点标识默认取主机名
+     */
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * 服务启动时恢复本节点上次中断的任务，以及租约已过期的任务
+     */
+    @PostConstruct
+    public void recover() {
+        try {
+            int count = jobMapper.resetRunning(nodeId, System.currentTimeMillis());
+            if (count > 0) {
+                log.info("恢复 {} 个中断的入库任务（节点 {}）", count, nodeId);
+            }
+        } catch (Exception e) {
+            log.error("恢复入库任务失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 执行中的任务保持 PARSING / EMBEDDING，下次启动时重置，或租约过期后由其他节点接手
+        executor.shutdownNow();
+    }
+
+    /**
+     * 定时续约本节点执行中的任务，并把其他节点租约过期的任务重新排队
+     */
+    @Scheduled(fixedDelay = RENEW_INTERVAL_MILLIS, initialDelay = RENEW_INTERVAL_MILLIS)
+    public void renewLeases() {
+        try {
+            long now = System.currentTimeMillis();
+            if (!running.isEmpty()) {
+                jobMapper.renewLeases(List.copyOf(running), nodeId, now + leaseMillis);
+            }
+            int count = jobMapper.resetRunning(null, now);
+            if (count > 0) {
+                log.warn("{} 个入库任务租约过期，重新排队", count);
+            }
+        } catch (Exception e) {
+            log.error("续约入库任务失败", e);
+        }
+    }
+
+    /**
+     * 提交入库任务
+     *
+     * @param file 文件信息（需已保存）
+     * @return 入库任务
+     */
+    public FileIngestJobEntity submit(FileEntity file) {
+        FileIngestJobEntity job = new FileIngestJobEntity();
+        job.setFileId(file.getId());
+        job.setStatus(IngestStatusEnum.QUEUED.name());
+        job.setTotalChunks(0);
+        job.setProcessedChunks(0);
+        job.setAttempts(0);
+        jobMapper.insert(job);
+
+        dispatch(job.getId());
+        return job;
+    }
+
+    /**
+     * 查询文件最近一次入库任务
+     */
+    public FileIngestJobEntity getLatestJob(Long fileId) {
+        return jobMapper.selectLatestByFileId(fileId);
+    }
+
+    /**
+     * 定时补投：内存队列有空位时，把数据库中排队的任务投递出去
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void dispatchQueued() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        try {
+            List<FileIngestJobEntity> jobs = jobMapper.selectByStatus(IngestStatusEnum.QUEUED.name(),
+                    capacity + dispatched.size());
+            for (FileIngestJobEntity job : jobs) {
+                if (!dispatched.contains(job.getId()) && !dispatch(job.getId())) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("补投入库任务失败", e);
+        }
+    }
+
+    /**
+     * 投递任务到工作线程池
+     *
+     * @return 队列已满返回 false（任务留在数据库中等待补投）
+     */
+    private boolean dispatch(Long jobId) {
+        if (!dispatched.add(jobId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    dispatched.remove(jobId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            dispatched.remove(jobId);
+            log.info("入库队列已满，任务 {} 等待补投", jobId);
+            return false;
+        }
+    }
+
+    /**
+     * 执行入库任务
+     */
+    private void run(Long jobId) {
+        // 条件更新领取任务，其他节点已领取时跳过
+        if (jobMapper.claim(jobId, nodeId, System.currentTimeMillis() + leaseMillis) == 0) {
+            return;
+        }
+        running.add(jobId);
+        try {
+            execute(jobId);
+        } finally {
+            running.remove(jobId);
+        }
+    }
+
+    private void execute(Long jobId) {
+        FileIngestJobEntity job = jobMapper.selectById(jobId);
+        if (job == null) {
+            return;
+        }
+
+        FileEntity file = fileService.getFile(job.getFileId());
+        if (file == null) {
+            fail(jobId, "文件不存在");
+            return;
+        }
+
+        try {
+            // 相同内容的文件共用一份片段，入库作用于持有片段的文件；重试或重新入库时先清理旧的片段和向量
+            FileEntity target = ragTargetOf(file);
+            fileChunkingService.deleteFileChunks(target.getId());
+            List<TextChunkingService.TextChunk> chunks = fileChunkingService.parseAndChunk(target);
+
+            FileIngestJobEntity update = newUpdate(jobId);
+            update.setStatus(IngestStatusEnum.EMBEDDING.name());
+            update.setTotalChunks(chunks.size());
+            update.setProcessedChunks(0);
+            jobMapper.updateById(update);
+
+            fileChunkingService.indexChunks(target, chunks, processed -> {
+                FileIngestJobEntity progress = newUpdate(jobId);
+                progress.setProcessedChunks(processed);
+                jobMapper.updateById(progress);
+            });
+
+            update = newUpdate(jobId);
+            update.setStatus(IngestStatusEnum.INDEXED.name());
+            update.setProcessedChunks(chunks.size());
+            update.setFinishTime(LocalDateTime.now());
+            if (jobMapper.updateById(update) == 0) {
+                log.warn("入库任务 {} 租约已过期，结果以重新执行的为准", jobId);
+                return;
+            }
+            log.info("入库任务完成: {}, 文件: {}, 片段数: {}", jobId, file.getOriginalName(), chunks.size());
+        } catch (Exception e) {
+            log.error("入库任务失败: {}, 文件: {}", jobId, file.getOriginalName(), e);
+            fail(jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 持有该文件内容 RAG 片段的文件
+     * 原持有者已删除（删除时没有可接手的引用）时，清理其片段后由本文件持有
+     */
+    private FileEntity ragTargetOf(FileEntity file) {
+        Long ragFileId = fileBlobService.ragFileIdOf(file);
+        if (ragFileId.equals(file.getId())) {
+            return file;
+        }
+        FileEntity owner = fileService.getFile(ragFileId);
+        if (owner != null) {
+            return owner;
+        }
+        if (!fileBlobService.takeOverRagFile(file.getContentHash(), ragFileId, file.getId())) {
+            // 持有者已被其他任务更换
+            return ragTargetOf(file);
+        }
+        fileChunkingService.deleteFileChunks(ragFileId);
+        return file;
+    }
+
+    /**
+     * 任务更新：只在任务仍由本节点执行时生效
+     */
+    private FileIngestJobEntity newUpdate(Long jobId) {
+        FileIngestJobEntity update = new FileIngestJobEntity();
+        update.setId(jobId);
+        update.setOwnerNode(nodeId);
+        return update;
+    }
+
+    private void fail(Long jobId, String message) {
+        FileIngestJobEntity update = newUpdate(jobId);
+        update.setStatus(IngestStatusEnum.FAILED.name());
+        if (message != null && message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        update.setErrorMessage(message == null ? "未知错误" : message);
+        update.setFinishTime(LocalDateTime.now());
+        jobMapper.updateById(update);
+    }
+}
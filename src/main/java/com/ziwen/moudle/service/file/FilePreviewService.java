@@ -0,0 +1,388 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.utils.FileContentSource;
+import com.ziwen.moudle.utils.FileTransferUtil;
+import com.ziwen.moudle.utils.FileUploadUtil;
+import com.ziwen.moudle.utils.ImageThumbnailer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 文件预览图服务
+ * 图片上传后由后台线程池生成若干尺寸的缩略图，保存在磁盘缓存中，列表页直接加载缩略图而非原图
+ *
+ * - 缓存按内容哈希命名（无哈希的文件按 ID + 修改时间），相同内容的文件共用预览图，文件被替换后自动换新
+ * - 线程池和队列有界，队列满时不生成，首次请求时再生成；同一文件同时只生成一次
+ * - 缓存总大小超过上限时按最近访问时间淘汰（访问时间以文件修改时间记录，每天最多更新一次）
+ * - 仅支持 ImageIO 可解码的图片格式，视频需要外部解码器，暂不生成
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FilePreviewService {
+
+    /** 非单个磁盘文件（分段存储、内存缓存）时读入内存解码的最大字节数 */
+    private static final long MAX_BUFFERED_SOURCE = 64L * 1024 * 1024;
+    /** 命中时刷新访问时间的最小间隔 */
+    private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    /** 淘汰后保留的容量比例 */
+    private static final double EVICT_TARGET_RATIO = 0.9;
+
+    private final FileStorageService fileStorageService;
+
+    /** 缓存根目录 */
+    private final File cacheRoot;
+    /** 预览图尺寸（最长边，升序） */
+    private final int[] sizes;
+    /** 缓存总容量（字节） */
+    private final long maxBytes;
+    /** 解码的最大像素数 */
+    private final long maxPixels;
+
+    private final ThreadPoolExecutor executor;
+    /** 生成中的任务：缓存键 → 结果 */
+    private final Map<String, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FilePreviewService(FileStorageService fileStorageService,
+                              FileUploadUtil fileUploadUtil,
+                              @Value("${file.preview.path:}") String cachePath,
+                              @Value("${file.preview.sizes:128,320,1024}") int[] sizes,
+                              @Value("${file.preview.max-bytes:1073741824}") long maxBytes,
+                              @Value("${file.preview.max-pixels:50000000}") long maxPixels,
+                              @Value("${file.preview.workers:2}") int workers,
+                              @Value("${file.preview.queue-capacity:200}") int queueCapacity) {
+        this.fileStorageService = fileStorageService;
+        this.cacheRoot = StringUtils.hasText(cachePath)
+                ? new File(cachePath) : new File(fileUploadUtil.getUploadRootPath(), ".preview");
+        this.sizes = Arrays.stream(sizes).filter(size -> size > 0).sorted().distinct().toArray();
+        if (this.sizes.length == 0) {
+            throw new IllegalArgumentException("file.preview.sizes 不能为空");
+        }
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "file-preview-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 文件是否支持生成预览图
+     */
+    public boolean isSupported(FileEntity file) {
+        return ImageThumbnailer.isSupported(file.getContentType());
+    }
+
+    /**
+     * 上传后提交预览图生成（已有缓存或不支持的文件直接跳过）
+     */
+    public void submit(FileEntity file) {
+        if (!isSupported(file)) {
+            return;
+        }
+        try {
+            String key = cacheKey(file);
+            if (find(key, sizes[sizes.length - 1]) == null) {
+                generate(file, key);
+            }
+        } catch (Exception e) {
+            log.warn("提交预览图生成失败: {}", file.getId(), e);
+        }
+    }
+
+    /**
+     * 获取预览图，未生成时提交生成并等待
+     *
+     * @param file 文件信息
+     * @param size 期望的最长边（取不小于该值的最小尺寸，超过最大尺寸时取最大尺寸）
+     * @param waitMillis 最长等待时间
+     * @return 预览图文件
+     * @throws TimeoutException 等待超时或生成队列已满，可稍后重试
+     * @throws IOException 原文件已删除或无法解码
+     */
+    public File getPreview(FileEntity file, int size, long waitMillis) throws IOException, TimeoutException {
+        String key = cacheKey(file);
+        int resolved = resolveSize(size);
+        File cached = find(key, resolved);
+        if (cached != null) {
+            hits.incrementAndGet();
+            touch(cached);
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<Void> future = generate(file, key);
+        if (future == null) {
+            throw new TimeoutException("预览图生成队列已满");
+        }
+        try {
+            future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("等待预览图生成时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+        cached = find(key, resolved);
+        if (cached == null) {
+            throw new IOException("预览图生成失败");
+        }
+        return cached;
+    }
+
+    /**
+     * 预览图的内容类型
+     */
+    public static String contentTypeOf(File preview) {
+        return preview.getName().endsWith(".png") ? "image/png" : "image/jpeg";
+    }
+
+    /**
+     * 取不小于期望值的最小尺寸
+     */
+    public int resolveSize(int size) {
+        for (int candidate : sizes) {
+            if (candidate >= size) {
+                return candidate;
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * 缓存键：优先使用内容哈希，否则使用 文件ID + 修改时间
+     */
+    public String cacheKey(FileEntity file) {
+        if (StringUtils.hasText(file.getContentHash())) {
+            return file.getContentHash();
+        }
+        return "f" + file.getId() + "-" + fileStorageService.resolve(file.getFilePath()).lastModified();
+    }
+
+    /**
+     * 提交生成任务（同一键同时只有一个任务）
+     *
+     * @return 任务结果；队列已满返回 null
+     */
+    private CompletableFuture<Void> generate(FileEntity file, String key) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inflight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    writeVariants(file, key);
+                    generated.incrementAndGet();
+                    created.complete(null);
+                } catch (Throwable e) {
+                    failures.incrementAndGet();
+                    log.warn("生成预览图失败: {} ({})", file.getId(), e.getMessage());
+                    created.completeExceptionally(e);
+                } finally {
+                    inflight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            inflight.remove(key, created);
+            return null;
+        }
+        return created;
+    }
+
+    /**
+     * 解码一次，写出全部尺寸
+     */
+    private void writeVariants(FileEntity file, String key) throws IOException {
+        Map<Integer, BufferedImage> thumbnails;
+        try (FileContentSource source = fileStorageService.openSource(file);
+             ImageInputStream input = openImageStream(source)) {
+            if (input == null) {
+                throw new IOException("无法读取图片内容");
+            }
+            thumbnails = ImageThumbnailer.thumbnails(input, sizes, maxPixels);
+        }
+        File dir = new File(cacheRoot, key.substring(0, Math.min(2, key.length())));
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("创建预览图目录失败: " + dir.getAbsolutePath());
+        }
+        for (Map.Entry<Integer, BufferedImage> entry : thumbnails.entrySet()) {
+            BufferedImage image = entry.getValue();
+            File target = new File(dir, key + "_" + entry.getKey() + "." + ImageThumbnailer.formatOf(image));
+            File temp = new File(dir, target.getName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(temp))) {
+                    ImageThumbnailer.write(image, os);
+                }
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 单个磁盘文件直接随机读取；分段存储或内存缓存的内容读入内存
+     */
+    private static ImageInputStream openImageStream(FileContentSource source) throws IOException {
+        File single = source.singleFile();
+        if (single != null) {
+            return ImageIO.createImageInputStream(single);
+        }
+        if (source.length() > MAX_BUFFERED_SOURCE) {
+            throw new IOException("图片过大: " + source.length());
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) source.length());
+        source.transferTo(0, source.length(), buffer, FileTransferUtil.TransferGuard.NONE);
+        return ImageIO.createImageInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+
+    private File find(String key, int size) {
+        File dir = new File(cacheRoot, key.substring(0, Math.min(2, key.length())));
+        for (String format : new String[]{"jpg", "png"}) {
+            File candidate = new File(dir, key + "_" + size + "." + format);
+            if (candidate.isFile()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static void touch(File preview) {
+        long now = System.currentTimeMillis();
+        if (now - preview.lastModified() > TOUCH_INTERVAL_MILLIS) {
+            preview.setLastModified(now);
+        }
+    }
+
+    /**
+     * 定时淘汰：总大小超过上限时删除最久未访问的预览图
+     */
+    @Scheduled(fixedDelayString = "${file.preview.evict-interval:3600000}")
+    public void evict() {
+        if (!cacheRoot.isDirectory()) {
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> paths = Files.walk(cacheRoot.toPath(), 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                File file = path.toFile();
+                if (!file.isFile()) {
+                    continue;
+                }
+                if (file.getName().endsWith(".tmp")
+                        && System.currentTimeMillis() - file.lastModified() > TOUCH_INTERVAL_MILLIS) {
+                    // 进程中断遗留的临时文件
+                    file.delete();
+                    continue;
+                }
+                files.add(file);
+                total += file.length();
+            }
+        } catch (IOException e) {
+            log.error("扫描预览图缓存失败", e);
+            return;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        long target = (long) (maxBytes * EVICT_TARGET_RATIO);
+        files.sort(Comparator.comparingLong(File::lastModified));
+        int count = 0;
+        for (File file : files) {
+            if (total <= target) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                count++;
+            }
+        }
+        evictions.addAndGet(count);
+        log.info("预览图缓存淘汰 {} 个文件，剩余 {} 字节", count, total);
+    }
+
+    /**
+     * 预览图统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sizes", sizes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("generated", generated.get());
+        stats.put("failures", failures.get());
+        stats.put("rejected", rejected.get());
+        stats.put("evictions", evictions.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        return stats;
+    }
+}
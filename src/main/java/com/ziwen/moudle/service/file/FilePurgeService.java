@@ -0,0 +1,263 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.entity.file.FilePurgeTaskEntity;
+import com.ziwen.moudle.enums.PurgeStatusEnum;
+import com.ziwen.moudle.mapper.file.FileChunkMapper;
+import com.ziwen.moudle.mapper.file.FilePurgeTaskMapper;
+import com.ziwen.moudle.service.vector.MilvusService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件清理服务
+ * 删除文件时只删除记录并登记清理任务，由后台按批清理：
+ * 一批任务的片段ID一次查出 → 按表达式批量删除向量 → 分批物理删除片段行 → 限速删除物理文件
+ *
+ * - 任务持久化在 sys_file_purge_task 中，领取时写入租约，节点宕机后租约到期由其他节点接手；各步骤均可重复执行
+ * - 失败按指数退避重试，超过最大次数后标记为 FAILED，可手动重置
+ * - 物理文件删除按每秒文件数限速，片段行按固定行数分批删除，避免影响前台请求
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FilePurgeService {
+
+    /** 单次物理删除的片段行数 */
+    private static final int CHUNK_DELETE_BATCH = 1000;
+    /** 领取任务的租约时间（毫秒） */
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** 重试初始退避时间（毫秒），每次翻倍 */
+    private static final long RETRY_BACKOFF_MILLIS = 5_000;
+    /** 重试最大退避时间（毫秒） */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /** 失败原因最大长度 */
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final FilePurgeTaskMapper taskMapper;
+    private final FileChunkMapper chunkMapper;
+    private final MilvusService milvusService;
+    private final FileStorageService fileStorageService;
+
+    /** 每批领取的任务数 */
+    private final int batchSize;
+    /** 每秒最多删除的物理文件数，0 表示不限速 */
+    private final int maxFilesPerSecond;
+    /** 最大尝试次数 */
+    private final int maxAttempts;
+
+    private final AtomicLong purgedFiles = new AtomicLong();
+    private final AtomicLong deletedVectors = new AtomicLong();
+    private final AtomicLong deletedChunks = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long lastBatchMillis;
+
+    public FilePurgeService(FilePurgeTaskMapper taskMapper,
+                            FileChunkMapper chunkMapper,
+                            MilvusService milvusService,
+                            FileStorageService fileStorageService,
+                            @Value("${file.purge.batch-size:100}") int batchSize,
+                            @Value("${file.purge.max-files-per-second:50}") int maxFilesPerSecond,
+                            @Value("${file.purge.max-attempts:10}") int maxAttempts) {
+        this.taskMapper = taskMapper;
+        this.chunkMapper = chunkMapper;
+        this.milvusService = milvusService;
+        this.fileStorageService = fileStorageService;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFilesPerSecond = maxFilesPerSecond;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 登记清理任务
+     *
+     * @param file 已删除的文件记录
+     * @param deleteStorage 是否删除物理存储（按内容去重的文件仍有其他引用时为 false）
+     * @param ragFileId 需要删除片段和向量的文件ID，为空表示不删除
+     */
+    public void submit(FileEntity file, boolean deleteStorage, Long ragFileId) {
+        if (!deleteStorage && ragFileId == null) {
+            return;
+        }
+        FilePurgeTaskEntity task = new FilePurgeTaskEntity();
+        task.setFileId(file.getId());
+        task.setRagFileId(ragFileId);
+        if (deleteStorage) {
+            task.setFilePath(file.getFilePath());
+            task.setIsChunked(file.getIsChunked());
+            task.setUploadId(file.getUploadId());
+        }
+        task.setStatus(PurgeStatusEnum.PENDING.name());
+        task.setAttempts(0);
+        task.setNextAttemptAt(System.currentTimeMillis());
+        taskMapper.insert(task);
+    }
+
+    /**
+     * 定时清理：每次最多连续处理若干批，积压时也不会长期占用数据库和磁盘
+     */
+    @Scheduled(fixedDelayString = "${file.purge.interval:5000}")
+    public void purge() {
+        try {
+            for (int i = 0; i < 10 && purgeBatch() == batchSize; i++) {
+                // 整批领满说明仍有积压，继续下一批
+            }
+        } catch (Exception e) {
+            log.error("文件清理失败", e);
+        }
+    }
+
+    /**
+     * 领取并清理一批任务
+     *
+     * @return 领取的任务数
+     */
+    public int purgeBatch() {
+        long start = System.currentTimeMillis();
+        String claimToken = UUID.randomUUID().toString();
+        if (taskMapper.claim(claimToken, start, start + LEASE_MILLIS, batchSize) == 0) {
+            return 0;
+        }
+        List<FilePurgeTaskEntity> tasks = taskMapper.selectByClaimToken(claimToken);
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+
+        // 1. 整批删除片段和向量（先删向量：向量检索结果需要回查片段，片段先删会留下无法回查的向量）
+        List<Long> ragFileIds = new ArrayList<>(new LinkedHashSet<>(
+                tasks.stream().map(FilePurgeTaskEntity::getRagFileId).filter(id -> id != null).toList()));
+        if (!ragFileIds.isEmpty()) {
+            try {
+                List<Long> chunkIds = chunkMapper.selectIdsByFileIds(ragFileIds);
+                if (!chunkIds.isEmpty()) {
+                    milvusService.deleteVectors(chunkIds);
+                    deletedVectors.addAndGet(chunkIds.size());
+                }
+                int deleted;
+                while ((deleted = chunkMapper.purgeByFileIds(ragFileIds, CHUNK_DELETE_BATCH)) > 0) {
+                    deletedChunks.addAndGet(deleted);
+                }
+            } catch (Exception e) {
+                log.error("批量删除片段和向量失败，{} 个任务稍后重试", tasks.size(), e);
+                for (FilePurgeTaskEntity task : tasks) {
+                    retry(task, e);
+                }
+                return tasks.size();
+            }
+        }
+
+        // 2. 限速删除物理文件
+        List<Long> completed = new ArrayList<>(tasks.size());
+        long intervalNanos = maxFilesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxFilesPerSecond : 0;
+        long next = System.nanoTime();
+        for (FilePurgeTaskEntity task : tasks) {
+            if (task.getFilePath() != null) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                next = Math.max(next, System.nanoTime()) + intervalNanos;
+                try {
+                    fileStorageService.deleteStorage(toFile(task));
+                } catch (Exception e) {
+                    log.warn("删除物理文件失败: {}", task.getFilePath(), e);
+                    retry(task, e);
+                    continue;
+                }
+            }
+            completed.add(task.getId());
+        }
+
+        // 3. 删除已完成的任务（中断时未处理的任务在租约到期后重新领取）
+        if (!completed.isEmpty()) {
+            taskMapper.deleteByIds(completed);
+            purgedFiles.addAndGet(completed.size());
+        }
+        batches.incrementAndGet();
+        lastBatchMillis = System.currentTimeMillis() - start;
+        log.info("文件清理: 完成 {}/{} 个任务，耗时 {}ms", completed.size(), tasks.size(), lastBatchMillis);
+        return tasks.size();
+    }
+
+    /**
+     * 将失败的任务重置为待清理
+     *
+     * @return 重置的任务数
+     */
+    public int retryFailed() {
+        return taskMapper.resetFailed(System.currentTimeMillis());
+    }
+
+    /**
+     * 清理进度统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", taskMapper.countByStatus(PurgeStatusEnum.PENDING.name()));
+        stats.put("failed", taskMapper.countByStatus(PurgeStatusEnum.FAILED.name()));
+        stats.put("purgedFiles", purgedFiles.get());
+        stats.put("deletedChunks", deletedChunks.get());
+        stats.put("deletedVectors", deletedVectors.get());
+        stats.put("failedAttempts", failedAttempts.get());
+        stats.put("batches", batches.get());
+        stats.put("lastBatchMillis", lastBatchMillis);
+        return stats;
+    }
+
+    /**
+     * 记录失败并按指数退避安排重试
+     */
+    private void retry(FilePurgeTaskEntity task, Exception e) {
+        failedAttempts.incrementAndGet();
+        int attempts = (task.getAttempts() == null ? 0 : task.getAttempts()) + 1;
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        FilePurgeTaskEntity update = new FilePurgeTaskEntity();
+        update.setId(task.getId());
+        update.setAttempts(attempts);
+        update.setLastError(message);
+        if (attempts >= maxAttempts) {
+            update.setStatus(PurgeStatusEnum.FAILED.name());
+            log.error("文件清理任务多次失败: {}, 文件: {}", task.getId(), task.getFileId());
+        } else {
+            long backoff = Math.min(RETRY_BACKOFF_MILLIS << Math.min(attempts - 1, 20), MAX_RETRY_BACKOFF_MILLIS);
+            update.setNextAttemptAt(System.currentTimeMillis() + backoff);
+        }
+        try {
+            taskMapper.updateById(update);
+        } catch (Exception ex) {
+            // 更新失败时任务在租约到期后重新领取
+            log.error("更新文件清理任务失败: {}", task.getId(), ex);
+        }
+    }
+
+    private static FileEntity toFile(FilePurgeTaskEntity task) {
+        FileEntity file = new FileEntity();
+        file.setId(task.getFileId());
+        file.setFilePath(task.getFilePath());
+        file.setIsChunked(task.getIsChunked());
+        file.setUploadId(task.getUploadId());
+        return file;
+    }
+}
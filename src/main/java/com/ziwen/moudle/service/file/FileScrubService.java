@@ -0,0 +1,69 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.mapper.file.FileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 数据文件定期校验服务
+ * 下载直接 sendfile 数据文件，不再逐次按分段索引校验；由本任务定期按索引逐段校验分片存储的文件，
+ * 发现损坏的文件在修复前拒绝读取（见 {@link FileStorageService#verifySegments}）
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileScrubService {
+
+    /** 每批查询的文件数 */
+    private static final int BATCH_SIZE = 500;
+
+    private final FileMapper fileMapper;
+    private final FileStorageService fileStorageService;
+
+    public FileScrubService(FileMapper fileMapper, FileStorageService fileStorageService) {
+        this.fileMapper = fileMapper;
+        this.fileStorageService = fileStorageService;
+    }
+
+    /**
+     * 按ID顺序分批校验全部分片存储的文件（去重文件共用的数据文件只校验一次）
+     */
+    @Scheduled(fixedDelayString = "${file.scrub.interval:604800000}",
+            initialDelayString = "${file.scrub.initial-delay:3600000}")
+    public void scrub() {
+        long start = System.currentTimeMillis();
+        Set<String> verified = new HashSet<>();
+        int checked = 0;
+        int corrupted = 0;
+        long afterId = 0;
+        List<FileEntity> batch;
+        do {
+            batch = fileMapper.selectChunkedAfter(afterId, BATCH_SIZE);
+            for (FileEntity file : batch) {
+                afterId = file.getId();
+                if (!verified.add(file.getFilePath())) {
+                    continue;
+                }
+                try {
+                    int segment = fileStorageService.verifySegments(file);
+                    checked++;
+                    if (segment >= 0) {
+                        corrupted++;
+                        log.error("数据文件分段 {} 校验失败: {}, 路径: {}", segment, file.getId(), file.getFilePath());
+                    }
+                } catch (IOException e) {
+                    log.warn("校验数据文件失败: {}", file.getId(), e);
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+        log.info("数据文件校验完成: {} 个，损坏 {} 个，耗时 {} ms", checked, corrupted, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,171 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.mapper.file.FileMapper;
+import com.ziwen.moudle.utils.NgramIndex;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 文件名搜索服务
+ * 启动时按ID分批加载全部文件名建立内存 n-gram 索引，之后随 FileService 的保存 / 更新 / 删除增量维护；
+ * 其他节点的新增、重命名和删除由定时任务按修改时间水位增量同步（回看一段时间，容忍时钟偏差和晚提交的事务），
+ * 并定期全量重建一次兜底：新索引在旁边建好后整体替换，重建期间搜索不受影响
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileSearchService {
+
+    /** 分批加载的批量大小 */
+    private static final int LOAD_BATCH_SIZE = 5000;
+
+    /** 增量同步的回看时间（秒） */
+    private static final long SYNC_OVERLAP_SECONDS = 60;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final FileMapper fileMapper;
+    private volatile NgramIndex index = new NgramIndex();
+
+    /** 已同步到的最大修改时间（数据库时间），null 表示尚未完成全量加载 */
+    private LocalDateTime syncedUntil;
+
+    public FileSearchService(FileMapper fileMapper) {
+        this.fileMapper = fileMapper;
+    }
+
+    /**
+     * 启动时在后台线程加载索引，不阻塞启动
+     */
+    @PostConstruct
+    public void init() {
+        Thread loader = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            reload();
+            log.info("文件名索引加载完成: {} 个文件，耗时 {} ms", index.size(), System.currentTimeMillis() - start);
+        }, "file-search-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 定时同步其他节点的变更
+     */
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public synchronized void refresh() {
+        if (syncedUntil == null) {
+            reload();
+            return;
+        }
+        try {
+            syncedUntil = syncChanges(index, syncedUntil.minusSeconds(SYNC_OVERLAP_SECONDS), syncedUntil);
+        } catch (Exception e) {
+            log.error("同步文件名索引失败", e);
+        }
+    }
+
+    /**
+     * 定期全量重建（兜底超过回看时间才提交的事务）
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public void rebuild() {
+        reload();
+    }
+
+    /**
+     * 在新索引中全量加载后替换当前索引
+     * 加载期间本节点的增量维护仍写入旧索引，替换前按修改时间补齐加载期间的变更，替换后的遗漏由下一次同步的回看覆盖
+     */
+    private synchronized void reload() {
+        try {
+            NgramIndex fresh = new NgramIndex();
+            LocalDateTime maxUpdateTime = null;
+            long afterId = 0;
+            List<FileEntity> batch;
+            do {
+                batch = fileMapper.selectNamesAfter(afterId, LOAD_BATCH_SIZE);
+                for (FileEntity file : batch) {
+                    fresh.put(file.getId(), file.getOriginalName());
+                    afterId = file.getId();
+                    maxUpdateTime = max(maxUpdateTime, file.getUpdateTime());
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+
+            // 没有文件时从头同步
+            LocalDateTime watermark = maxUpdateTime != null ? maxUpdateTime : EPOCH.plusSeconds(SYNC_OVERLAP_SECONDS);
+            watermark = syncChanges(fresh, watermark.minusSeconds(SYNC_OVERLAP_SECONDS), watermark);
+            index = fresh;
+            syncedUntil = watermark;
+        } catch (Exception e) {
+            log.error("加载文件名索引失败", e);
+        }
+    }
+
+    /**
+     * 应用指定修改时间之后的变更（新增、重命名、删除）
+     *
+     * @param target 目标索引
+     * @param from 起始修改时间（包含）
+     * @param watermark 当前水位
+     * @return 新的水位（已应用变更中的最大修改时间）
+     */
+    private LocalDateTime syncChanges(NgramIndex target, LocalDateTime from, LocalDateTime watermark) {
+        LocalDateTime afterTime = from;
+        long afterId = 0;
+        List<FileEntity> batch;
+        do {
+            batch = fileMapper.selectNamesChangedSince(afterTime, afterId, LOAD_BATCH_SIZE);
+            for (FileEntity file : batch) {
+                if (file.getIsDeleted() != null && file.getIsDeleted() == 1) {
+                    target.remove(file.getId());
+                } else {
+                    target.put(file.getId(), file.getOriginalName());
+                }
+                afterTime = file.getUpdateTime();
+                afterId = file.getId();
+                watermark = max(watermark, file.getUpdateTime());
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        return watermark;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * 索引文件（新增或重命名）
+     */
+    public void index(Long fileId, String originalName) {
+        index.put(fileId, originalName);
+    }
+
+    /**
+     * 从索引中移除文件
+     */
+    public void remove(Long fileId) {
+        index.remove(fileId);
+    }
+
+    /**
+     * 按文件名搜索
+     *
+     * @param query 关键字（子串匹配，不区分大小写）
+     * @param prefix 是否只匹配文件名开头
+     * @param limit 最多返回数量
+     * @return 匹配的文件ID（新文件在前）
+     */
+    public List<Long> search(String query, boolean prefix, int limit) {
+        return index.search(query, prefix, limit);
+    }
+}
@@ -1,8 +1,11 @@
 package com.ziwen.moudle.service.file;
 
+import com.ziwen.moudle.dto.file.FilePageDTO;
+import com.ziwen.moudle.dto.file.FileQueryDTO;
 import com.ziwen.moudle.entity.file.FileEntity;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 文件服务接口
@@ -12,12 +15,30 @@ import java.util.List;
 public interface FileService {
 
     /**
-     * 查询文件列表
+     * 查询全部文件（不缓存；文件较多时浏览请使用 {@link #listFilesPage}）
      *
      * @return 文件列表
      */
     List<FileEntity> listFiles();
 
+    /**
+     * 按ID顺序分批查询分片存储的文件（不缓存）
+     *
+     * @param afterId 起始ID（不包含），第一批传 0
+     * @param limit 批量大小
+     * @return 文件列表
+     */
+    List<FileEntity> listChunkedFilesAfter(long afterId, int limit);
+
+    /**
+     * 按条件分页查询文件列表（游标分页）
+     *
+     * @param query 查询条件
+     * @return 当前页及下一页游标
+     * @throws IllegalArgumentException 游标无效
+     */
+    FilePageDTO listFilesPage(FileQueryDTO query);
+
     /**
      * 根据ID查询文件
      *
@@ -47,4 +68,11 @@ public interface FileService {
      * @param id 文件ID
      */
     void deleteFile(Long id);
+
+    /**
+     * 元信息缓存统计（命中率、平均加载耗时等）
+     *
+     * @return 缓存统计
+     */
+    Map<String, Object> getCacheStats();
 }
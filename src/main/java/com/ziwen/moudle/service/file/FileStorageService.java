@@ -0,0 +1,426 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.utils.FileContentSource;
+import com.ziwen.moudle.utils.FileTransferUtil;
+import com.ziwen.moudle.utils.FileUploadUtil;
+import com.ziwen.moudle.utils.HotFileCache;
+import com.ziwen.moudle.utils.MemoryFileSource;
+import com.ziwen.moudle.utils.MimeTypeUtils;
+import com.ziwen.moudle.utils.SegmentIndex;
+import com.ziwen.moudle.utils.SegmentedFileSource;
+import com.ziwen.moudle.utils.SingleFileSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文件存储读取服务
+ * 根据文件元信息定位实际存储（数据文件 + 分段索引 / 旧版分片文件），返回统一的内容源
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileStorageService {
+
+    /** 压缩流缓冲区大小 */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final FileUploadUtil fileUploadUtil;
+    private final HotFileCache hotFileCache;
+    private final StorageVolumeService storageVolumeService;
+    private final FileTierService fileTierService;
+
+    /** 小于该大小的文件不压缩（压缩收益抵不过开销） */
+    private final long compressMinSize;
+    /** 不超过该大小的文件在首次压缩传输时同时保存 gzip 副本 */
+    private final long gzipVariantMaxSize;
+
+    /** 定期校验发现数据损坏的存储路径 */
+    private final Set<String> corruptedPaths = ConcurrentHashMap.newKeySet();
+
+    public FileStorageService(FileUploadUtil fileUploadUtil, HotFileCache hotFileCache,
+                              StorageVolumeService storageVolumeService,
+                              FileTierService fileTierService,
+                              @Value("${file.compression.min-size:1024}") long compressMinSize,
+                              @Value("${file.compression.variant-max-size:67108864}") long gzipVariantMaxSize) {
+        this.fileUploadUtil = fileUploadUtil;
+        this.hotFileCache = hotFileCache;
+        this.storageVolumeService = storageVolumeService;
+        this.fileTierService = fileTierService;
+        this.compressMinSize = compressMinSize;
+        this.gzipVariantMaxSize = gzipVariantMaxSize;
+    }
+
+    /**
+     * 解析存储路径为实际文件（volume://卷编码/相对路径 或旧数据的绝对路径）
+     */
+    public File resolve(String storagePath) {
+        return storageVolumeService.resolve(storagePath);
+    }
+
+    /**
+     * 打开文件内容源
+     * 优先读取连续的数据文件（分片存储的文件同样只有一个数据文件，可直接 sendfile；分段索引只在定期校验时使用），
+     * 小文件走热点缓存；数据文件已归档到冷存储时先恢复到主存储；不存在时兼容旧版自动分片产生的分片文件，按分片顺序读取
+     *
+     * @param file 文件信息
+     * @return 内容源（调用方负责关闭）
+     * @throws FileNotFoundException 文件已被删除，或定期校验发现数据已损坏
+     */
+    public FileContentSource openSource(FileEntity file) throws FileNotFoundException {
+        if (corruptedPaths.contains(file.getFilePath())) {
+            throw new FileNotFoundException("文件数据已损坏，路径：" + file.getFilePath());
+        }
+        File single = resolve(file.getFilePath());
+        if (single.exists() || fileTierService.rehydrate(file.getFilePath(), single)) {
+            if (hotFileCache.isCacheable(single.length())) {
+                try {
+                    MemoryFileSource cached = hotFileCache.open(single);
+                    if (cached != null) {
+                        return cached;
+                    }
+                } catch (IOException e) {
+                    log.warn("读取文件到缓存失败，直接读取磁盘: {}", single.getAbsolutePath(), e);
+                }
+            }
+            return new SingleFileSource(single);
+        }
+
+        if (Boolean.TRUE.equals(file.getIsChunked())) {
+            List<File> segments = listSegments(file);
+            if (segments != null) {
+                return new SegmentedFileSource(segments);
+            }
+        }
+        throw new FileNotFoundException("文件已被删除，路径：" + file.getFilePath());
+    }
+
+    /**
+     * 文件是否适合压缩传输（文本类内容且不小于最小压缩大小）
+     */
+    public boolean isCompressible(FileEntity file, long length) {
+        return length >= compressMinSize && MimeTypeUtils.isCompressible(file.getContentType());
+    }
+
+    /**
+     * 打开预压缩的 gzip 副本
+     * 副本的修改时间与生成时的数据文件一致，数据文件被替换后副本视为过期并删除
+     *
+     * @param file 文件信息
+     * @param lastModified 当前数据文件的修改时间
+     * @return 副本内容源（调用方负责关闭）；副本不存在或已过期返回 null
+     */
+    public FileContentSource openGzipVariant(FileEntity file, long lastModified) {
+        File variant = gzipVariantOf(resolve(file.getFilePath()));
+        if (!variant.isFile()) {
+            return null;
+        }
+        if (variant.lastModified() != lastModified) {
+            hotFileCache.invalidate(variant);
+            if (!variant.delete()) {
+                log.warn("删除过期的压缩副本失败: {}", variant.getAbsolutePath());
+            }
+            return null;
+        }
+        if (hotFileCache.isCacheable(variant.length())) {
+            try {
+                MemoryFileSource cached = hotFileCache.open(variant);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                log.warn("读取压缩副本到缓存失败，直接读取磁盘: {}", variant.getAbsolutePath(), e);
+            }
+        }
+        return new SingleFileSource(variant);
+    }
+
+    /**
+     * 以 gzip 流式压缩输出文件内容
+     * 文件不超过副本大小上限时，压缩结果同时写入临时文件，完整输出后替换为 gzip 副本，之后的下载不再消耗 CPU
+     *
+     * @param file 文件信息
+     * @param source 原始内容源
+     * @param os 输出流（不会被关闭）
+     * @param guard 传输守卫（按原始字节数检查）
+     * @return 原始内容是否完整输出
+     * @throws IOException 输出失败
+     */
+    public boolean writeGzip(FileEntity file, FileContentSource source, OutputStream os,
+                             FileTransferUtil.TransferGuard guard) throws IOException {
+        long length = source.length();
+        File dataFile = resolve(file.getFilePath());
+        File variant = gzipVariantOf(dataFile);
+        File temp = dataFile.isFile() && length <= gzipVariantMaxSize
+                ? new File(variant.getPath() + "." + UUID.randomUUID() + ".tmp") : null;
+
+        boolean completed = false;
+        OutputStream variantOs = temp != null ? new BufferedOutputStream(new FileOutputStream(temp), GZIP_BUFFER_SIZE) : null;
+        try {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(new TeeOutputStream(os, variantOs), GZIP_BUFFER_SIZE)) {
+                completed = source.transferTo(0, length, gzip, guard) == length;
+            }
+        } finally {
+            if (variantOs != null) {
+                variantOs.close();
+                // 压缩期间数据文件被替换时不保存副本
+                if (completed && dataFile.lastModified() == source.lastModified()
+                        && temp.setLastModified(source.lastModified())) {
+                    try {
+                        Files.move(temp.toPath(), variant.toPath(),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        hotFileCache.invalidate(variant);
+                    } catch (IOException e) {
+                        log.warn("保存压缩副本失败: {}", variant.getAbsolutePath(), e);
+                    }
+                }
+                temp.delete();
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 写入分段索引（不复制数据）
+     *
+     * @param dataFile 数据文件
+     * @param index 分段索引（上传时边写边算得到）
+     * @return 分段数
+     */
+    public int writeSegmentIndex(File dataFile, SegmentIndex index) throws IOException {
+        if (index.getDataLength() != dataFile.length()) {
+            throw new IOException("分段索引与数据文件长度不一致: " + index.getDataLength() + " != " + dataFile.length());
+        }
+        index.write(SegmentIndex.indexFileOf(dataFile));
+        return index.getSegmentCount();
+    }
+
+    /**
+     * 写入已知校验值的分段索引（分片上传时各分片的 CRC32C 已在写入时算出，无需重新读取数据）
+     */
+    public void writeSegmentIndex(File dataFile, long segmentSize, int[] checksums) throws IOException {
+        SegmentIndex.of(segmentSize, dataFile.length(), checksums).write(SegmentIndex.indexFileOf(dataFile));
+    }
+
+    /**
+     * 按分段索引校验数据文件（逐段映射计算 CRC32C），损坏的文件在下次校验通过前拒绝读取
+     * 数据文件不在主存储（已归档或已删除）或没有可用的分段索引时跳过
+     *
+     * @param file 文件信息
+     * @return 第一个损坏的段序号；校验通过或跳过返回 -1
+     * @throws IOException 读取失败
+     */
+    public int verifySegments(FileEntity file) throws IOException {
+        File dataFile = resolve(file.getFilePath());
+        if (!dataFile.isFile()) {
+            return -1;
+        }
+        SegmentIndex index = readSegmentIndex(dataFile);
+        if (index == null) {
+            return -1;
+        }
+        int corrupted = index.verify(dataFile);
+        if (corrupted >= 0) {
+            corruptedPaths.add(file.getFilePath());
+        } else {
+            corruptedPaths.remove(file.getFilePath());
+        }
+        return corrupted;
+    }
+
+    /**
+     * 读取数据文件的分段索引
+     *
+     * @return 分段索引；索引不存在、损坏、与数据文件长度不一致或段过大时返回 null（不校验）
+     */
+    private SegmentIndex readSegmentIndex(File dataFile) {
+        File indexFile = SegmentIndex.indexFileOf(dataFile);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            SegmentIndex index = SegmentIndex.read(indexFile);
+            if (index.getDataLength() != dataFile.length()) {
+                log.warn("分段索引与数据文件长度不一致，忽略索引: {}", indexFile.getAbsolutePath());
+            } else if (index.maxSegmentLength() > SegmentIndex.MAX_SEGMENT_SIZE) {
+                // 旧版本未限制分片大小时写入的索引
+                log.warn("分段索引的段过大，忽略索引: {}", indexFile.getAbsolutePath());
+            } else {
+                return index;
+            }
+        } catch (IOException e) {
+            log.warn("读取分段索引失败，忽略索引: {}", indexFile.getAbsolutePath(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 迁移旧版自动分片：数据文件仍在时为其写入分段索引并删除重复的分片文件
+     *
+     * @return 回收的字节数；无需迁移返回 0
+     */
+    public long migrateLegacySegments(FileEntity file) throws IOException {
+        if (!Boolean.TRUE.equals(file.getIsChunked())
+                || file.getUploadId() == null || file.getUploadId().isEmpty()) {
+            return 0;
+        }
+        File dataFile = resolve(file.getFilePath());
+        File chunkDir = new File(getChunkDir(file.getUploadId()));
+        File[] parts = chunkDir.listFiles();
+        if (!dataFile.isFile() || parts == null) {
+            return 0;
+        }
+
+        File indexFile = SegmentIndex.indexFileOf(dataFile);
+        if (indexFile.isFile()) {
+            // 数据文件损坏时保留旧分片，避免删除唯一完好的副本
+            int corrupted = SegmentIndex.read(indexFile).verify(dataFile);
+            if (corrupted >= 0) {
+                log.warn("数据文件分段 {} 校验失败，保留旧版分片: {}", corrupted, file.getId());
+                return 0;
+            }
+        } else if (file.getChunkSize() != null && file.getChunkSize() > 0) {
+            SegmentIndex.build(dataFile, file.getChunkSize()).write(indexFile);
+        }
+        long reclaimed = 0;
+        for (File part : parts) {
+            long length = part.length();
+            if (part.delete()) {
+                reclaimed += length;
+            }
+        }
+        chunkDir.delete();
+        log.info("旧版分片已迁移: {}, 回收 {} 字节", file.getId(), reclaimed);
+        return reclaimed;
+    }
+
+    /**
+     * 获取分片目录
+     */
+    public String getChunkDir(String uploadId) {
+        return fileUploadUtil.getUploadRootPath() + "temp/" + uploadId + "/";
+    }
+
+    /**
+     * 删除文件的物理存储（数据文件、分段索引、冷存储归档及旧版自动分片产生的分片目录）
+     */
+    public void deleteStorage(FileEntity file) {
+        if (file.getFilePath() != null) {
+            fileTierService.onDelete(file.getFilePath());
+            File single = resolve(file.getFilePath());
+            if (single.exists() && !single.delete()) {
+                log.warn("删除文件失败: {}", single.getAbsolutePath());
+            }
+            hotFileCache.invalidate(single);
+            SegmentIndex.indexFileOf(single).delete();
+            File variant = gzipVariantOf(single);
+            hotFileCache.invalidate(variant);
+            variant.delete();
+        }
+        if (Boolean.TRUE.equals(file.getIsChunked())
+                && file.getUploadId() != null && !file.getUploadId().isEmpty()) {
+            File chunkDir = new File(getChunkDir(file.getUploadId()));
+            File[] parts = chunkDir.listFiles();
+            if (parts != null) {
+                for (File part : parts) {
+                    part.delete();
+                }
+            }
+            chunkDir.delete();
+        }
+    }
+
+    /**
+     * 数据文件对应的 gzip 副本
+     */
+    static File gzipVariantOf(File dataFile) {
+        return new File(dataFile.getPath() + ".gz");
+    }
+
+    /**
+     * 列出自动分片文件的所有分片
+     *
+     * @return 分片完整且总大小与元信息一致时返回分片列表，否则返回 null
+     */
+    private List<File> listSegments(FileEntity file) {
+        if (file.getUploadId() == null || file.getUploadId().isEmpty()
+                || file.getTotalChunks() == null || file.getTotalChunks() <= 0) {
+            return null;
+        }
+
+        String chunkDir = getChunkDir(file.getUploadId());
+        List<File> segments = new ArrayList<>(file.getTotalChunks());
+        long totalSize = 0;
+        for (int i = 0; i < file.getTotalChunks(); i++) {
+            File segment = new File(chunkDir + i);
+            if (!segment.isFile()) {
+                return null;
+            }
+            segments.add(segment);
+            totalSize += segment.length();
+        }
+
+        if (file.getFileSize() != null && totalSize != file.getFileSize()) {
+            log.warn("分片总大小与文件大小不一致，按单文件读取: {} ({} != {})",
+                    file.getId(), totalSize, file.getFileSize());
+            return null;
+        }
+        return segments;
+    }
+
+    /**
+     * 同时写入两个输出流（第二个可为空），关闭时不关闭任何一个
+     */
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            if (second != null) {
+                second.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            if (second != null) {
+                second.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileEntity;
+import com.ziwen.moudle.entity.file.FileTierEntity;
+import com.ziwen.moudle.enums.StorageTierEnum;
+import com.ziwen.moudle.mapper.file.FileTierMapper;
+import com.ziwen.moudle.utils.ConsistentHashRing;
+import com.ziwen.moudle.utils.GzipArchiver;
+import com.ziwen.moudle.utils.HotFileCache;
+import com.ziwen.moudle.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件冷热分层服务
+ * 长期未访问的文件压缩后移到归档目录（可挂载在廉价的大容量磁盘上），释放主存储卷；下载时按需透明恢复
+ *
+ * - 访问计数先在内存中累加，定时按批写入 sys_file_tier（一批一条语句），下载请求不产生数据库写入
+ * - 分层按存储路径记录，按内容去重的多个文件共用一份数据，任一引用最近被访问都不归档
+ * - 归档文件为 gzip 格式，本身已压缩的内容只做存储；恢复时还原原修改时间，ETag 和 Last-Modified 不变
+ * - 分段索引很小，归档时保留；gzip 副本直接删除，恢复后首次压缩传输时重新生成
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileTierService {
+
+    /** 单条语句写入的访问计数条数 */
+    private static final int FLUSH_BATCH = 500;
+    /** 路径锁分段数 */
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileTierMapper tierMapper;
+    private final StorageVolumeService storageVolumeService;
+    private final HotFileCache hotFileCache;
+    private final SnowflakeIdGenerator idGenerator;
+
+    /** 是否启用访问计数和恢复 */
+    private final boolean enabled;
+    /** 归档目录，为空时不归档 */
+    private final File archiveRoot;
+    /** 超过该时间未访问的文件归档（毫秒） */
+    private final long coldAfterMillis;
+    /** 小于该大小的文件不归档 */
+    private final long minSize;
+    /** 每批归档的文件数 */
+    private final int batchSize;
+    /** 每次归档任务扫描的文件数（按主键窗口扫描） */
+    private final int scanSize;
+
+    /** 归档扫描游标（已扫描到的文件ID），扫描到末尾后从头开始 */
+    private volatile long scanCursor;
+
+    /** 未写入数据库的访问计数：存储路径 → 计数 */
+    private final Map<String, AccessCounter> pendingAccess = new ConcurrentHashMap<>();
+    /** 按存储路径分段的锁，归档和恢复同一路径时互斥 */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicLong accesses = new AtomicLong();
+    private final AtomicLong rehydrations = new AtomicLong();
+    private final AtomicLong rehydrateFailures = new AtomicLong();
+    private final AtomicLong rehydrateNanos = new AtomicLong();
+    private final AtomicLong archivedFiles = new AtomicLong();
+    private final AtomicLong archivedBytes = new AtomicLong();
+    private final AtomicLong archivedStoredBytes = new AtomicLong();
+    private final AtomicLong archiveFailures = new AtomicLong();
+    private final AtomicLong flushedEntries = new AtomicLong();
+    private volatile long lastArchiveMillis;
+
+    public FileTierService(FileTierMapper tierMapper,
+                           StorageVolumeService storageVolumeService,
+                           HotFileCache hotFileCache,
+                           SnowflakeIdGenerator idGenerator,
+                           @Value("${file.tier.enabled:false}") boolean enabled,
+                           @Value("${file.tier.archive-path:}") String archivePath,
+                           @Value("${file.tier.cold-after-days:90}") long coldAfterDays,
+                           @Value("${file.tier.min-size:1048576}") long minSize,
+                           @Value("${file.tier.batch-size:100}") int batchSize,
+                           @Value("${file.tier.scan-size:100000}") int scanSize) {
+        this.tierMapper = tierMapper;
+        this.storageVolumeService = storageVolumeService;
+        this.hotFileCache = hotFileCache;
+        this.idGenerator = idGenerator;
+        this.enabled = enabled;
+        this.archiveRoot = StringUtils.hasText(archivePath) ? new File(archivePath) : null;
+        this.coldAfterMillis = TimeUnit.DAYS.toMillis(Math.max(1, coldAfterDays));
+        this.minSize = minSize;
+        this.batchSize = Math.max(1, batchSize);
+        this.scanSize = Math.max(this.batchSize, scanSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 是否启用分层
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次下载访问（只累加内存计数）
+     */
+    public void recordAccess(FileEntity file) {
+        if (!enabled || file.getFilePath() == null) {
+            return;
+        }
+        accesses.incrementAndGet();
+        pendingAccess.computeIfAbsent(file.getFilePath(), path -> new AccessCounter())
+                .hit(System.currentTimeMillis());
+    }
+
+    /**
+     * 定时批量写入访问计数
+     * 本周期没有访问的路径从内存中移除；移除与新访问同时发生时最多少计一次，不影响冷热判断
+     */
+    @Scheduled(fixedDelayString = "${file.tier.flush-interval:10000}")
+    public void flushAccess() {
+        if (!enabled || pendingAccess.isEmpty()) {
+            return;
+        }
+        List<FileTierEntity> batch = new ArrayList<>();
+        for (Map.Entry<String, AccessCounter> entry : pendingAccess.entrySet()) {
+            AccessCounter counter = entry.getValue();
+            long count = counter.count.sumThenReset();
+            if (count == 0) {
+                pendingAccess.remove(entry.getKey(), counter);
+                continue;
+            }
+            FileTierEntity tier = new FileTierEntity();
+            tier.setId(idGenerator.nextId());
+            tier.setStoragePath(entry.getKey());
+            tier.setAccessCount(count);
+            tier.setLastAccessAt(counter.lastAccessAt);
+            batch.add(tier);
+            if (batch.size() >= FLUSH_BATCH) {
+                writeAccess(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeAccess(batch);
+        }
+    }
+
+    private void writeAccess(List<FileTierEntity> batch) {
+        try {
+            tierMapper.upsertAccess(batch);
+            flushedEntries.addAndGet(batch.size());
+        } catch (Exception e) {
+            // 写入失败时计数放回内存，下个周期重试
+            log.warn("写入访问计数失败: {} 条 ({})", batch.size(), e.getMessage());
+            for (FileTierEntity tier : batch) {
+                pendingAccess.computeIfAbsent(tier.getStoragePath(), path -> new AccessCounter())
+                        .restore(tier.getAccessCount(), tier.getLastAccessAt());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAccess();
+    }
+
+    /**
+     * 定时归档长期未访问的文件
+     */
+    @Scheduled(fixedDelayString = "${file.tier.interval:3600000}")
+    public void archive() {
+        if (!enabled || archiveRoot == null) {
+            return;
+        }
+        runArchive();
+    }
+
+    /**
+     * 执行一批归档
+     * 每次只扫描游标之后 {@code scanSize} 个文件，游标随扫描前进，跳过的候选（数据文件不存在、删除失败等）
+     * 不会在每一轮都占满候选列表，一轮扫描到末尾后从头开始
+     *
+     * @return 本批归档的文件数
+     */
+    public int runArchive() {
+        if (!enabled || archiveRoot == null) {
+            return 0;
+        }
+        // 先写入内存中的计数，避免刚被访问的文件被选为候选
+        flushAccess();
+        long start = System.currentTimeMillis();
+        List<FileTierEntity> candidates;
+        try {
+            long afterId = scanCursor;
+            Long untilId = tierMapper.selectScanEnd(afterId, scanSize);
+            if (untilId == null && afterId > 0) {
+                // 已扫描到末尾，从头开始
+                afterId = 0;
+                untilId = tierMapper.selectScanEnd(afterId, scanSize);
+            }
+            if (untilId == null) {
+                scanCursor = 0;
+                return 0;
+            }
+            candidates = tierMapper.selectColdCandidates(start - coldAfterMillis, minSize, afterId, untilId, batchSize);
+            // 候选超过一批时，窗口内剩余的候选留到下一轮
+            scanCursor = candidates.size() == batchSize ? candidates.get(candidates.size() - 1).getFileId() : untilId;
+        } catch (Exception e) {
+            log.error("查询归档候选失败", e);
+            return 0;
+        }
+        int count = 0;
+        for (FileTierEntity candidate : candidates) {
+            if (pendingAccess.containsKey(candidate.getStoragePath())) {
+                continue;
+            }
+            try {
+                if (archiveOne(candidate)) {
+                    count++;
+                }
+            } catch (Exception e) {
+                archiveFailures.incrementAndGet();
+                log.warn("归档文件失败: {} ({})", candidate.getStoragePath(), e.getMessage());
+            }
+        }
+        lastArchiveMillis = System.currentTimeMillis() - start;
+        if (count > 0) {
+            log.info("归档 {} 个文件，耗时 {} ms", count, lastArchiveMillis);
+        }
+        return count;
+    }
+
+    /**
+     * 归档单个存储路径：压缩到临时文件并落盘 → 确认原文件未被修改 → 替换为归档文件 → 记录 → 删除原文件
+     */
+    private boolean archiveOne(FileTierEntity candidate) throws IOException {
+        String storagePath = candidate.getStoragePath();
+        File dataFile = storageVolumeService.resolve(storagePath);
+        if (!dataFile.isFile()) {
+            return false;
+        }
+        long modifiedAt = dataFile.lastModified();
+        long length = dataFile.length();
+
+        File archive = archiveFileOf(storagePath);
+        File dir = archive.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("创建归档目录失败: " + dir.getAbsolutePath());
+        }
+        File temp = new File(dir, archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            long archivedSize = GzipArchiver.compress(dataFile, temp, GzipArchiver.levelFor(candidate.getContentType()));
+            synchronized (lockOf(storagePath)) {
+                if (dataFile.lastModified() != modifiedAt || dataFile.length() != length
+                        || pendingAccess.containsKey(storagePath)) {
+                    // 压缩期间被修改或访问，下一轮再判断
+                    return false;
+                }
+                Files.move(temp.toPath(), archive.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                FileTierEntity tier = new FileTierEntity();
+                tier.setStoragePath(storagePath);
+                tier.setFileSize(length);
+                tier.setArchivePath(archive.getAbsolutePath());
+                tier.setArchivedSize(archivedSize);
+                tier.setArchivedAt(System.currentTimeMillis());
+                tier.setDataModifiedAt(modifiedAt);
+                tierMapper.markCold(tier);
+
+                hotFileCache.invalidate(dataFile);
+                if (!dataFile.delete()) {
+                    // 文件被占用（如 Windows 下正在下载），撤销本次归档
+                    tierMapper.markHot(storagePath);
+                    archive.delete();
+                    log.warn("删除已归档的数据文件失败，保留在主存储: {}", dataFile.getAbsolutePath());
+                    return false;
+                }
+                File variant = FileStorageService.gzipVariantOf(dataFile);
+                hotFileCache.invalidate(variant);
+                variant.delete();
+            }
+            archivedFiles.incrementAndGet();
+            archivedBytes.addAndGet(length);
+            archivedStoredBytes.addAndGet(archivedSize);
+            return true;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 恢复已归档的文件到主存储（数据文件不存在时由读取方调用）
+     *
+     * @param storagePath 存储路径
+     * @param dataFile 数据文件
+     * @return 数据文件已存在（已恢复或被其他请求恢复）返回 true；未归档或恢复失败返回 false
+     */
+    public boolean rehydrate(String storagePath, File dataFile) {
+        if (!enabled || storagePath == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        synchronized (lockOf(storagePath)) {
+            if (dataFile.isFile()) {
+                return true;
+            }
+            FileTierEntity tier;
+            try {
+                tier = tierMapper.selectByStoragePath(storagePath);
+            } catch (Exception e) {
+                log.error("查询存储层级失败: {}", storagePath, e);
+                return false;
+            }
+            if (tier == null || StorageTierEnum.getByName(tier.getTier()) != StorageTierEnum.COLD
+                    || tier.getArchivePath() == null) {
+                return false;
+            }
+            File archive = new File(tier.getArchivePath());
+            File dir = dataFile.getParentFile();
+            File temp = new File(dir, dataFile.getName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                    throw new IOException("创建目录失败: " + dir.getAbsolutePath());
+                }
+                long restored = GzipArchiver.decompress(archive, temp);
+                if (tier.getFileSize() != null && restored != tier.getFileSize()) {
+                    throw new IOException("恢复后的大小不一致: " + restored + " != " + tier.getFileSize());
+                }
+                if (tier.getDataModifiedAt() != null) {
+                    temp.setLastModified(tier.getDataModifiedAt());
+                }
+                Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                tierMapper.markHot(storagePath);
+                if (!archive.delete()) {
+                    log.warn("删除归档文件失败: {}", archive.getAbsolutePath());
+                }
+            } catch (Exception e) {
+                rehydrateFailures.incrementAndGet();
+                log.error("恢复归档文件失败: {}", storagePath, e);
+                return dataFile.isFile();
+            } finally {
+                temp.delete();
+            }
+        }
+        rehydrations.incrementAndGet();
+        rehydrateNanos.addAndGet(System.nanoTime() - start);
+        log.info("已恢复归档文件: {}", storagePath);
+        return true;
+    }
+
+    /**
+     * 文件存储被删除时删除归档文件和分层记录
+     */
+    public void onDelete(String storagePath) {
+        if (storagePath == null) {
+            return;
+        }
+        pendingAccess.remove(storagePath);
+        if (!enabled) {
+            return;
+        }
+        synchronized (lockOf(storagePath)) {
+            try {
+                FileTierEntity tier = tierMapper.selectByStoragePath(storagePath);
+                if (tier == null) {
+                    return;
+                }
+                if (tier.getArchivePath() != null) {
+                    File archive = new File(tier.getArchivePath());
+                    if (archive.exists() && !archive.delete()) {
+                        log.warn("删除归档文件失败: {}", archive.getAbsolutePath());
+                    }
+                }
+                tierMapper.deleteByStoragePath(storagePath);
+            } catch (Exception e) {
+                log.warn("删除分层记录失败: {} ({})", storagePath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 归档文件路径：按存储路径哈希分两级目录
+     */
+    private File archiveFileOf(String storagePath) {
+        long hash = ConsistentHashRing.hash(storagePath);
+        return new File(new File(archiveRoot, String.format("%02x", hash & 0xFF)), String.format("%016x.gz", hash));
+    }
+
+    private Object lockOf(String storagePath) {
+        return locks[Math.floorMod(storagePath.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * 分层统计：访问中命中主存储的比例、恢复耗时、归档释放的空间，以及数据库中各层级的汇总
+     */
+    public Map<String, Object> getStats() {
+        long accessCount = accesses.get();
+        long rehydrated = rehydrations.get();
+        long archivedTotal = archivedBytes.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("archiveEnabled", enabled && archiveRoot != null);
+        stats.put("accesses", accessCount);
+        stats.put("rehydrations", rehydrated);
+        stats.put("rehydrateFailures", rehydrateFailures.get());
+        stats.put("hotHitRatio", accessCount == 0 ? 1.0 : 1.0 - (double) Math.min(rehydrated, accessCount) / accessCount);
+        stats.put("avgRehydrateMillis", rehydrated == 0 ? 0.0 : rehydrateNanos.get() / 1_000_000.0 / rehydrated);
+        stats.put("archivedFiles", archivedFiles.get());
+        stats.put("archivedBytes", archivedTotal);
+        stats.put("archivedStoredBytes", archivedStoredBytes.get());
+        stats.put("compressionSavedBytes", archivedTotal - archivedStoredBytes.get());
+        stats.put("archiveFailures", archiveFailures.get());
+        stats.put("lastArchiveMillis", lastArchiveMillis);
+        stats.put("scanCursor", scanCursor);
+        stats.put("pendingAccessPaths", pendingAccess.size());
+        stats.put("flushedEntries", flushedEntries.get());
+        if (enabled) {
+            try {
+                Map<String, Object> tiers = new LinkedHashMap<>();
+                long reclaimed = 0;
+                for (Map<String, Object> row : tierMapper.selectTierSummary()) {
+                    String tier = String.valueOf(row.get("tier"));
+                    tiers.put(tier, row);
+                    if (StorageTierEnum.COLD.name().equals(tier)) {
+                        reclaimed = ((Number) row.get("fileBytes")).longValue();
+                    }
+                }
+                stats.put("tiers", tiers);
+                // 主存储卷上释放的空间（归档文件位于归档目录）
+                stats.put("reclaimedBytes", reclaimed);
+            } catch (Exception e) {
+                log.warn("查询分层汇总失败: {}", e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 单个存储路径的内存访问计数
+     */
+    private static class AccessCounter {
+        private final LongAdder count = new LongAdder();
+        private volatile long lastAccessAt;
+
+        void hit(long now) {
+            count.increment();
+            if (now > lastAccessAt) {
+                lastAccessAt = now;
+            }
+        }
+
+        void restore(long n, long accessedAt) {
+            count.add(n);
+            if (accessedAt > lastAccessAt) {
+                lastAccessAt = accessedAt;
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.FileTokenRevocationEntity;
+import com.ziwen.moudle.enums.TokenRevokeTypeEnum;
+import com.ziwen.moudle.mapper.file.FileTokenRevocationMapper;
+import com.ziwen.moudle.utils.FileAccessSessionManager;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件访问令牌撤销服务
+ * 撤销记录写入 sys_file_token_revocation，各节点定时同步到本地撤销列表；
+ * 发起撤销的节点立即生效，其他节点增量同步，在一个同步周期内生效
+ *
+ * 撤销列表有界：单令牌撤销达到上限时先清理已失效的记录，仍然已满则拒绝本次撤销（不会扩大到其他用户的令牌）
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class FileTokenRevocationService {
+
+    /** 增量同步的回看时间（毫秒） */
+    private static final long SYNC_OVERLAP_MILLIS = 60_000;
+
+    private final FileTokenRevocationMapper revocationMapper;
+    private final FileAccessSessionManager sessionManager;
+
+    /** 单令牌撤销记录上限 */
+    private final int maxRevokedTokens;
+
+    /** 上次成功同步的时间（毫秒） */
+    private volatile long lastSyncAt;
+
+    public FileTokenRevocationService(FileTokenRevocationMapper revocationMapper,
+                                      FileAccessSessionManager sessionManager,
+                                      @Value("${file.access.token.max-revocations:10000}") int maxRevokedTokens) {
+        this.revocationMapper = revocationMapper;
+        this.sessionManager = sessionManager;
+        this.maxRevokedTokens = maxRevokedTokens;
+    }
+
+    /**
+     * 撤销令牌（强制停止访问）
+     *
+     * @param token 要撤销的令牌
+     * @return 撤销成功返回true，令牌无效或已过期返回false
+     * @throws IllegalStateException 撤销列表已满
+     */
+    public boolean revokeToken(String token) {
+        FileAccessSessionManager.FileAccessSession session = sessionManager.verifySignature(token);
+        if (session == null) {
+            return false;
+        }
+        if (sessionManager.getRevokedTokenCount() >= maxRevokedTokens) {
+            sessionManager.cleanupExpiredTokens();
+        }
+        if (sessionManager.getRevokedTokenCount() >= maxRevokedTokens) {
+            log.warn("令牌撤销列表已满（{} 条），拒绝撤销文件 {} 的令牌", maxRevokedTokens, session.getFileId());
+            throw new IllegalStateException("令牌撤销列表已满，请稍后重试或撤销该文件的全部令牌");
+        }
+
+        FileTokenRevocationEntity revocation = new FileTokenRevocationEntity();
+        revocation.setRevokeType(TokenRevokeTypeEnum.TOKEN.name());
+        revocation.setTarget(session.getTokenId());
+        revocation.setRevokedAt(System.currentTimeMillis());
+        revocation.setExpiresAt(session.getExpiresAtMillis());
+        revocationMapper.insert(revocation);
+
+        sessionManager.applyTokenRevocation(session.getTokenId(), session.getExpiresAtMillis());
+        return true;
+    }
+
+    /**
+     * 撤销文件的所有访问令牌（此刻之前签发的令牌全部失效）
+     *
+     * @param fileId 文件ID
+     */
+    public void revokeFileTokens(Long fileId) {
+        long now = System.currentTimeMillis();
+        FileTokenRevocationEntity revocation = new FileTokenRevocationEntity();
+        revocation.setRevokeType(TokenRevokeTypeEnum.FILE.name());
+        revocation.setTarget(String.valueOf(fileId));
+        revocation.setRevokedAt(now);
+        revocation.setExpiresAt(now + TimeUnit.MINUTES.toMillis(sessionManager.getMaxExpiresMinutes()));
+        revocationMapper.insert(revocation);
+
+        sessionManager.applyFileRevocation(fileId, now);
+    }
+
+    /**
+     * 定时同步其他节点登记的撤销记录
+     * 只拉取上次同步之后撤销的记录（回看 {@value #SYNC_OVERLAP_MILLIS} 毫秒容忍各节点时钟偏差和事务延迟提交）
+     */
+    @Scheduled(fixedDelayString = "${file.access.token.sync-interval:5000}")
+    public void sync() {
+        long now = System.currentTimeMillis();
+        syncSince(lastSyncAt - SYNC_OVERLAP_MILLIS, now);
+    }
+
+    /**
+     * 启动时全量同步
+     */
+    @PostConstruct
+    public void fullSync() {
+        syncSince(0, System.currentTimeMillis());
+    }
+
+    private void syncSince(long since, long now) {
+        try {
+            int added = 0;
+            for (FileTokenRevocationEntity revocation : revocationMapper.selectActiveSince(now, since)) {
+                TokenRevokeTypeEnum type = TokenRevokeTypeEnum.getByName(revocation.getRevokeType());
+                if (type == TokenRevokeTypeEnum.TOKEN) {
+                    if (sessionManager.applyTokenRevocation(revocation.getTarget(), revocation.getExpiresAt())) {
+                        added++;
+                    }
+                } else if (type == TokenRevokeTypeEnum.FILE) {
+                    if (sessionManager.applyFileRevocation(Long.valueOf(revocation.getTarget()), revocation.getRevokedAt())) {
+                        added++;
+                    }
+                }
+            }
+            lastSyncAt = now;
+            if (added > 0) {
+                log.info("同步令牌撤销记录 {} 条", added);
+            }
+        } catch (Exception e) {
+            log.error("同步令牌撤销记录失败", e);
+        }
+    }
+
+    /**
+     * 清理已失效的撤销记录（本地和数据库）
+     *
+     * @return 本地清理的记录数
+     */
+    public int cleanupExpired() {
+        int removed = sessionManager.cleanupExpiredTokens();
+        try {
+            revocationMapper.deleteExpired(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("清理令牌撤销记录失败", e);
+        }
+        // 偶尔全量同步一次，兜底时钟偏差超过回看时间时漏掉的记录
+        fullSync();
+        return removed;
+    }
+}
@@ -0,0 +1,286 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.entity.file.StorageVolumeEntity;
+import com.ziwen.moudle.enums.VolumeStatusEnum;
+import com.ziwen.moudle.mapper.file.StorageVolumeMapper;
+import com.ziwen.moudle.utils.ConsistentHashRing;
+import com.ziwen.moudle.utils.FileUploadUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 存储卷服务
+ * 文件分散存放在多个存储根目录（每块磁盘一个卷），存储路径记为 volume://卷编码/相对路径，
+ * 读取时通过卷表解析出实际位置，新增磁盘只需登记新卷，迁移挂载点只需修改卷的根目录
+ *
+ * - 新文件按文件名在一致性哈希环上选择卷（按权重放置虚拟节点），剩余空间不足的卷顺延到下一个
+ * - 卷内按文件名哈希分两级目录（256 × 256），单个目录的文件数保持在较小范围
+ * - 旧数据的绝对路径原样可用
+ *
+ * @author ziwen
+ */
+@Slf4j
+@Service
+public class StorageVolumeService {
+
+    /** 存储路径前缀 */
+    public static final String VOLUME_SCHEME = "volume://";
+    /** 未登记任何卷时，以 file.upload.path 登记的默认卷 */
+    private static final String DEFAULT_VOLUME = "default";
+    private static final Pattern VOLUME_CODE = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final StorageVolumeMapper volumeMapper;
+    private final FileUploadUtil fileUploadUtil;
+
+    /** 卷的最小剩余空间（字节），低于该值不再分配新文件 */
+    private final long minFreeBytes;
+
+    /** 当前卷表快照（整体替换，读取无需加锁） */
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    public StorageVolumeService(StorageVolumeMapper volumeMapper, FileUploadUtil fileUploadUtil,
+                                @Value("${file.storage.min-free-bytes:1073741824}") long minFreeBytes) {
+        this.volumeMapper = volumeMapper;
+        this.fileUploadUtil = fileUploadUtil;
+        this.minFreeBytes = minFreeBytes;
+    }
+
+    /**
+     * 卷表快照：卷编码 → 卷，及可写卷组成的哈希环
+     */
+    private static class Snapshot {
+        private final Map<String, StorageVolumeEntity> volumes = new LinkedHashMap<>();
+        private final ConsistentHashRing<StorageVolumeEntity> ring;
+
+        Snapshot(List<StorageVolumeEntity> list) {
+            Map<String, StorageVolumeEntity> writable = new LinkedHashMap<>();
+            Map<String, Integer> weights = new HashMap<>();
+            for (StorageVolumeEntity volume : list) {
+                volumes.put(volume.getVolumeCode(), volume);
+                if (VolumeStatusEnum.getByName(volume.getStatus()) == VolumeStatusEnum.ACTIVE) {
+                    writable.put(volume.getVolumeCode(), volume);
+                    weights.put(volume.getVolumeCode(), volume.getWeight() == null ? 1 : volume.getWeight());
+                }
+            }
+            ring = new ConsistentHashRing<>(writable, weights);
+        }
+    }
+
+    /**
+     * 文件存放位置
+     */
+    public static class Placement {
+        private final String storagePath;
+        private final File file;
+        private final String accessPath;
+
+        public Placement(String storagePath, File file, String accessPath) {
+            this.storagePath = storagePath;
+            this.file = file;
+            this.accessPath = accessPath;
+        }
+
+        /** 存储路径（写入 FileEntity.filePath） */
+        public String getStoragePath() { return storagePath; }
+        /** 实际文件 */
+        public File getFile() { return file; }
+        /** 访问路径 */
+        public String getAccessPath() { return accessPath; }
+    }
+
+    /**
+     * 启动时加载卷表；未登记任何卷时以 file.upload.path 登记默认卷
+     */
+    @PostConstruct
+    public void init() {
+        List<StorageVolumeEntity> volumes = volumeMapper.selectAll();
+        if (volumes.isEmpty()) {
+            StorageVolumeEntity volume = new StorageVolumeEntity();
+            volume.setVolumeCode(DEFAULT_VOLUME);
+            volume.setRootPath(fileUploadUtil.getUploadRootPath());
+            volume.setWeight(1);
+            volume.setStatus(VolumeStatusEnum.ACTIVE.name());
+            try {
+                volumeMapper.insert(volume);
+            } catch (Exception e) {
+                // 其他节点同时登记了默认卷
+                log.debug("登记默认存储卷失败，重新加载", e);
+            }
+            volumes = volumeMapper.selectAll();
+        }
+        snapshot = new Snapshot(volumes);
+        log.info("存储卷加载完成: {}", snapshot.volumes.keySet());
+    }
+
+    /**
+     * 定时重新加载卷表（其他节点新增或修改的卷）
+     */
+    @Scheduled(fixedDelayString = "${file.storage.refresh-interval:60000}",
+            initialDelayString = "${file.storage.refresh-interval:60000}")
+    public void refresh() {
+        try {
+            snapshot = new Snapshot(volumeMapper.selectAll());
+        } catch (Exception e) {
+            log.error("重新加载存储卷失败", e);
+        }
+    }
+
+    /**
+     * 为新文件分配存放位置（创建所在目录，不创建文件）
+     *
+     * @param originalFileName 原始文件名（只取扩展名）
+     * @return 存放位置
+     */
+    public Placement allocate(String originalFileName) {
+        String fileName = UUID.randomUUID() + extensionOf(originalFileName);
+        StorageVolumeEntity volume = snapshot.ring.select(fileName, this::hasFreeSpace);
+        if (volume == null) {
+            throw new IllegalStateException("没有可写入的存储卷（均为只读或剩余空间不足）");
+        }
+
+        // 两级哈希目录
+        long hash = ConsistentHashRing.hash(fileName);
+        String relativeDir = String.format("%02x/%02x", (hash >>> 8) & 0xff, hash & 0xff);
+        File dir = new File(volume.getRootPath(), relativeDir);
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IllegalStateException("创建存储目录失败: " + dir.getAbsolutePath());
+        }
+        String relativePath = relativeDir + "/" + fileName;
+        return new Placement(VOLUME_SCHEME + volume.getVolumeCode() + "/" + relativePath,
+                new File(dir, fileName),
+                fileUploadUtil.buildAccessPath(volume.getVolumeCode() + "/" + relativeDir, fileName));
+    }
+
+    /**
+     * 解析存储路径
+     *
+     * @param storagePath volume://卷编码/相对路径，或旧数据的绝对路径
+     * @return 实际文件
+     */
+    public File resolve(String storagePath) {
+        if (storagePath == null || !storagePath.startsWith(VOLUME_SCHEME)) {
+            return new File(storagePath);
+        }
+        int slash = storagePath.indexOf('/', VOLUME_SCHEME.length());
+        if (slash < 0) {
+            throw new IllegalArgumentException("存储路径格式错误: " + storagePath);
+        }
+        String code = storagePath.substring(VOLUME_SCHEME.length(), slash);
+        StorageVolumeEntity volume = snapshot.volumes.get(code);
+        if (volume == null) {
+            // 其他节点刚登记的卷
+            refresh();
+            volume = snapshot.volumes.get(code);
+            if (volume == null) {
+                throw new IllegalStateException("存储卷不存在: " + code);
+            }
+        }
+        return new File(volume.getRootPath(), storagePath.substring(slash + 1));
+    }
+
+    /**
+     * 登记新卷
+     *
+     * @param volumeCode 卷编码
+     * @param rootPath 根目录
+     * @param weight 分配权重
+     */
+    public void addVolume(String volumeCode, String rootPath, int weight) {
+        if (!StringUtils.hasText(volumeCode) || !VOLUME_CODE.matcher(volumeCode).matches()) {
+            throw new IllegalArgumentException("卷编码只能包含字母、数字、下划线和中划线，最长32位");
+        }
+        if (snapshot.volumes.containsKey(volumeCode)) {
+            throw new IllegalArgumentException("卷编码已存在: " + volumeCode);
+        }
+        File root = new File(rootPath);
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IllegalArgumentException("根目录不存在且无法创建: " + rootPath);
+        }
+        StorageVolumeEntity volume = new StorageVolumeEntity();
+        volume.setVolumeCode(volumeCode);
+        volume.setRootPath(rootPath);
+        volume.setWeight(Math.max(weight, 1));
+        volume.setStatus(VolumeStatusEnum.ACTIVE.name());
+        volumeMapper.insert(volume);
+        refresh();
+        log.info("登记存储卷: {} -> {}", volumeCode, rootPath);
+    }
+
+    /**
+     * 修改卷的根目录（迁移挂载点）、权重或状态
+     *
+     * @param volumeCode 卷编码
+     * @param rootPath 根目录，为空不修改
+     * @param weight 权重，为空不修改
+     * @param status 状态，为空不修改
+     * @return 卷存在返回 true
+     */
+    public boolean updateVolume(String volumeCode, String rootPath, Integer weight, String status) {
+        if (status != null && VolumeStatusEnum.getByName(status) == null) {
+            throw new IllegalArgumentException("卷状态无效: " + status);
+        }
+        StorageVolumeEntity volume = new StorageVolumeEntity();
+        volume.setVolumeCode(volumeCode);
+        volume.setRootPath(StringUtils.hasText(rootPath) ? rootPath : null);
+        volume.setWeight(weight == null ? null : Math.max(weight, 0));
+        volume.setStatus(status);
+        boolean updated = volumeMapper.updateByCode(volume) > 0;
+        refresh();
+        return updated;
+    }
+
+    /**
+     * 各卷的状态和磁盘空间
+     */
+    public List<Map<String, Object>> getVolumeStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (StorageVolumeEntity volume : snapshot.volumes.values()) {
+            File root = new File(volume.getRootPath());
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("volumeCode", volume.getVolumeCode());
+            item.put("rootPath", volume.getRootPath());
+            item.put("weight", volume.getWeight());
+            item.put("status", volume.getStatus());
+            item.put("totalBytes", root.getTotalSpace());
+            item.put("usableBytes", root.getUsableSpace());
+            item.put("writable", VolumeStatusEnum.getByName(volume.getStatus()) == VolumeStatusEnum.ACTIVE
+                    && hasFreeSpace(volume));
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    private boolean hasFreeSpace(StorageVolumeEntity volume) {
+        return new File(volume.getRootPath()).getUsableSpace() >= minFreeBytes;
+    }
+
+    /**
+     * 提取安全的扩展名（只保留字母数字，避免路径字符）
+     */
+    private static String extensionOf(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return "";
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension.length() <= 16 && extension.chars().allMatch(Character::isLetterOrDigit)
+                ? "." + extension : "";
+    }
+}
@@ -1,16 +1,34 @@
 package com.ziwen.moudle.service.impl.file;
 
+import com.ziwen.moudle.dto.file.FileListItemDTO;
+import com.ziwen.moudle.dto.file.FilePageDTO;
+import com.ziwen.moudle.dto.file.FileQueryDTO;
 import com.ziwen.moudle.entity.file.FileEntity;
 import com.ziwen.moudle.mapper.file.FileMapper;
+import com.ziwen.moudle.service.file.FileSearchService;
 import com.ziwen.moudle.service.file.FileService;
+import com.ziwen.moudle.utils.BoundedCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 文件服务实现
+ * 文件元信息读穿缓存：按ID缓存单个文件，写操作后立即失效；文件列表不缓存，分页浏览走游标查询；
+ * 缓存中的实体不直接返回，调用方拿到的是副本，修改不会污染缓存
  *
  * @author system
  */
@@ -18,10 +36,24 @@ import java.util.List;
 @Service
 public class FileServiceImpl implements FileService {
 
+    /** 分页默认数量 */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    /** 分页最大数量 */
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final FileMapper fileMapper;
+    private final FileSearchService fileSearchService;
+
+    /** 文件元信息缓存（ID → 文件） */
+    private final BoundedCache<Long, FileEntity> fileCache;
 
-    public FileServiceImpl(FileMapper fileMapper) {
+    public FileServiceImpl(FileMapper fileMapper,
+                           FileSearchService fileSearchService,
+                           @Value("${file.metadata-cache.max-entries:10000}") int maxEntries,
+                           @Value("${file.metadata-cache.ttl-seconds:300}") long ttlSeconds) {
         this.fileMapper = fileMapper;
+        this.fileSearchService = fileSearchService;
+        this.fileCache = new BoundedCache<>(maxEntries, TimeUnit.SECONDS.toNanos(ttlSeconds));
     }
 
     @Override
@@ -29,13 +61,62 @@ public class FileServiceImpl implements FileService {
         return fileMapper.selectFileList();
     }
 
+    @Override
+    public List<FileEntity> listChunkedFilesAfter(long afterId, int limit) {
+        return fileMapper.selectChunkedAfter(afterId, limit);
+    }
+
+    @Override
+    public FilePageDTO listFilesPage(FileQueryDTO query) {
+        int limit = query.getLimit() == null ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(query.getLimit(), MAX_PAGE_SIZE));
+
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (StringUtils.hasText(query.getCursor())) {
+            // 游标：base64url(上传时间_文件ID)
+            try {
+                String cursor = new String(Base64.getUrlDecoder().decode(query.getCursor()), StandardCharsets.UTF_8);
+                int sep = cursor.lastIndexOf('_');
+                cursorTime = LocalDateTime.parse(cursor.substring(0, sep));
+                cursorId = Long.valueOf(cursor.substring(sep + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+
+        LocalDateTime uploadFrom = query.getUploadFrom() == null ? null : query.getUploadFrom().atStartOfDay();
+        LocalDateTime uploadBefore = query.getUploadTo() == null ? null : query.getUploadTo().plusDays(1).atStartOfDay();
+
+        // 多取一条判断是否还有下一页
+        List<FileListItemDTO> items = fileMapper.selectPage(query, uploadFrom, uploadBefore, cursorTime, cursorId, limit + 1);
+        FilePageDTO page = new FilePageDTO();
+        page.setHasMore(items.size() > limit);
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            FileListItemDTO last = items.get(limit - 1);
+            page.setNextCursor(Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getUploadTime() + "_" + last.getId()).getBytes(StandardCharsets.UTF_8)));
+        }
+        page.setItems(items);
+        return page;
+    }
+
     @Override
     public FileEntity getFile(Long id) {
         if (id == null) {
             log.warn("文件ID不能为空");
             return null;
         }
-        return fileMapper.selectById(id);
+        FileEntity file = fileCache.get(id, fileMapper::selectById);
+        return file == null ? null : copyOf(file);
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("file", fileCache.getStats());
+        return stats;
     }
 
     @Override
@@ -52,6 +133,10 @@ public class FileServiceImpl implements FileService {
         }
 
         fileMapper.insert(file);
+        invalidate(file.getId());
+        Long fileId = file.getId();
+        String originalName = file.getOriginalName();
+        afterCommit(() -> fileSearchService.index(fileId, originalName));
         log.info("文件保存成功: {}", file.getId());
         return file.getId();
     }
@@ -72,6 +157,12 @@ public class FileServiceImpl implements FileService {
         }
 
         fileMapper.updateById(file);
+        invalidate(file.getId());
+        if (file.getOriginalName() != null) {
+            Long fileId = file.getId();
+            String originalName = file.getOriginalName();
+            afterCommit(() -> fileSearchService.index(fileId, originalName));
+        }
         log.info("文件更新成功: {}", file.getId());
     }
 
@@ -95,7 +186,42 @@ public class FileServiceImpl implements FileService {
         updateFile.setId(id);
         updateFile.setIsDeleted(1);
         fileMapper.updateById(updateFile);
+        invalidate(id);
+        afterCommit(() -> fileSearchService.remove(id));
 
         log.info("文件删除成功: {}", id);
     }
+
+    /**
+     * 立即失效，事务提交后再失效一次（避免提交前其他线程把旧数据重新加载进缓存）
+     */
+    private void invalidate(Long id) {
+        fileCache.invalidate(id);
+        afterCommit(() -> fileCache.invalidate(id));
+    }
+
+    /**
+     * 事务提交后执行（没有事务时立即执行）
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 复制缓存中的实体（调用方可能修改返回值）；按属性复制，新增字段无需修改此处
+     */
+    private static FileEntity copyOf(FileEntity source) {
+        FileEntity copy = new FileEntity();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
 }
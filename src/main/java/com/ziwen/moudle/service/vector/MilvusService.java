@@ -26,6 +26,9 @@ import java.util.List;
 @Slf4j
 public class MilvusService {
 
+    /** 批量删除时单次请求的最大ID数 */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     private final MilvusServiceClient milvusClient;
     private final MilvusConfig milvusConfig;
 
@@ -119,6 +122,33 @@ public class MilvusService {
         }
     }
 
+    /**
+     * 批量插入向量（一次请求）
+     *
+     * @param chunkIds 片段ID
+     * @param vectors 向量，与片段ID一一对应
+     * @throws IllegalStateException 插入失败（调用方重试，重新入库前会先删除旧向量）
+     */
+    public void insertVectors(List<Long> chunkIds, List<List<Float>> vectors) {
+        if (chunkIds.size() != vectors.size()) {
+            throw new IllegalArgumentException("片段数与向量数不一致: " + chunkIds.size() + " != " + vectors.size());
+        }
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        InsertParam insertParam = InsertParam.newBuilder()
+            .withCollectionName(milvusConfig.getCollectionName())
+            .withFields(List.of(
+                new InsertParam.Field("chunk_id", chunkIds),
+                new InsertParam.Field("vector", vectors)
+            ))
+            .build();
+        R<MutationResult> result = milvusClient.insert(insertParam);
+        if (result.getStatus() != 0) {
+            throw new IllegalStateException("批量插入向量失败: " + result.getMessage());
+        }
+    }
+
     /**
      * 搜索相似向量（带相似度阈值过滤）
      * @param queryVector 查询向量
@@ -198,5 +228,33 @@ public class MilvusService {
             log.error("删除向量失败: {}", e.getMessage());
         }
     }
-}
 
+    /**
+     * 按表达式批量删除向量（chunk_id in [...]），每 {@value #DELETE_BATCH_SIZE} 个一次请求
+     *
+     * @param chunkIds 片段ID
+     * @throws IllegalStateException 删除失败（调用方重试，删除是幂等的）
+     */
+    public void deleteVectors(List<Long> chunkIds) {
+        for (int from = 0; from < chunkIds.size(); from += DELETE_BATCH_SIZE) {
+            List<Long> batch = chunkIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, chunkIds.size()));
+            StringBuilder expr = new StringBuilder("chunk_id in [");
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    expr.append(',');
+                }
+                expr.append(batch.get(i));
+            }
+            expr.append(']');
+
+            DeleteParam deleteParam = DeleteParam.newBuilder()
+                .withCollectionName(milvusConfig.getCollectionName())
+                .withExpr(expr.toString())
+                .build();
+            R<MutationResult> result = milvusClient.delete(deleteParam);
+            if (result.getStatus() != 0) {
+                throw new IllegalStateException("批量删除向量失败: " + result.getMessage());
+            }
+        }
+    }
+}
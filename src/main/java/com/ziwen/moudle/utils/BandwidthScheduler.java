@@ -0,0 +1,360 @@
+package com.ziwen.moudle.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 下载带宽调度器
+ * 以传输守卫的形式接入下载 / 在线播放的切片输出循环，每个切片写出前按顺序取得三级令牌：
+ * 客户端令牌桶 → 文件令牌桶 → 全局令牌桶
+ *
+ * - 令牌桶按 GCRA（理论到达时间）实现，突发容量为 1 秒的速率，空闲的桶满额后可直接丢弃
+ * - 全局令牌在交互类（小文件、Range 请求）与批量类传输之间按权重公平排队（开始时间公平排队）：
+ *   带宽紧张时交互类按权重比例优先取得令牌，批量类不会被饿死
+ * - 交互类传输超过一定字节数后降为批量类，避免 "bytes=0-" 形式的整段拉取长期占用交互份额
+ * - 所有速率均为 0 时不做限速（下载仍可走 sendfile），只统计流量
+ *
+ * @author ziwen
+ */
+@Component
+public class BandwidthScheduler {
+
+    /** 流量类别 */
+    public enum TrafficClass {
+        /** 交互类：小文件、Range 请求 */
+        INTERACTIVE,
+        /** 批量类：大文件整段下载、打包下载 */
+        BULK
+    }
+
+    /** 吞吐率统计的时间窗口（指数衰减） */
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /** 全局 / 每客户端 / 每文件速率（字节/秒），0 表示不限 */
+    private final long globalBytesPerSecond;
+    private final long clientBytesPerSecond;
+    private final long fileBytesPerSecond;
+    /** 交互类传输的字节上限，超过后降为批量类 */
+    private final long interactiveMaxBytes;
+    /** 各类别的权重 */
+    private final int[] weights = new int[TrafficClass.values().length];
+
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, TokenBucket> fileBuckets = new ConcurrentHashMap<>();
+
+    /** 全局令牌的公平排队 */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingDouble((Ticket ticket) -> ticket.finish).thenComparingLong(ticket -> ticket.sequence));
+    private final double[] lastFinish = new double[TrafficClass.values().length];
+    private double virtualTime;
+    private long sequence;
+
+    private final ClassStats[] stats = new ClassStats[TrafficClass.values().length];
+
+    public BandwidthScheduler(@Value("${file.bandwidth.global-bytes-per-second:0}") long globalBytesPerSecond,
+                              @Value("${file.bandwidth.client-bytes-per-second:0}") long clientBytesPerSecond,
+                              @Value("${file.bandwidth.file-bytes-per-second:0}") long fileBytesPerSecond,
+                              @Value("${file.bandwidth.interactive-weight:4}") int interactiveWeight,
+                              @Value("${file.bandwidth.bulk-weight:1}") int bulkWeight,
+                              @Value("${file.bandwidth.interactive-max-bytes:1048576}") long interactiveMaxBytes) {
+        this.globalBytesPerSecond = Math.max(globalBytesPerSecond, 0);
+        this.clientBytesPerSecond = Math.max(clientBytesPerSecond, 0);
+        this.fileBytesPerSecond = Math.max(fileBytesPerSecond, 0);
+        this.interactiveMaxBytes = interactiveMaxBytes;
+        this.weights[TrafficClass.INTERACTIVE.ordinal()] = Math.max(interactiveWeight, 1);
+        this.weights[TrafficClass.BULK.ordinal()] = Math.max(bulkWeight, 1);
+        this.globalBucket = this.globalBytesPerSecond > 0
+                ? new TokenBucket(this.globalBytesPerSecond, System.nanoTime()) : null;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new ClassStats();
+        }
+    }
+
+    /**
+     * 令牌桶（GCRA）：记录理论到达时间 tat，每字节推进 1/速率 秒，
+     * tat 领先当前时间不超过突发容量时放行
+     */
+    static class TokenBucket {
+        private final double nanosPerByte;
+        private final long burstNanos;
+        private long tat;
+
+        TokenBucket(long bytesPerSecond, long now) {
+            this.nanosPerByte = (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            // 突发容量：1 秒的速率，至少容纳两个切片
+            this.burstNanos = Math.max(TimeUnit.SECONDS.toNanos(1), cost(2L * FileTransferUtil.SLICE_SIZE));
+            this.tat = now;
+        }
+
+        private long cost(long bytes) {
+            return (long) Math.ceil(bytes * nanosPerByte);
+        }
+
+        /**
+         * 取得 bytes 个令牌需要等待的纳秒数（不占用令牌）
+         */
+        synchronized long delay(long bytes, long now) {
+            // 单次请求超过突发容量时按突发容量计算，否则永远等不到
+            long allowedAhead = burstNanos - Math.min(cost(bytes), burstNanos);
+            return Math.max(0, tat - now - allowedAhead);
+        }
+
+        /**
+         * 占用令牌（允许透支，透支部分由后续请求等待）
+         */
+        synchronized void consume(long bytes, long now) {
+            tat = Math.max(tat, now) + cost(bytes);
+        }
+
+        /**
+         * 预约令牌：立即占用，返回需要等待的纳秒数
+         */
+        synchronized long reserve(long bytes, long now) {
+            long wait = delay(bytes, now);
+            consume(bytes, now);
+            return wait;
+        }
+
+        /**
+         * 桶已满额（丢弃后重新创建不影响限速）
+         */
+        synchronized boolean isFull(long now) {
+            return tat <= now;
+        }
+    }
+
+    /**
+     * 全局令牌的排队凭证：finish = start + 字节数 / 权重，按 finish 从小到大放行
+     */
+    private static class Ticket {
+        private final double start;
+        private final double finish;
+        private final long sequence;
+
+        Ticket(double start, double finish, long sequence) {
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 类别统计
+     */
+    private static class ClassStats {
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong transfers = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong slices = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        /** 指数衰减的吞吐率（字节/秒） */
+        private double rate;
+        private long rateUpdatedAt = System.nanoTime();
+
+        synchronized void record(long count, long now) {
+            decay(now);
+            rate += count * (double) TimeUnit.SECONDS.toNanos(1) / RATE_WINDOW_NANOS;
+        }
+
+        synchronized double rate(long now) {
+            decay(now);
+            return rate;
+        }
+
+        private void decay(long now) {
+            if (now > rateUpdatedAt) {
+                rate *= Math.exp(-(double) (now - rateUpdatedAt) / RATE_WINDOW_NANOS);
+                rateUpdatedAt = now;
+            }
+        }
+    }
+
+    /**
+     * 是否配置了任一速率上限（限速时不能使用 sendfile，需由切片循环输出）
+     */
+    public boolean isEnabled() {
+        return globalBytesPerSecond > 0 || clientBytesPerSecond > 0 || fileBytesPerSecond > 0;
+    }
+
+    /**
+     * 按传输特征划分类别
+     *
+     * @param length 本次需要输出的字节数
+     * @param range 是否为 Range 请求
+     */
+    public TrafficClass classify(long length, boolean range) {
+        return range || length <= interactiveMaxBytes ? TrafficClass.INTERACTIVE : TrafficClass.BULK;
+    }
+
+    /**
+     * 创建带宽守卫（单个请求内使用，非线程安全）
+     *
+     * @param clientKey 客户端标识（用户ID或客户端地址），为空不做客户端限速
+     * @param fileId 文件ID，为空不做文件限速
+     * @param trafficClass 初始类别
+     * @return 传输守卫，等待令牌期间线程被中断时抛出 InterruptedIOException
+     */
+    public FileTransferUtil.TransferGuard guard(String clientKey, Long fileId, TrafficClass trafficClass) {
+        stats[trafficClass.ordinal()].transfers.incrementAndGet();
+        return new FileTransferUtil.TransferGuard() {
+            private TrafficClass current = trafficClass;
+            private long transferred;
+
+            @Override
+            public boolean allow(long bytes) throws InterruptedIOException {
+                if (current == TrafficClass.INTERACTIVE && transferred >= interactiveMaxBytes) {
+                    current = TrafficClass.BULK;
+                }
+                transferred += bytes;
+                acquire(clientKey, fileId, current, bytes);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 依次取得客户端、文件、全局令牌
+     */
+    private void acquire(String clientKey, Long fileId, TrafficClass trafficClass, long bytes)
+            throws InterruptedIOException {
+        ClassStats classStats = stats[trafficClass.ordinal()];
+        long start = System.nanoTime();
+        if (isEnabled()) {
+            classStats.waiting.incrementAndGet();
+            try {
+                if (clientBytesPerSecond > 0 && clientKey != null) {
+                    sleep(clientBuckets.computeIfAbsent(clientKey, key -> new TokenBucket(clientBytesPerSecond, start))
+                            .reserve(bytes, System.nanoTime()));
+                }
+                if (fileBytesPerSecond > 0 && fileId != null) {
+                    sleep(fileBuckets.computeIfAbsent(fileId, key -> new TokenBucket(fileBytesPerSecond, start))
+                            .reserve(bytes, System.nanoTime()));
+                }
+                if (globalBucket != null) {
+                    acquireGlobal(trafficClass, bytes);
+                }
+            } finally {
+                classStats.waiting.decrementAndGet();
+            }
+        }
+        long now = System.nanoTime();
+        classStats.waitNanos.addAndGet(now - start);
+        classStats.slices.incrementAndGet();
+        classStats.bytes.addAndGet(bytes);
+        classStats.record(bytes, now);
+    }
+
+    /**
+     * 全局令牌：按 finish 顺序排队，队首等待令牌桶放行
+     */
+    private void acquireGlobal(TrafficClass trafficClass, long bytes) throws InterruptedIOException {
+        int index = trafficClass.ordinal();
+        lock.lock();
+        Ticket ticket = null;
+        try {
+            double start = Math.max(virtualTime, lastFinish[index]);
+            ticket = new Ticket(start, start + (double) bytes / weights[index], sequence++);
+            lastFinish[index] = ticket.finish;
+            queue.add(ticket);
+            while (true) {
+                if (queue.peek() == ticket) {
+                    long now = System.nanoTime();
+                    long wait = globalBucket.delay(bytes, now);
+                    if (wait <= 0) {
+                        globalBucket.consume(bytes, now);
+                        queue.poll();
+                        // 队列清空说明没有积压，各类别从同一起点重新排队，不因空闲时的突发用量被延后
+                        virtualTime = queue.isEmpty() ? Math.max(ticket.finish, maxFinish()) : ticket.start;
+                        turn.signalAll();
+                        return;
+                    }
+                    // 等待期间可能有 finish 更小的请求到达并成为队首
+                    turn.awaitNanos(wait);
+                } else {
+                    turn.await();
+                }
+            }
+        } catch (InterruptedException e) {
+            queue.remove(ticket);
+            turn.signalAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待带宽配额时被中断");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double maxFinish() {
+        double max = virtualTime;
+        for (double finish : lastFinish) {
+            max = Math.max(max, finish);
+        }
+        return max;
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待带宽配额时被中断");
+        }
+    }
+
+    /**
+     * 定时丢弃已满额的客户端 / 文件令牌桶
+     */
+    @Scheduled(fixedDelayString = "${file.bandwidth.cleanup-interval:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        clientBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        fileBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    /**
+     * 调度统计：各类别的排队数、传输数、字节数、近期吞吐率、平均等待时间
+     */
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        result.put("globalBytesPerSecond", globalBytesPerSecond);
+        result.put("clientBytesPerSecond", clientBytesPerSecond);
+        result.put("fileBytesPerSecond", fileBytesPerSecond);
+        result.put("clientBuckets", clientBuckets.size());
+        result.put("fileBuckets", fileBuckets.size());
+        for (TrafficClass trafficClass : TrafficClass.values()) {
+            ClassStats classStats = stats[trafficClass.ordinal()];
+            long slices = classStats.slices.get();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("weight", weights[trafficClass.ordinal()]);
+            item.put("queueDepth", classStats.waiting.get());
+            item.put("transfers", classStats.transfers.get());
+            item.put("bytes", classStats.bytes.get());
+            item.put("bytesPerSecond", Math.round(classStats.rate(now)));
+            item.put("avgWaitMillis", slices == 0 ? 0.0
+                    : (double) classStats.waitNanos.get() / slices / TimeUnit.MILLISECONDS.toNanos(1));
+            result.put(trafficClass.name().toLowerCase(), item);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ziwen.moudle.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 有界的进程内读穿缓存
+ *
+ * - 读取只做一次 ConcurrentHashMap 查找和一次访问标记写入，不加锁
+ * - 超出容量时按 CLOCK（二次机会）淘汰：按放入顺序检查，期间被访问过的条目放回队尾，否则淘汰（近似 LRU）
+ * - 条目超过存活时间后重新加载，限制多节点部署时其他节点修改造成的不一致时间
+ * - 失效与加载并发时，加载结果不会覆盖失效（加载前后版本号不一致时不放入缓存）
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author ziwen
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    /** 淘汰队列（按放入顺序），失效或重新加载后旧条目留在队列中，检查时丢弃 */
+    private final ConcurrentLinkedQueue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /** 失效版本号，每次失效递增 */
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param ttlNanos 条目存活时间（纳秒）
+     */
+    public BoundedCache(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+    }
+
+    private static class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long loadedAt;
+        /** 上次检查之后是否被访问过 */
+        private volatile boolean referenced;
+
+        Entry(K key, V value, long now) {
+            this.key = key;
+            this.value = value;
+            this.loadedAt = now;
+        }
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时调用 loader 加载
+     *
+     * @param key 键
+     * @param loader 加载函数，返回 null 时不缓存
+     * @return 值
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.nanoTime();
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null && now - entry.loadedAt < ttlNanos) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        long loadVersion = version.get();
+        V value = loader.apply(key);
+        long loaded = System.nanoTime();
+        loadNanos.addAndGet(loaded - now);
+        if (value != null && maxEntries > 0 && version.get() == loadVersion) {
+            Entry<K, V> created = new Entry<>(key, value, loaded);
+            entries.put(key, created);
+            clock.offer(created);
+            queued.incrementAndGet();
+            evictIfFull();
+        }
+        return value;
+    }
+
+    /**
+     * 使指定键失效
+     */
+    public void invalidate(K key) {
+        version.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        entries.clear();
+        clock.clear();
+        queued.set(0);
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("avgLoadMicros", missCount == 0 ? 0.0 : loadNanos.get() / 1000.0 / missCount);
+        return stats;
+    }
+
+    /**
+     * 条目数超出容量时淘汰；队列中的旧条目过多时顺带清理
+     */
+    private void evictIfFull() {
+        // 每个条目最多被检查两次（第一次清除访问标记，第二次淘汰）
+        int budget = 2 * queued.get() + 1;
+        Entry<K, V> candidate;
+        while (budget-- > 0 && (entries.size() > maxEntries || queued.get() > 2L * maxEntries)
+                && (candidate = clock.poll()) != null) {
+            queued.decrementAndGet();
+            // 已失效或已被重新加载的条目直接丢弃
+            if (entries.get(candidate.key) != candidate) {
+                continue;
+            }
+            if (candidate.referenced || entries.size() <= maxEntries) {
+                candidate.referenced = false;
+                clock.offer(candidate);
+                queued.incrementAndGet();
+                continue;
+            }
+            if (entries.remove(candidate.key, candidate)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ziwen.moudle.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * 带权重的一致性哈希环（不可变，节点变化时重新构建）
+ *
+ * - 每个节点按权重放置若干虚拟节点，键落在环上后顺时针取第一个节点
+ * - 增加节点时只有落在新节点区间的键改变归属，其余键位置不变
+ * - 选择时可跳过不满足条件的节点（如磁盘剩余空间不足），顺延到环上的下一个节点
+ *
+ * @param <T> 节点类型
+ * @author ziwen
+ */
+public class ConsistentHashRing<T> {
+
+    /** 每单位权重的虚拟节点数 */
+    private static final int VIRTUAL_NODES_PER_WEIGHT = 64;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    /**
+     * @param nodes 节点名称 → 节点（名称用于计算虚拟节点位置，需稳定）
+     * @param weights 节点名称 → 权重（缺省为 1，不大于 0 的节点不参与）
+     */
+    public ConsistentHashRing(Map<String, T> nodes, Map<String, Integer> weights) {
+        int count = 0;
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            int weight = weights.getOrDefault(node.getKey(), 1);
+            if (weight <= 0) {
+                continue;
+            }
+            count++;
+            for (int i = 0; i < weight * VIRTUAL_NODES_PER_WEIGHT; i++) {
+                ring.put(hash(node.getKey() + "#" + i), node.getValue());
+            }
+        }
+        this.nodeCount = count;
+    }
+
+    /**
+     * 选择键所属的节点
+     *
+     * @param key 键
+     * @param accept 节点可用条件
+     * @return 顺时针第一个满足条件的节点；没有可用节点返回 null
+     */
+    public T select(String key, Predicate<T> accept) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        long position = hash(key);
+        // 每个节点最多检查一次
+        Set<T> rejected = new HashSet<>();
+        for (Map<Long, T> arc : List.of(ring.tailMap(position), ring.headMap(position))) {
+            for (T node : arc.values()) {
+                if (rejected.size() == nodeCount) {
+                    return null;
+                }
+                if (rejected.contains(node)) {
+                    continue;
+                }
+                if (accept.test(node)) {
+                    return node;
+                }
+                rejected.add(node);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 参与选择的节点数
+     */
+    public int size() {
+        return nodeCount;
+    }
+
+    /**
+     * 64 位哈希（FNV-1a + MurmurHash3 末尾混合，保证虚拟节点分布均匀）
+     */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
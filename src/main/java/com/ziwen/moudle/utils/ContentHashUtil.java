@@ -0,0 +1,100 @@
+package com.ziwen.moudle.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * 内容哈希工具类
+ * 计算文件内容的 SHA-256，用于内容寻址存储和重复上传检测
+ *
+ * @author ziwen
+ */
+public class ContentHashUtil {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private ContentHashUtil() {
+    }
+
+    /**
+     * 创建 SHA-256 摘要
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // JDK 必须支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 摘要结果转为十六进制字符串
+     */
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 解析客户端提供的 CRC32C：8 位十六进制（可带 0x 前缀），或 4 字节大端序的 Base64（与对象存储的 x-goog-hash 一致）
+     *
+     * @param value 校验值
+     * @return CRC32C（int 形式）
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static int parseCrc32c(String value) {
+        String text = value.trim();
+        if (text.startsWith("0x") || text.startsWith("0X")) {
+            text = text.substring(2);
+        }
+        if (text.length() == 8 && text.chars().allMatch(HexFormat::isHexDigit)) {
+            return (int) HexFormat.fromHexDigits(text);
+        }
+        try {
+            byte[] bytes = Base64.getDecoder().decode(text);
+            if (bytes.length == 4) {
+                return ByteBuffer.wrap(bytes).getInt();
+            }
+        } catch (IllegalArgumentException ignored) {
+            // 落到下面统一报错
+        }
+        throw new IllegalArgumentException("CRC32C 格式错误（应为 8 位十六进制或 4 字节 Base64）: " + value);
+    }
+
+    /**
+     * 计算输入流的 SHA-256（不关闭输入流）
+     */
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+        return toHex(digest);
+    }
+
+    /**
+     * 计算文件的 SHA-256（通过文件通道顺序读取，使用直接缓冲区）
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ziwen.moudle.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量化请求分批工具类
+ * 按顺序把文本装入批次，每批不超过接口的单次文本数上限和估算 token 上限，批内顺序与原列表一致
+ *
+ * @author ziwen
+ */
+public class EmbeddingBatcher {
+
+    private EmbeddingBatcher() {
+    }
+
+    /**
+     * 估算文本的 token 数（偏保守）：非 ASCII 字符（中日韩文字等）每字约 1 个 token，ASCII 约 3 个字符 1 个 token
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 1;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return Math.max(1, other + (ascii + 2) / 3);
+    }
+
+    /**
+     * 按顺序分批
+     * 单个文本超过 token 上限时独占一批（由接口按单文本上限截断）
+     *
+     * @param texts 文本列表
+     * @param maxItems 每批最多文本数
+     * @param maxTokens 每批最多估算 token 数
+     * @return 各批在原列表中的区间 [from, to)
+     */
+    public static List<int[]> pack(List<String> texts, int maxItems, int maxTokens) {
+        int itemLimit = Math.max(1, maxItems);
+        List<int[]> batches = new ArrayList<>();
+        int from = 0;
+        int tokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            int cost = estimateTokens(texts.get(i));
+            if (i > from && (i - from >= itemLimit || tokens + cost > maxTokens)) {
+                batches.add(new int[]{from, i});
+                from = i;
+                tokens = 0;
+            }
+            tokens += cost;
+        }
+        if (from < texts.size()) {
+            batches.add(new int[]{from, texts.size()});
+        }
+        return batches;
+    }
+}
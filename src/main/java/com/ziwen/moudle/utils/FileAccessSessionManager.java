@@ -1,130 +1,366 @@
 package com.ziwen.moudle.utils;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 文件访问会话管理器
- * 用于管理文件访问令牌，支持强制撤销访问权限
+ * 访问令牌是自包含的签名令牌，任何节点都可以在不查表的情况下用 HMAC-SHA256 校验：
+ * base64url(版本:密钥ID:文件ID:签发时间:过期时间:令牌ID:用户ID) + "." + base64url(签名)
+ *
+ * 服务端不再保存已签发的令牌，只保存有界的撤销列表（按令牌ID或按文件），
+ * 撤销记录在被撤销的令牌自然过期后即可删除，由 FileTokenRevocationService 在节点间同步。
+ * 传输中的请求每个切片只读取一次撤销版本号，版本变化时才重新检查撤销列表
  */
+@Slf4j
 @Component
 public class FileAccessSessionManager {
 
+    /** 传输中每隔多少个切片检查一次过期时间 */
+    private static final int EXPIRY_CHECK_SLICES = 16;
+
+    private static final String VERSION = "1";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    /** 示例配置中的占位密钥前缀，使用公开密钥等于允许任何人伪造令牌 */
+    private static final String PLACEHOLDER_SECRET_PREFIX = "change-me";
+
+    private final SecureRandom random = new SecureRandom();
+
+    /** 签名密钥（密钥ID → 密钥），轮换时保留旧密钥用于校验 */
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    /** 签发新令牌使用的密钥ID */
+    private final String activeKeyId;
+    /** 令牌最长有效期（分钟），也是撤销记录的最长保留时间 */
+    private final int maxExpiresMinutes;
+
     /**
-     * 会话令牌存储
-     * key: 令牌ID, value: 会话信息
+     * 撤销列表
+     * revokedTokens: 令牌ID → 令牌过期时间（毫秒）
+     * revokedFiles: 文件ID → 撤销时间（毫秒），此时间及之前签发的令牌全部失效
      */
-    private final ConcurrentHashMap<String, FileAccessSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> revokedFiles = new ConcurrentHashMap<>();
+
+    /** 撤销记录按失效时间排序的队列，清理时只处理队首已失效的记录 */
+    private final PriorityBlockingQueue<Expiry> expiries =
+            new PriorityBlockingQueue<>(64, Comparator.comparingLong(Expiry::getAt));
+
+    /** 撤销版本号，撤销列表新增条目时递增 */
+    private final AtomicLong revocationEpoch = new AtomicLong();
+
+    public FileAccessSessionManager(@Value("${file.access.token.keys:}") String keyConfig,
+                                    @Value("${file.access.token.active-key-id:}") String activeKeyId,
+                                    @Value("${file.access.token.max-expires-minutes:1440}") int maxExpiresMinutes) {
+        for (String entry : StringUtils.commaDelimitedListToStringArray(keyConfig)) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0 || colon == entry.length() - 1) {
+                throw new IllegalArgumentException("访问令牌密钥格式应为 密钥ID:密钥");
+            }
+            String secret = entry.substring(colon + 1).trim();
+            if (secret.startsWith(PLACEHOLDER_SECRET_PREFIX)) {
+                throw new IllegalArgumentException("访问令牌密钥仍是示例占位值，请配置随机密钥: " + entry.substring(0, colon).trim());
+            }
+            keys.put(entry.substring(0, colon).trim(), new SecretKeySpec(
+                    secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+        }
+        if (keys.isEmpty()) {
+            // 未配置密钥时使用随机密钥：令牌只能在本节点校验，重启后失效
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys.put("local", new SecretKeySpec(secret, HMAC_ALGORITHM));
+            activeKeyId = "local";
+            log.warn("未配置 file.access.token.keys，使用随机密钥，访问令牌无法跨节点校验");
+        } else if (!StringUtils.hasText(activeKeyId)) {
+            activeKeyId = keys.keySet().iterator().next();
+        }
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("访问令牌密钥不存在: " + activeKeyId);
+        }
+        this.activeKeyId = activeKeyId;
+        this.maxExpiresMinutes = maxExpiresMinutes;
+    }
 
     /**
      * 创建文件访问令牌
      * @param fileId 文件ID
      * @param userId 用户ID（可为空表示无需登录）
-     * @param expiresInMinutes 过期时间（分钟）
+     * @param expiresInMinutes 过期时间（分钟），超过上限时按上限处理
      * @return 访问令牌
      */
     public String createAccessToken(Long fileId, String userId, int expiresInMinutes) {
-        String token = UUID.randomUUID().toString().replace("-", "");
-        FileAccessSession session = new FileAccessSession(
-            token,
-            fileId,
-            userId,
-            LocalDateTime.now().plusMinutes(expiresInMinutes)
-        );
-        sessions.put(token, session);
-        return token;
+        long issuedAt = System.currentTimeMillis();
+        long expiresAt = issuedAt + TimeUnit.MINUTES.toMillis(Math.min(expiresInMinutes, maxExpiresMinutes));
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+
+        String payload = String.join(":", VERSION, activeKeyId, String.valueOf(fileId),
+                String.valueOf(issuedAt), String.valueOf(expiresAt), ENCODER.encodeToString(nonce),
+                userId == null ? "" : userId);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(activeKeyId, payloadBytes));
     }
 
     /**
-     * 验证令牌是否有效
+     * 验证令牌是否有效（签名、过期时间、撤销列表）
      * @param token 访问令牌
      * @return 令牌有效返回会话信息，无效返回null
      */
     public FileAccessSession validateToken(String token) {
-        FileAccessSession session = sessions.get(token);
-        if (session == null) {
+        FileAccessSession session = verifySignature(token);
+        if (session == null || isRevoked(session)) {
             return null;
         }
+        return session;
+    }
 
-        // 检查是否过期
-        if (LocalDateTime.now().isAfter(session.getExpiresAt())) {
-            sessions.remove(token);
+    /**
+     * 只校验签名和过期时间，不检查撤销列表
+     * @param token 访问令牌
+     * @return 签名正确且未过期返回会话信息，否则返回null
+     */
+    public FileAccessSession verifySignature(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
             return null;
         }
+        try {
+            byte[] payloadBytes = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 7);
+            if (fields.length != 7 || !VERSION.equals(fields[0]) || !keys.containsKey(fields[1])) {
+                return null;
+            }
+            // 常量时间比较，避免通过响应时间猜测签名
+            if (!MessageDigest.isEqual(sign(fields[1], payloadBytes), signature)) {
+                return null;
+            }
 
-        return session;
+            long issuedAt = Long.parseLong(fields[3]);
+            long expiresAt = Long.parseLong(fields[4]);
+            long remaining = expiresAt - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            return new FileAccessSession(token, fields[5], Long.valueOf(fields[2]),
+                    fields[6].isEmpty() ? null : fields[6], issuedAt, expiresAt,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remaining));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     /**
-     * 撤销令牌（强制停止访问）
-     * @param token 要撤销的令牌
-     * @return 撤销成功返回true，令牌不存在或已过期返回false
+     * 会话是否已被撤销
      */
-    public boolean revokeToken(String token) {
-        return sessions.remove(token) != null;
+    public boolean isRevoked(FileAccessSession session) {
+        if (revokedTokens.containsKey(session.getTokenId())) {
+            return true;
+        }
+        Long revokedAt = revokedFiles.get(session.getFileId());
+        return revokedAt != null && session.getIssuedAtMillis() <= revokedAt;
     }
 
     /**
-     * 撤销文件的所有访问令牌（管理员功能）
-     * @param fileId 文件ID
-     * @return 撤销的令牌数量
+     * 创建传输守卫：会话被撤销后在下一个切片前停止传输
+     * 每个切片只读取撤销版本号，版本变化时才查撤销列表；过期时间每隔 {@value #EXPIRY_CHECK_SLICES} 个切片检查一次
+     *
+     * @param session 已验证的会话
+     * @return 传输守卫（单个请求内使用，非线程安全）
      */
-    public int revokeFileTokens(Long fileId) {
-        AtomicInteger count = new AtomicInteger(0);
-        sessions.entrySet().removeIf(entry -> {
-            if (entry.getValue().getFileId().equals(fileId)) {
-                count.incrementAndGet();
-                return true;
+    public FileTransferUtil.TransferGuard transferGuard(FileAccessSession session) {
+        return new FileTransferUtil.TransferGuard() {
+            /** 初始为 -1，第一个切片前必定检查一次（覆盖校验令牌之后、创建守卫之前发生的撤销） */
+            private long epoch = -1;
+            private int slices;
+
+            @Override
+            public boolean allow(long bytes) {
+                long current = revocationEpoch.get();
+                if (current != epoch) {
+                    epoch = current;
+                    if (isRevoked(session)) {
+                        return false;
+                    }
+                }
+                return ++slices % EXPIRY_CHECK_SLICES != 0 || !session.isExpired(System.nanoTime());
             }
+        };
+    }
+
+    /**
+     * 登记单个令牌的撤销
+     * @param tokenId 令牌ID
+     * @param expiresAtMillis 令牌过期时间，之后撤销记录可删除
+     * @return 是否为新增的撤销
+     */
+    public boolean applyTokenRevocation(String tokenId, long expiresAtMillis) {
+        if (revokedTokens.putIfAbsent(tokenId, expiresAtMillis) != null) {
+            return false;
+        }
+        expiries.add(new Expiry(expiresAtMillis, tokenId, null));
+        revocationEpoch.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 登记文件的撤销：撤销时间及之前签发的该文件令牌全部失效
+     * @param fileId 文件ID
+     * @param revokedAtMillis 撤销时间
+     * @return 是否为新增的撤销
+     */
+    public boolean applyFileRevocation(Long fileId, long revokedAtMillis) {
+        Long previous = revokedFiles.get(fileId);
+        if (previous != null && previous >= revokedAtMillis) {
             return false;
-        });
-        return count.get();
+        }
+        revokedFiles.merge(fileId, revokedAtMillis, Math::max);
+        expiries.add(new Expiry(revokedAtMillis + TimeUnit.MINUTES.toMillis(maxExpiresMinutes), null, fileId));
+        revocationEpoch.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 清理已失效的撤销记录（被撤销的令牌已自然过期）
+     * 只弹出失效队列队首已到期的记录，不扫描整个撤销列表
+     * @return 清理的记录数
+     */
+    public int cleanupExpiredTokens() {
+        long now = System.currentTimeMillis();
+        long maxLifetime = TimeUnit.MINUTES.toMillis(maxExpiresMinutes);
+        int removed = 0;
+        Expiry head;
+        while ((head = expiries.peek()) != null && head.getAt() <= now) {
+            head = expiries.poll();
+            if (head == null) {
+                break;
+            }
+            if (head.getAt() > now) {
+                // 并发清理时可能取到未到期的记录，放回后结束
+                expiries.add(head);
+                break;
+            }
+            // 同一文件再次撤销时撤销时间会后移，只有当前值也已失效才删除
+            if (head.getTokenId() != null) {
+                if (revokedTokens.remove(head.getTokenId(), head.getAt())) {
+                    removed++;
+                }
+            } else {
+                Long revokedAt = revokedFiles.get(head.getFileId());
+                if (revokedAt != null && revokedAt + maxLifetime <= now
+                        && revokedFiles.remove(head.getFileId(), revokedAt)) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 撤销列表中的令牌数量
+     */
+    public int getRevokedTokenCount() {
+        return revokedTokens.size();
     }
 
     /**
-     * 清理过期令牌（定期调用）
+     * 令牌最长有效期（分钟）
      */
-    public void cleanupExpiredTokens() {
-        LocalDateTime now = LocalDateTime.now();
-        sessions.entrySet().removeIf(entry -> now.isAfter(entry.getValue().getExpiresAt()));
+    public int getMaxExpiresMinutes() {
+        return maxExpiresMinutes;
+    }
+
+    private byte[] sign(String keyId, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(keys.get(keyId));
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("访问令牌签名失败", e);
+        }
     }
 
     /**
-     * 获取活跃令牌数量
+     * 撤销记录的失效时间（令牌ID 和 文件ID 二选一）
      */
-    public int getActiveTokenCount() {
-        return (int) sessions.values().stream()
-            .filter(session -> LocalDateTime.now().isBefore(session.getExpiresAt()))
-            .count();
+    private static class Expiry {
+        private final long at;
+        private final String tokenId;
+        private final Long fileId;
+
+        Expiry(long at, String tokenId, Long fileId) {
+            this.at = at;
+            this.tokenId = tokenId;
+            this.fileId = fileId;
+        }
+
+        long getAt() { return at; }
+        String getTokenId() { return tokenId; }
+        Long getFileId() { return fileId; }
     }
 
     /**
-     * 文件访问会话信息
+     * 文件访问会话信息（由令牌解析得到）
      */
     public static class FileAccessSession {
         private final String token;
+        private final String tokenId;
         private final Long fileId;
         private final String userId;
-        private final LocalDateTime expiresAt;
-        private final LocalDateTime createdAt;
+        private final long issuedAtMillis;
+        private final long expiresAtMillis;
+        /** 过期时刻（System.nanoTime 单调时钟），传输中检查过期不受系统时间调整影响 */
+        private final long expiresAtNanos;
 
-        public FileAccessSession(String token, Long fileId, String userId, LocalDateTime expiresAt) {
+        public FileAccessSession(String token, String tokenId, Long fileId, String userId,
+                                 long issuedAtMillis, long expiresAtMillis, long expiresAtNanos) {
             this.token = token;
+            this.tokenId = tokenId;
             this.fileId = fileId;
             this.userId = userId;
-            this.expiresAt = expiresAt;
-            this.createdAt = LocalDateTime.now();
+            this.issuedAtMillis = issuedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+            this.expiresAtNanos = expiresAtNanos;
         }
 
+        public boolean isExpired(long nowNanos) { return nowNanos - expiresAtNanos > 0; }
+
         // Getters
         public String getToken() { return token; }
+        public String getTokenId() { return tokenId; }
         public Long getFileId() { return fileId; }
         public String getUserId() { return userId; }
-        public LocalDateTime getExpiresAt() { return expiresAt; }
-        public LocalDateTime getCreatedAt() { return createdAt; }
+        public long getIssuedAtMillis() { return issuedAtMillis; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+        public LocalDateTime getExpiresAt() { return toDateTime(expiresAtMillis); }
+        public LocalDateTime getCreatedAt() { return toDateTime(issuedAtMillis); }
+
+        private static LocalDateTime toDateTime(long millis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        }
     }
 }
@@ -0,0 +1,43 @@
+package com.ziwen.moudle.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 文件内容源
+ * 屏蔽单文件存储与分片存储的差异，对外提供按区间输出的统一入口
+ *
+ * @author ziwen
+ */
+public interface FileContentSource extends Closeable {
+
+    /**
+     * 内容总长度
+     */
+    long length();
+
+    /**
+     * 最后修改时间（毫秒）
+     */
+    long lastModified();
+
+    /**
+     * 单文件存储时返回底层文件（可直接 sendfile），分片存储返回 null
+     */
+    File singleFile();
+
+    /**
+     * 输出区间 [position, position + count)
+     *
+     * @param position 起始位置
+     * @param count 字节数
+     * @param os 输出流
+     * @param guard 传输守卫
+     * @return 实际写出的字节数，小于 count 表示被守卫中止或内容不足
+     * @throws IOException 传输失败
+     */
+    long transferTo(long position, long count, OutputStream os,
+                    FileTransferUtil.TransferGuard guard) throws IOException;
+}
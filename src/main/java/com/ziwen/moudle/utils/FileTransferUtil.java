@@ -0,0 +1,196 @@
+package com.ziwen.moudle.utils;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 文件传输工具类
+ * 基于 FileChannel 输出文件区间，替代 byte[] 循环读写，避免大文件传输时的堆内存拷贝
+ *
+ * 传输策略：
+ * - Tomcat sendfile：整段输出且无需中途校验时，交给容器在请求结束后直接 sendfile
+ * - 内存映射：输出到 ServletOutputStream 时按窗口映射文件，以 ByteBuffer 直接写出
+ * - transferTo：其他输出流退化为 FileChannel.transferTo
+ *
+ * @author ziwen
+ */
+public class FileTransferUtil {
+
+    /** Tomcat sendfile 请求属性 */
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /** 小于该大小的区间不走 sendfile（与 Tomcat DefaultServlet 默认值一致） */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /** 单个内存映射窗口大小 */
+    private static final long MAP_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    /** 单次写出的切片大小，即两次 TransferGuard 检查之间的最大字节数 */
+    public static final int SLICE_SIZE = 256 * 1024;
+
+    private FileTransferUtil() {
+    }
+
+    /**
+     * 传输守卫
+     * 每写出一个切片前调用，返回 false 时立即中止传输（如令牌被撤销）
+     */
+    @FunctionalInterface
+    public interface TransferGuard {
+
+        /** 不做任何检查 */
+        TransferGuard NONE = bytes -> true;
+
+        /**
+         * @param bytes 即将写出的字节数
+         * @return 是否继续传输
+         */
+        boolean allow(long bytes) throws IOException;
+
+        /**
+         * 组合守卫：本守卫放行后再由 next 检查（如先检查令牌撤销，再等待带宽配额）
+         */
+        default TransferGuard and(TransferGuard next) {
+            return bytes -> allow(bytes) && next.allow(bytes);
+        }
+    }
+
+    /**
+     * 尝试使用容器的 sendfile 输出文件区间
+     * 成功时调用方不得再写响应体，容器会在请求处理结束后完成发送
+     *
+     * @param request 请求对象
+     * @param file 文件
+     * @param start 起始位置（包含）
+     * @param end 结束位置（不包含）
+     * @return 容器支持 sendfile 并已登记返回 true，否则返回 false
+     */
+    public static boolean trySendfile(HttpServletRequest request, File file, long start, long end) {
+        if (end - start < SENDFILE_MIN_SIZE) {
+            return false;
+        }
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_FILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_FILE_END_ATTR, end);
+        return true;
+    }
+
+    /**
+     * 输出文件区间 [position, position + count)
+     *
+     * @param channel 文件通道
+     * @param position 起始位置
+     * @param count 字节数
+     * @param os 输出流
+     * @param guard 传输守卫
+     * @return 实际写出的字节数，小于 count 表示被守卫中止或文件已被截断
+     * @throws IOException 传输失败
+     */
+    public static long transfer(FileChannel channel, long position, long count,
+                                OutputStream os, TransferGuard guard) throws IOException {
+        // 防止文件被截断后映射越界
+        long available = Math.max(0, channel.size() - position);
+        long total = Math.min(count, available);
+        if (total <= 0) {
+            return 0;
+        }
+
+        if (os instanceof ServletOutputStream) {
+            return transferMapped(channel, position, total, (ServletOutputStream) os, guard);
+        }
+        return transferChannel(channel, position, total, os, guard);
+    }
+
+    /**
+     * 输出内存中的内容（如热点文件缓存的堆外缓冲区），按切片写出并在每个切片前检查守卫
+     *
+     * @param buffer 内容（从 position 到 limit，调用方传入独立视图）
+     * @param os 输出流
+     * @param guard 传输守卫
+     * @return 实际写出的字节数
+     * @throws IOException 输出失败
+     */
+    public static long transfer(ByteBuffer buffer, OutputStream os, TransferGuard guard) throws IOException {
+        WritableByteChannel target = os instanceof ServletOutputStream ? null : Channels.newChannel(os);
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            int len = Math.min(SLICE_SIZE, buffer.remaining());
+            if (!guard.allow(len)) {
+                return written;
+            }
+            ByteBuffer slice = buffer.slice(buffer.position(), len);
+            if (target == null) {
+                ((ServletOutputStream) os).write(slice);
+            } else {
+                while (slice.hasRemaining()) {
+                    target.write(slice);
+                }
+            }
+            buffer.position(buffer.position() + len);
+            written += len;
+        }
+        return written;
+    }
+
+    /**
+     * 内存映射方式输出：映射页直接写入容器缓冲区，不经过堆内存
+     */
+    private static long transferMapped(FileChannel channel, long position, long count,
+                                       ServletOutputStream os, TransferGuard guard) throws IOException {
+        long written = 0;
+        while (written < count) {
+            long windowSize = Math.min(MAP_WINDOW_SIZE, count - written);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position + written, windowSize);
+
+            int offset = 0;
+            while (offset < window.limit()) {
+                int len = Math.min(SLICE_SIZE, window.limit() - offset);
+                if (!guard.allow(len)) {
+                    return written;
+                }
+                ByteBuffer slice = window.slice(offset, len);
+                os.write(slice);
+                offset += len;
+                written += len;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 通道方式输出：由 FileChannel.transferTo 驱动，适用于非 Servlet 输出流
+     */
+    private static long transferChannel(FileChannel channel, long position, long count,
+                                        OutputStream os, TransferGuard guard) throws IOException {
+        WritableByteChannel target = Channels.newChannel(os);
+        long written = 0;
+        while (written < count) {
+            long len = Math.min(SLICE_SIZE, count - written);
+            if (!guard.allow(len)) {
+                return written;
+            }
+            long n = channel.transferTo(position + written, len, target);
+            if (n <= 0) {
+                // 已到文件末尾
+                break;
+            }
+            written += n;
+        }
+        return written;
+    }
+}
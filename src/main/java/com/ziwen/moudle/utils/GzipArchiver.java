@@ -0,0 +1,84 @@
+package com.ziwen.moudle.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 冷存储归档压缩工具类
+ * 归档文件为标准 gzip 格式；本身已压缩的内容（图片、音视频、压缩包等）只做存储（压缩级别 0），不浪费 CPU
+ *
+ * @author ziwen
+ */
+public class GzipArchiver {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private GzipArchiver() {
+    }
+
+    /**
+     * 按内容类型选择压缩级别
+     */
+    public static int levelFor(String contentType) {
+        return MimeTypeUtils.isCompressible(contentType) ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION;
+    }
+
+    /**
+     * 压缩文件，写完后同步到磁盘
+     *
+     * @param source 原文件
+     * @param target 归档文件（已存在时覆盖）
+     * @param level 压缩级别
+     * @return 归档文件大小
+     */
+    public static long compress(File source, File target, int level) throws IOException {
+        try (InputStream in = new FileInputStream(source);
+             FileOutputStream fos = new FileOutputStream(target)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(fos, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            in.transferTo(gzip);
+            gzip.finish();
+            gzip.flush();
+            fos.getFD().sync();
+        }
+        return target.length();
+    }
+
+    /**
+     * 解压归档文件，写完后同步到磁盘
+     *
+     * @param archive 归档文件
+     * @param target 目标文件（已存在时覆盖）
+     * @return 解压后的大小
+     */
+    public static long decompress(File archive, File target) throws IOException {
+        long written;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(archive), BUFFER_SIZE);
+             FileOutputStream fos = new FileOutputStream(target)) {
+            written = transfer(in, fos);
+            fos.getFD().sync();
+        }
+        return written;
+    }
+
+    private static long transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+}
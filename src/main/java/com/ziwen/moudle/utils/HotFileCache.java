@@ -0,0 +1,156 @@
+package com.ziwen.moudle.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热点小文件缓存
+ * 缩略图、小图片、小文档被反复访问时直接从内存输出，不再读磁盘
+ *
+ * - 内容保存在堆外缓冲区，不占用堆空间、不增加 GC 扫描负担
+ * - 按总字节数限制容量，超出时淘汰最久未访问的文件（LRU）
+ * - 以 路径 + 大小 + 修改时间 校验，文件被替换后旧内容自动失效
+ *
+ * @author ziwen
+ */
+@Component
+public class HotFileCache {
+
+    /** 缓存总容量（字节），0 表示关闭缓存 */
+    private final long maxBytes;
+    /** 可缓存的单个文件大小上限（字节） */
+    private final long maxFileSize;
+
+    /** 访问顺序的 LinkedHashMap，队首为最久未访问 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public HotFileCache(@Value("${file.cache.max-bytes:67108864}") long maxBytes,
+                        @Value("${file.cache.max-file-size:262144}") long maxFileSize) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, maxBytes);
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        private final ByteBuffer content;
+        private final long lastModified;
+
+        Entry(ByteBuffer content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 文件是否在可缓存的大小范围内
+     */
+    public boolean isCacheable(long length) {
+        return length > 0 && length <= maxFileSize;
+    }
+
+    /**
+     * 读取文件内容，未命中时从磁盘加载并放入缓存
+     *
+     * @param file 文件
+     * @return 内存内容源；文件超出可缓存大小时返回 null
+     * @throws IOException 读取失败
+     */
+    public MemoryFileSource open(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (!isCacheable(length)) {
+            return null;
+        }
+
+        String key = file.getPath();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.content.limit() == length && entry.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return new MemoryFileSource(entry.content, lastModified);
+            }
+        }
+
+        misses.incrementAndGet();
+        ByteBuffer content = load(file, (int) length);
+        put(key, new Entry(content, lastModified));
+        return new MemoryFileSource(content, lastModified);
+    }
+
+    /**
+     * 移除文件的缓存（删除或替换文件时调用）
+     */
+    public synchronized void invalidate(File file) {
+        Entry removed = entries.remove(file.getPath());
+        if (removed != null) {
+            usedBytes -= removed.content.limit();
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("usedBytes", usedBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            usedBytes -= previous.content.limit();
+        }
+        usedBytes += entry.content.limit();
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            usedBytes -= eldest.getValue().content.limit();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 读取文件到堆外缓冲区
+     */
+    private static ByteBuffer load(File file, int length) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect(length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (content.hasRemaining() && channel.read(content) != -1) {
+                // 读满为止
+            }
+        }
+        if (content.hasRemaining()) {
+            throw new IOException("文件读取不完整: " + file);
+        }
+        return content.flip().asReadOnlyBuffer();
+    }
+}
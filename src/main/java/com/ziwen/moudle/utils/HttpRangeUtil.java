@@ -0,0 +1,293 @@
+package com.ziwen.moudle.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpRange;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * HTTP Range 请求工具类
+ * 支持单区间 / 多区间（multipart/byteranges）响应及 If-Range 校验
+ *
+ * @author ziwen
+ */
+public class HttpRangeUtil {
+
+    private static final String CRLF = "\r\n";
+
+    private HttpRangeUtil() {
+    }
+
+    /**
+     * 字节区间（闭区间）
+     */
+    public static class ByteRange {
+        private final long start;
+        private final long end;
+
+        public ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public long getLength() { return end - start + 1; }
+
+        /**
+         * Content-Range 头的值
+         */
+        public String toContentRange(long totalLength) {
+            return "bytes " + start + "-" + end + "/" + totalLength;
+        }
+    }
+
+    /**
+     * 构建实体标签（文件ID + 大小 + 修改时间，内容变化后随之变化）
+     */
+    public static String buildEtag(Long fileId, long length, long lastModified) {
+        return "\"" + fileId + "-" + length + "-" + lastModified + "\"";
+    }
+
+    /**
+     * 构建强实体标签：有内容哈希时直接使用（内容相同则标签相同，跨节点一致），否则退化为 ID + 大小 + 修改时间
+     */
+    public static String buildEtag(String contentHash, Long fileId, long length, long lastModified) {
+        if (StringUtils.hasText(contentHash)) {
+            return "\"" + contentHash + "\"";
+        }
+        return buildEtag(fileId, length, lastModified);
+    }
+
+    /**
+     * 压缩编码对应的实体标签（同一内容的不同编码必须使用不同的强实体标签）
+     */
+    public static String encodedEtag(String etag, String coding) {
+        return etag.substring(0, etag.length() - 1) + "-" + coding + "\"";
+    }
+
+    /**
+     * 客户端是否接受指定的内容编码（Accept-Encoding 协商，q=0 表示拒绝）
+     *
+     * @param request 请求对象
+     * @param coding 内容编码，如 gzip
+     * @return 接受返回 true
+     */
+    public static boolean acceptsEncoding(HttpServletRequest request, String coding) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    /**
+     * 条件请求校验（If-None-Match / If-Modified-Since）
+     * 同时存在时以 If-None-Match 为准；只对 GET / HEAD 生效
+     *
+     * @return 客户端缓存仍然有效（应返回 304）时返回 true
+     */
+    public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (StringUtils.hasText(ifNoneMatch)) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                // If-None-Match 使用弱比较
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if ("*".equals(candidate) || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 输出 304 Not Modified（携带实体标签和修改时间，不输出内容）
+     */
+    public static void sendNotModified(HttpServletResponse response, String etag, long lastModified) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+    }
+
+    /**
+     * 解析请求中的 Range 头
+     *
+     * @param request 请求对象
+     * @param etag 当前实体标签
+     * @param lastModified 最后修改时间（毫秒）
+     * @param length 文件长度
+     * @return 需要输出的区间；返回空列表表示输出完整内容（含 Range 头语法错误时，RFC 9110 要求忽略）
+     * @throws IllegalArgumentException Range 头格式正确但没有可满足的区间（应返回 416）
+     */
+    public static List<ByteRange> resolveRanges(HttpServletRequest request, String etag,
+                                                long lastModified, long length) {
+        String rangeHeader = request.getHeader("Range");
+        if (!StringUtils.hasText(rangeHeader)) {
+            return Collections.emptyList();
+        }
+        // If-Range 不匹配时忽略 Range，返回完整内容
+        if (!matchesIfRange(request, etag, lastModified)) {
+            return Collections.emptyList();
+        }
+
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+        List<ByteRange> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(length);
+            long end = httpRange.getRangeEnd(length);
+            // 不可满足的区间跳过，只输出可满足的部分
+            if (start >= length || start > end) {
+                continue;
+            }
+            ranges.add(new ByteRange(start, end));
+            total += end - start + 1;
+        }
+        if (ranges.isEmpty()) {
+            throw new IllegalArgumentException("区间超出文件长度: " + rangeHeader);
+        }
+        // 防止通过大量重叠区间放大响应
+        if (ranges.size() > 1 && total > length) {
+            throw new IllegalArgumentException("区间总长度超过文件长度");
+        }
+        return ranges;
+    }
+
+    /**
+     * If-Range 校验：支持实体标签和 HTTP 日期两种形式
+     */
+    private static boolean matchesIfRange(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // 弱标签不能用于 If-Range
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeTime = request.getDateHeader("If-Range");
+            return ifRangeTime != -1 && lastModified / 1000 == ifRangeTime / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 输出 416 Range Not Satisfiable
+     */
+    public static void sendRangeNotSatisfiable(HttpServletResponse response, long length) throws IOException {
+        response.setHeader("Content-Range", "bytes */" + length);
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    /**
+     * 输出 206 部分内容（单区间或 multipart/byteranges）
+     *
+     * @param response 响应对象
+     * @param source 文件内容源
+     * @param length 文件长度
+     * @param contentType 文件类型
+     * @param ranges 区间列表（非空）
+     * @param guard 传输守卫
+     * @return 全部输出完成返回 true，被守卫中止返回 false
+     * @throws IOException 输出失败
+     */
+    public static boolean writeRanges(HttpServletResponse response, FileContentSource source, long length,
+                                      String contentType, List<ByteRange> ranges,
+                                      FileTransferUtil.TransferGuard guard) throws IOException {
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        String partType = StringUtils.hasText(contentType) ? contentType : "application/octet-stream";
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setContentType(partType);
+            response.setHeader("Content-Range", range.toContentRange(length));
+            response.setContentLengthLong(range.getLength());
+
+            OutputStream os = response.getOutputStream();
+            long written = source.transferTo(range.getStart(), range.getLength(), os, guard);
+            return written == range.getLength();
+        }
+
+        // 多区间：multipart/byteranges
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = (CRLF + "--" + boundary + CRLF
+                    + "Content-Type: " + partType + CRLF
+                    + "Content-Range: " + range.toContentRange(length) + CRLF + CRLF)
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.getLength();
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream os = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            os.write(partHeaders.get(i));
+            long written = source.transferTo(range.getStart(), range.getLength(), os, guard);
+            if (written != range.getLength()) {
+                return false;
+            }
+        }
+        os.write(closing);
+        return true;
+    }
+}
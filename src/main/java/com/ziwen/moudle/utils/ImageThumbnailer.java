@@ -0,0 +1,186 @@
+package com.ziwen.moudle.utils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 图片缩略图工具类（基于 ImageIO，无本地依赖）
+ *
+ * - 只读取图片头获取尺寸，解码时按目标尺寸隔行隔列采样，大图解码后的像素数与缩略图尺寸相当，而非原图
+ * - 一次解码生成全部尺寸：从大到小依次缩放，每个尺寸以上一个尺寸为源
+ * - 缩放按每次减半的双线性插值逐步缩小，兼顾速度和画质（一步缩小到很小的尺寸会有明显锯齿）
+ * - 不透明图片输出 JPEG，带透明通道的输出 PNG；多帧图片（GIF）只取第一帧
+ *
+ * @author ziwen
+ */
+public class ImageThumbnailer {
+
+    /** JPEG 输出质量 */
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private ImageThumbnailer() {
+    }
+
+    /**
+     * ImageIO 能否解码该类型
+     */
+    public static boolean isSupported(String contentType) {
+        return contentType != null && contentType.startsWith("image/")
+                && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    /**
+     * 生成缩略图
+     *
+     * @param input 图片输入流（不会被关闭）
+     * @param sizes 各缩略图的最长边（像素），不放大小于该尺寸的图片
+     * @param maxPixels 采样后解码的最大像素数，超过时拒绝处理（防止超大图片耗尽内存）
+     * @return 最长边 → 缩略图
+     * @throws IOException 无法识别或解码失败
+     */
+    public static Map<Integer, BufferedImage> thumbnails(ImageInputStream input, int[] sizes, long maxPixels)
+            throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("无法识别的图片格式");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int[] sorted = Arrays.stream(sizes).filter(size -> size > 0).sorted().toArray();
+            if (sorted.length == 0) {
+                throw new IllegalArgumentException("缩略图尺寸为空");
+            }
+
+            // 按最大尺寸的 2 倍采样，留出缩放时的插值余量
+            int step = subsampling(width, height, sorted[sorted.length - 1] * 2);
+            long decodedPixels = (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+            if (decodedPixels > maxPixels) {
+                throw new IOException("图片尺寸过大: " + width + "x" + height);
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            BufferedImage image = reader.read(0, param);
+
+            Map<Integer, BufferedImage> result = new LinkedHashMap<>();
+            BufferedImage source = image;
+            for (int i = sorted.length - 1; i >= 0; i--) {
+                int[] target = fitWithin(source.getWidth(), source.getHeight(), sorted[i]);
+                source = scale(source, target[0], target[1]);
+                result.put(sorted[i], source);
+            }
+            return result;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 采样步长：采样后最短的一边仍不小于目标尺寸
+     */
+    static int subsampling(int width, int height, int target) {
+        int step = Math.min(width, height) / Math.max(target, 1);
+        return Math.max(1, step);
+    }
+
+    /**
+     * 等比缩放到最长边不超过 maxEdge（不放大）
+     *
+     * @return {宽, 高}
+     */
+    static int[] fitWithin(int width, int height, int maxEdge) {
+        int longest = Math.max(width, height);
+        if (longest <= maxEdge) {
+            return new int[]{width, height};
+        }
+        double ratio = (double) maxEdge / longest;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * ratio)),
+                Math.max(1, (int) Math.round(height * ratio))
+        };
+    }
+
+    /**
+     * 逐步减半缩放到目标尺寸
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        int type = hasAlpha(source) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        if (currentWidth == width && currentHeight == height && source.getType() == type) {
+            return source;
+        }
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * 是否带透明通道
+     */
+    public static boolean hasAlpha(BufferedImage image) {
+        return image.getColorModel().hasAlpha();
+    }
+
+    /**
+     * 输出格式扩展名：带透明通道为 png，否则为 jpg
+     */
+    public static String formatOf(BufferedImage image) {
+        return hasAlpha(image) ? "png" : "jpg";
+    }
+
+    /**
+     * 按 {@link #formatOf} 的格式编码输出
+     *
+     * @param image 图片
+     * @param os 输出流（不会被关闭）
+     */
+    public static void write(BufferedImage image, OutputStream os) throws IOException {
+        if (hasAlpha(image)) {
+            if (!ImageIO.write(image, "png", os)) {
+                throw new IOException("没有可用的 PNG 编码器");
+            }
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(os)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ziwen.moudle.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 内存内容源（热点小文件缓存命中时使用）
+ *
+ * @author ziwen
+ */
+public class MemoryFileSource implements FileContentSource {
+
+    private final ByteBuffer content;
+    private final long lastModified;
+
+    /**
+     * @param content 文件内容（只读，调用方不得再修改）
+     * @param lastModified 最后修改时间（毫秒）
+     */
+    public MemoryFileSource(ByteBuffer content, long lastModified) {
+        this.content = content;
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public long length() {
+        return content.limit();
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public File singleFile() {
+        return null;
+    }
+
+    @Override
+    public long transferTo(long position, long count, OutputStream os,
+                           FileTransferUtil.TransferGuard guard) throws IOException {
+        if (position >= content.limit() || count <= 0) {
+            return 0;
+        }
+        int len = (int) Math.min(count, content.limit() - position);
+        return FileTransferUtil.transfer(content.slice((int) position, len), os, guard);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -215,4 +215,36 @@ public class MimeTypeUtils {
             mimeType.startsWith("text/plain")
         );
     }
+
+    /**
+     * 检查内容类型是否值得压缩（文本类）
+     * 图片、音视频、压缩包、Office 2007+ 文档等本身已压缩，再压缩只会浪费 CPU
+     *
+     * @param contentType 内容类型
+     * @return true表示适合压缩
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon).trim();
+        }
+        return type.startsWith("text/")
+                || type.endsWith("+xml") || type.endsWith("+json")
+                || type.equals("application/json")
+                || type.equals("application/xml")
+                || type.equals("application/javascript")
+                || type.equals("application/x-javascript")
+                || type.equals("application/x-yaml")
+                || type.equals("application/x-sh")
+                || type.equals("application/sql")
+                || type.equals("application/msword")
+                || type.equals("application/vnd.ms-excel")
+                || type.equals("application/vnd.ms-powerpoint")
+                || type.equals("image/bmp")
+                || type.equals("image/x-icon");
+    }
 }
@@ -0,0 +1,388 @@
+package com.ziwen.moudle.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * multipart/form-data 流式解析器
+ * 直接从请求输入流中逐个读取表单部分，部分内容以输入流形式返回，不落临时文件、不整体缓存
+ *
+ * 用法：
+ * <pre>
+ * MultipartStreamReader reader = new MultipartStreamReader(request.getInputStream(), boundary);
+ * MultipartStreamReader.Part part;
+ * while ((part = reader.nextPart()) != null) {
+ *     part.getInputStream() ...
+ * }
+ * </pre>
+ *
+ * @author ziwen
+ */
+public class MultipartStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 单个部分头部的最大长度 */
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+
+    private final InputStream in;
+    /** 分隔符：CRLF + "--" + boundary */
+    private final byte[] delimiter;
+    /** Horspool 跳转表 */
+    private final int[] skip = new int[256];
+
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private PartInputStream current;
+    private boolean finished;
+
+    /**
+     * @param in 请求输入流
+     * @param boundary Content-Type 中的 boundary 参数
+     */
+    public MultipartStreamReader(InputStream in, String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("无效的 multipart boundary");
+        }
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 2)];
+
+        for (int i = 0; i < skip.length; i++) {
+            skip[i] = delimiter.length;
+        }
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            skip[delimiter[i] & 0xff] = delimiter.length - 1 - i;
+        }
+
+        // 第一个边界前没有 CRLF，预置后与后续分隔符统一处理
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * 表单部分
+     */
+    public static class Part {
+        private final Map<String, String> headers;
+        private final String name;
+        private final String fileName;
+        private final InputStream inputStream;
+
+        Part(Map<String, String> headers, InputStream inputStream) {
+            this.headers = headers;
+            this.inputStream = inputStream;
+            String disposition = headers.getOrDefault("content-disposition", "");
+            this.name = dispositionParam(disposition, "name");
+            this.fileName = dispositionParam(disposition, "filename");
+        }
+
+        /** 表单字段名 */
+        public String getName() { return name; }
+        /** 文件名，普通字段为 null */
+        public String getFileName() { return fileName; }
+        /** Content-Type，未提供时为 null */
+        public String getContentType() { return headers.get("content-type"); }
+        /** 部分头（名称小写） */
+        public Map<String, String> getHeaders() { return headers; }
+        /** 部分内容，读到 -1 即本部分结束 */
+        public InputStream getInputStream() { return inputStream; }
+        /** 是否为文件 */
+        public boolean isFile() { return fileName != null; }
+
+        /**
+         * 读取普通字段的值（UTF-8）
+         */
+        public String readString(int maxLength) throws IOException {
+            byte[] value = inputStream.readNBytes(maxLength + 1);
+            if (value.length > maxLength) {
+                throw new IOException("表单字段过长: " + name);
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 读取下一个部分（未读完的当前部分会被跳过）
+     *
+     * @return 下一个部分；没有更多部分时返回 null
+     * @throws IOException 读取失败或格式错误
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        // 跳过当前部分剩余内容（首次调用时跳过第一个边界前的前导内容）
+        InputStream remaining = current != null ? current : new PartInputStream();
+        remaining.skip(Long.MAX_VALUE);
+
+        // 分隔符之后：“--”表示结束，否则为 CRLF
+        pos += delimiter.length;
+        if (!ensure(2)) {
+            throw new IOException("multipart 数据不完整");
+        }
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        String line = readLine();
+        if (!line.isBlank()) {
+            throw new IOException("multipart 边界格式错误");
+        }
+
+        Map<String, String> headers = readHeaders();
+        current = new PartInputStream();
+        return new Part(headers, current);
+    }
+
+    /**
+     * 读取部分头，直到空行
+     */
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        int total = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            total += line.length();
+            if (total > MAX_HEADER_SIZE) {
+                throw new IOException("multipart 部分头过长");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * 读取一行（不含 CRLF），头部按 UTF-8 解码以支持中文文件名
+     */
+    private String readLine() throws IOException {
+        int scan = pos;
+        while (true) {
+            for (; scan + 1 < limit; scan++) {
+                if (buffer[scan] == '\r' && buffer[scan + 1] == '\n') {
+                    String line = new String(buffer, pos, scan - pos, StandardCharsets.UTF_8);
+                    pos = scan + 2;
+                    return line;
+                }
+            }
+            if (scan - pos > MAX_HEADER_SIZE) {
+                throw new IOException("multipart 部分头过长");
+            }
+            int offset = pos;
+            if (!fill()) {
+                throw new IOException("multipart 数据不完整");
+            }
+            // fill 压缩缓冲区后数据整体前移
+            scan -= offset - pos;
+        }
+    }
+
+    /**
+     * 确保缓冲区至少有 n 个可读字节
+     */
+    private boolean ensure(int n) throws IOException {
+        while (limit - pos < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 压缩缓冲区并读取更多数据
+     *
+     * @return 读到新数据返回 true，流已结束返回 false
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            throw new IOException("multipart 行过长");
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n == -1) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * 在 [from, limit) 中查找分隔符（Horspool）
+     *
+     * @return 分隔符起始位置，未找到返回 -1
+     */
+    private int indexOfDelimiter(int from) {
+        int last = delimiter.length - 1;
+        int i = from;
+        while (i + last < limit) {
+            int j = last;
+            while (buffer[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += skip[buffer[i + last] & 0xff];
+        }
+        return -1;
+    }
+
+    /**
+     * 当前部分的内容流，遇到分隔符时结束（分隔符本身保留在缓冲区中）
+     */
+    private class PartInputStream extends InputStream {
+
+        private boolean ended;
+
+        /**
+         * 当前可直接交付的字节数（不会越过分隔符）
+         */
+        private int available0() throws IOException {
+            if (ended) {
+                return 0;
+            }
+            while (true) {
+                int idx = indexOfDelimiter(pos);
+                if (idx >= 0) {
+                    if (idx == pos) {
+                        ended = true;
+                        return 0;
+                    }
+                    return idx - pos;
+                }
+                // 末尾可能是不完整的分隔符，保留 delimiter.length - 1 个字节
+                int safe = limit - pos - (delimiter.length - 1);
+                if (safe > 0) {
+                    return safe;
+                }
+                if (!fill()) {
+                    throw new IOException("multipart 数据不完整：缺少结束边界");
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (available0() == 0) {
+                return -1;
+            }
+            return buffer[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = available0();
+            if (n == 0) {
+                return -1;
+            }
+            n = Math.min(n, len);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                int available = available0();
+                if (available == 0) {
+                    break;
+                }
+                int step = (int) Math.min(available, n - skipped);
+                pos += step;
+                skipped += step;
+            }
+            return skipped;
+        }
+    }
+
+    /**
+     * 解析 Content-Disposition 参数（支持 RFC 5987 filename*）
+     */
+    private static String dispositionParam(String disposition, String param) {
+        String extended = findParam(disposition, param + "*");
+        if (extended != null) {
+            int quote = extended.indexOf("''");
+            if (quote >= 0) {
+                try {
+                    return java.net.URLDecoder.decode(
+                            extended.substring(quote + 2).replace("+", "%2B"), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException ignored) {
+                    // 编码非法时回退到普通参数
+                }
+            }
+        }
+        return findParam(disposition, param);
+    }
+
+    private static String findParam(String disposition, String param) {
+        int i = 0;
+        while (i < disposition.length()) {
+            int semi = disposition.indexOf(';', i);
+            if (semi < 0) {
+                return null;
+            }
+            int start = semi + 1;
+            while (start < disposition.length() && disposition.charAt(start) == ' ') {
+                start++;
+            }
+            int eq = disposition.indexOf('=', start);
+            if (eq < 0) {
+                return null;
+            }
+            String key = disposition.substring(start, eq).trim();
+            int valueStart = eq + 1;
+            String value;
+            int next;
+            if (valueStart < disposition.length() && disposition.charAt(valueStart) == '"') {
+                int end = valueStart + 1;
+                StringBuilder sb = new StringBuilder();
+                while (end < disposition.length() && disposition.charAt(end) != '"') {
+                    char c = disposition.charAt(end);
+                    if (c == '\\' && end + 1 < disposition.length()) {
+                        c = disposition.charAt(++end);
+                    }
+                    sb.append(c);
+                    end++;
+                }
+                value = sb.toString();
+                next = end + 1;
+            } else {
+                int end = disposition.indexOf(';', valueStart);
+                next = end < 0 ? disposition.length() : end;
+                value = disposition.substring(valueStart, next).trim();
+            }
+            if (key.equalsIgnoreCase(param)) {
+                return value;
+            }
+            i = next;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,356 @@
+package com.ziwen.moudle.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存 n-gram 索引（文件名子串 / 前缀搜索）
+ *
+ * - 文本按 NFKC 归一化并转小写，按字符（码点）切分，中文等无空格文字同样适用
+ * - 每个位置索引 1~3 元组；查询取最长可用的元组求交集，再对候选逐个校验子串，结果无误报
+ * - 文档按加入顺序编号，倒排表只追加，以 差值 + 变长整数 压缩存储
+ * - 前缀查询通过在文本前加起始标记实现
+ * - 删除只做标记，已删除文档超过一定比例时在锁外重建新的倒排表再替换，重建期间查询和写入不受阻塞
+ *
+ * @author ziwen
+ */
+public class NgramIndex {
+
+    /** 文本起始标记（用于前缀查询） */
+    private static final String START = "\u0002";
+    private static final int MAX_GRAM = 3;
+    /** 已删除文档比例超过该值时重建 */
+    private static final double REBUILD_RATIO = 0.25;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 元组 → 倒排表 */
+    private Map<String, PostingList> postings = new HashMap<>();
+    /** 文档编号 → 外部ID / 归一化文本 */
+    private long[] ids = new long[1024];
+    private String[] texts = new String[1024];
+    private int docCount;
+    /** 外部ID → 文档编号 */
+    private Map<Long, Integer> docs = new HashMap<>();
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    /** 是否正在重建 */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    /** 重建期间的写操作（外部ID → 文本，null 表示删除），重建完成后重放到新的倒排表 */
+    private List<Change> pendingChanges;
+
+    private static class Change {
+        private final long id;
+        private final String text;
+
+        Change(long id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 压缩倒排表：文档编号递增追加，存储相邻编号的差值（变长整数）
+     */
+    static class PostingList {
+        private byte[] data = new byte[4];
+        private int length;
+        private int last = -1;
+        private int size;
+
+        void add(int doc) {
+            if (doc == last) {
+                return;
+            }
+            int delta = doc - last;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((delta & ~0x7f) != 0) {
+                data[length++] = (byte) ((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = doc;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            int[] docs = new int[size];
+            int pos = 0;
+            int doc = -1;
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+
+        /**
+         * 与有序数组求交集
+         */
+        int[] retain(int[] candidates, int count) {
+            int[] result = new int[count];
+            int n = 0;
+            int pos = 0;
+            int doc = -1;
+            int read = 0;
+            for (int i = 0; i < count; i++) {
+                int target = candidates[i];
+                while (doc < target && read < size) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[pos++];
+                        delta |= (b & 0x7f) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    doc += delta;
+                    read++;
+                }
+                if (doc == target) {
+                    result[n++] = target;
+                } else if (doc < target) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+
+    /**
+     * 加入或更新文档
+     *
+     * @param id 外部ID
+     * @param text 文本
+     */
+    public void put(long id, String text) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(id, text));
+            }
+            removeInternal(id);
+            if (text != null && !text.isEmpty()) {
+                putNormalized(id, normalize(text));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * 移除文档
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(id, null));
+            }
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * 子串查询
+     *
+     * @param query 查询文本
+     * @param prefix 是否只匹配前缀
+     * @param limit 最多返回数量
+     * @return 匹配的外部ID（后加入的在前）
+     */
+    public List<Long> search(String query, boolean prefix, int limit) {
+        List<Long> result = new ArrayList<>();
+        if (query == null || query.isEmpty() || limit <= 0) {
+            return result;
+        }
+        String normalized = normalize(query);
+        String pattern = prefix ? START + normalized : normalized;
+
+        lock.readLock().lock();
+        try {
+            // 按倒排表长度从短到长求交集
+            List<PostingList> lists = new ArrayList<>();
+            for (String gram : grams(pattern, false)) {
+                PostingList list = postings.get(gram);
+                if (list == null) {
+                    return result;
+                }
+                lists.add(list);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            int[] candidates = lists.get(0).toArray();
+            for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+                candidates = lists.get(i).retain(candidates, candidates.length);
+            }
+
+            for (int i = candidates.length - 1; i >= 0 && result.size() < limit; i--) {
+                int doc = candidates[i];
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                String text = texts[doc];
+                if (prefix ? text.startsWith(normalized) : text.contains(normalized)) {
+                    result.add(ids[doc]);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加文档（文本已归一化，调用方保证该ID不在索引中）
+     */
+    private void putNormalized(long id, String normalized) {
+        int doc = docCount++;
+        if (doc == ids.length) {
+            ids = Arrays.copyOf(ids, doc * 2);
+            texts = Arrays.copyOf(texts, doc * 2);
+        }
+        ids[doc] = id;
+        texts[doc] = normalized;
+        docs.put(id, doc);
+        for (String gram : grams(START + normalized, true)) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(doc);
+        }
+    }
+
+    private void removeInternal(long id) {
+        Integer doc = docs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        texts[doc] = null;
+        deletedCount++;
+    }
+
+    private boolean needsCompaction() {
+        return deletedCount > docCount * REBUILD_RATIO && deletedCount > 1024;
+    }
+
+    /**
+     * 重建：丢弃已删除文档，重新编号
+     * 只在复制快照和替换时短暂持有写锁，建新倒排表期间的写操作先记录下来，替换前重放
+     */
+    private void compactIfNeeded() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long[] snapshotIds;
+            String[] snapshotTexts;
+            lock.writeLock().lock();
+            try {
+                if (!needsCompaction()) {
+                    return;
+                }
+                snapshotIds = Arrays.copyOf(ids, docCount);
+                snapshotTexts = Arrays.copyOf(texts, docCount);
+                pendingChanges = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            NgramIndex fresh = new NgramIndex();
+            for (int i = 0; i < snapshotTexts.length; i++) {
+                if (snapshotTexts[i] != null) {
+                    fresh.putNormalized(snapshotIds[i], snapshotTexts[i]);
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Change change : pendingChanges) {
+                    fresh.removeInternal(change.id);
+                    if (change.text != null && !change.text.isEmpty()) {
+                        fresh.putNormalized(change.id, normalize(change.text));
+                    }
+                }
+                pendingChanges = null;
+                postings = fresh.postings;
+                ids = fresh.ids;
+                texts = fresh.texts;
+                docCount = fresh.docCount;
+                docs = fresh.docs;
+                deleted = fresh.deleted;
+                deletedCount = fresh.deletedCount;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * 切分元组
+     *
+     * @param text 文本
+     * @param all true 返回所有 1~3 元组（建索引）；false 只返回查询所需的最长元组
+     */
+    private static Set<String> grams(String text, boolean all) {
+        int[] codePoints = text.codePoints().toArray();
+        Set<String> grams = new LinkedHashSet<>();
+        if (all) {
+            for (int n = 1; n <= MAX_GRAM; n++) {
+                for (int i = 0; i + n <= codePoints.length; i++) {
+                    grams.add(new String(codePoints, i, n));
+                }
+            }
+        } else {
+            int n = Math.min(MAX_GRAM, codePoints.length);
+            for (int i = 0; i + n <= codePoints.length; i++) {
+                grams.add(new String(codePoints, i, n));
+            }
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,279 @@
+package com.ziwen.moudle.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * 分段索引
+ * 分片存储不再复制出独立的分片文件，而是保留一个连续的数据文件，
+ * 旁边写一个紧凑的索引文件（{数据文件}.idx）记录每段的偏移和 CRC32C，按段读取时直接内存映射数据文件
+ *
+ * 索引格式（大端）：
+ * magic(int "SIDX") | version(int) | dataLength(long) | segmentCount(int) |
+ * segmentCount × [offset(long) | crc32c(int)]
+ *
+ * @author ziwen
+ */
+public class SegmentIndex {
+
+    /** 索引文件后缀 */
+    public static final String SUFFIX = ".idx";
+
+    /**
+     * 段大小上限（64MB）
+     * 校验时逐段整体映射，段超过 2GB 无法映射；分片上传的分片大小即段大小，同时限制单个分片请求的大小
+     */
+    public static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x53494458;
+    private static final int VERSION = 1;
+
+    private final long dataLength;
+    /** 各段起始偏移，末尾追加 dataLength 便于计算段长度 */
+    private final long[] offsets;
+    private final int[] checksums;
+
+    private SegmentIndex(long dataLength, long[] offsets, int[] checksums) {
+        this.dataLength = dataLength;
+        this.offsets = offsets;
+        this.checksums = checksums;
+    }
+
+    /**
+     * 数据文件对应的索引文件
+     */
+    public static File indexFileOf(File dataFile) {
+        return new File(dataFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * 按固定段大小创建索引（校验值已知，如分片上传时边写边算的 CRC32C）
+     *
+     * @param segmentSize 段大小
+     * @param dataLength 数据长度
+     * @param checksums 各段 CRC32C
+     */
+    public static SegmentIndex of(long segmentSize, long dataLength, int[] checksums) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("段大小无效: " + segmentSize);
+        }
+        int count = (int) ((dataLength + segmentSize - 1) / segmentSize);
+        if (checksums.length != count) {
+            throw new IllegalArgumentException("校验值数量与分段数不一致: " + checksums.length + " != " + count);
+        }
+        long[] offsets = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = i * segmentSize;
+        }
+        offsets[count] = dataLength;
+        return new SegmentIndex(dataLength, offsets, checksums.clone());
+    }
+
+    /**
+     * 扫描数据文件，按固定段大小创建索引（逐段内存映射计算 CRC32C）
+     */
+    public static SegmentIndex build(File dataFile, long segmentSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            int count = (int) ((length + segmentSize - 1) / segmentSize);
+            int[] checksums = new int[count];
+            for (int i = 0; i < count; i++) {
+                long offset = i * segmentSize;
+                checksums[i] = crc32c(channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(segmentSize, length - offset)));
+            }
+            return of(segmentSize, length, checksums);
+        }
+    }
+
+    /**
+     * 边写边算的索引构建器
+     * 上传时在写入（或计算内容哈希）的同一遍读取中累计各段 CRC32C，避免写完后在请求线程上重新读取整个文件
+     */
+    public static class Builder {
+
+        private final long segmentSize;
+        private final CRC32C crc = new CRC32C();
+        private int[] checksums = new int[16];
+        private int count;
+        /** 当前段已累计的字节数 */
+        private long filled;
+        private long length;
+
+        public Builder(long segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("段大小必须大于 0: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+        }
+
+        public void update(byte[] buffer, int offset, int len) {
+            while (len > 0) {
+                int n = (int) Math.min(len, segmentSize - filled);
+                crc.update(buffer, offset, n);
+                offset += n;
+                len -= n;
+                filled += n;
+                length += n;
+                if (filled == segmentSize) {
+                    finishSegment();
+                }
+            }
+        }
+
+        public SegmentIndex build() {
+            if (filled > 0) {
+                finishSegment();
+            }
+            return of(segmentSize, length, Arrays.copyOf(checksums, count));
+        }
+
+        private void finishSegment() {
+            if (count == checksums.length) {
+                checksums = Arrays.copyOf(checksums, count * 2);
+            }
+            checksums[count++] = (int) crc.getValue();
+            crc.reset();
+            filled = 0;
+        }
+    }
+
+    /**
+     * 读取索引文件
+     */
+    public static SegmentIndex read(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("无效的分段索引: " + indexFile);
+            }
+            long dataLength = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("无效的分段索引: " + indexFile);
+            }
+            long[] offsets = new long[count + 1];
+            int[] checksums = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                checksums[i] = in.readInt();
+            }
+            offsets[count] = dataLength;
+            return new SegmentIndex(dataLength, offsets, checksums);
+        }
+    }
+
+    /**
+     * 写入索引文件（先写临时文件再原子替换）
+     */
+    public void write(File indexFile) throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataLength);
+            out.writeInt(getSegmentCount());
+            for (int i = 0; i < getSegmentCount(); i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(checksums[i]);
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public int getSegmentCount() {
+        return checksums.length;
+    }
+
+    public long segmentOffset(int n) {
+        return offsets[n];
+    }
+
+    public long segmentLength(int n) {
+        return offsets[n + 1] - offsets[n];
+    }
+
+    /**
+     * 最大段长度
+     */
+    public long maxSegmentLength() {
+        long max = 0;
+        for (int i = 0; i < getSegmentCount(); i++) {
+            max = Math.max(max, segmentLength(i));
+        }
+        return max;
+    }
+
+    public int checksum(int n) {
+        return checksums[n];
+    }
+
+    /**
+     * 定位包含指定位置的段
+     *
+     * @return 段序号；超出数据长度返回 -1
+     */
+    public int segmentAt(long position) {
+        if (position < 0 || position >= dataLength) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch(offsets, 0, getSegmentCount(), position);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * 只读映射指定段
+     */
+    public ByteBuffer map(FileChannel channel, int n) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, segmentOffset(n), segmentLength(n));
+    }
+
+    /**
+     * 校验已映射的段内容
+     */
+    public boolean verify(int n, ByteBuffer segment) {
+        return crc32c(segment.duplicate()) == checksums[n];
+    }
+
+    /**
+     * 校验数据文件
+     *
+     * @return 第一个损坏的段序号；全部正确返回 -1
+     */
+    public int verify(File dataFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != dataLength) {
+                return segmentAt(Math.min(channel.size(), dataLength - 1));
+            }
+            for (int i = 0; i < getSegmentCount(); i++) {
+                if (!verify(i, map(channel, i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static int crc32c(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ziwen.moudle.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分片文件内容源
+ * 按顺序遍历分片文件输出内容，无需先合并成临时文件；支持任意区间偏移
+ *
+ * @author ziwen
+ */
+public class SegmentedFileSource implements FileContentSource {
+
+    private final File[] segments;
+
+    /** 每个分片在整体内容中的起始偏移，最后一项为总长度 */
+    private final long[] offsets;
+
+    /** 当前打开的分片（顺序读取时复用同一通道） */
+    private int openIndex = -1;
+    private FileChannel openChannel;
+
+    public SegmentedFileSource(List<File> segments) {
+        this.segments = segments.toArray(new File[0]);
+        this.offsets = new long[this.segments.length + 1];
+        for (int i = 0; i < this.segments.length; i++) {
+            offsets[i + 1] = offsets[i] + this.segments[i].length();
+        }
+    }
+
+    @Override
+    public long length() {
+        return offsets[segments.length];
+    }
+
+    @Override
+    public long lastModified() {
+        long lastModified = 0;
+        for (File segment : segments) {
+            lastModified = Math.max(lastModified, segment.lastModified());
+        }
+        return lastModified;
+    }
+
+    @Override
+    public File singleFile() {
+        return null;
+    }
+
+    @Override
+    public long transferTo(long position, long count, OutputStream os,
+                           FileTransferUtil.TransferGuard guard) throws IOException {
+        long end = Math.min(position + count, length());
+        long written = 0;
+        long current = position;
+
+        int index = segmentIndexOf(current);
+        while (current < end && index < segments.length) {
+            long segmentStart = offsets[index];
+            long segmentEnd = offsets[index + 1];
+            long len = Math.min(end, segmentEnd) - current;
+
+            FileChannel channel = channel(index);
+            long n = FileTransferUtil.transfer(channel, current - segmentStart, len, os, guard);
+            written += n;
+            current += n;
+            if (n < len) {
+                // 被守卫中止或分片被截断
+                break;
+            }
+            index++;
+        }
+        return written;
+    }
+
+    /**
+     * 二分查找位置所在的分片
+     */
+    private int segmentIndexOf(long position) {
+        int index = Arrays.binarySearch(offsets, position);
+        // 命中某个分片起点时直接返回；否则返回插入点的前一个分片
+        index = index >= 0 ? index : -index - 2;
+        // 跳过空分片
+        while (index < segments.length - 1 && offsets[index + 1] == position) {
+            index++;
+        }
+        return Math.max(0, index);
+    }
+
+    private FileChannel channel(int index) throws IOException {
+        if (index != openIndex) {
+            closeChannel();
+            openChannel = FileChannel.open(segments[index].toPath(), StandardOpenOption.READ);
+            openIndex = index;
+        }
+        return openChannel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (openChannel != null) {
+            openChannel.close();
+            openChannel = null;
+            openIndex = -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+}
@@ -0,0 +1,56 @@
+package com.ziwen.moudle.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 单文件内容源
+ *
+ * @author ziwen
+ */
+public class SingleFileSource implements FileContentSource {
+
+    private final File file;
+    private final long length;
+    private FileChannel channel;
+
+    public SingleFileSource(File file) {
+        this.file = file;
+        this.length = file.length();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return file.lastModified();
+    }
+
+    @Override
+    public File singleFile() {
+        return file;
+    }
+
+    @Override
+    public long transferTo(long position, long count, OutputStream os,
+                           FileTransferUtil.TransferGuard guard) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return FileTransferUtil.transfer(channel, position, count, os, guard);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.ziwen.moudle.utils;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 流式 ZIP 写出器
+ * 边读边写，不需要预先知道 CRC 和压缩后大小，也不需要临时文件
+ *
+ * - 每个条目的 CRC 和大小写在条目数据之后的数据描述符中（通用标志位 3），每个文件只需读取一遍
+ * - 所有条目都以 DEFLATE 格式写出：{@link #STORED} 条目使用无压缩级别（只加上少量块头），
+ *   流式读取（如 ZipInputStream）只能靠 DEFLATE 数据自身的结束标记定位带数据描述符的条目结尾，
+ *   真正的 STORED 条目在 CRC 和大小未知时无法被流式读取
+ * - 条目原始大小不小于 {@value #ZIP64_ENTRY_THRESHOLD} 字节时使用 ZIP64 本地头和 8 字节数据描述符；
+ *   偏移、条目数超出 ZIP 限制时自动写 ZIP64 中央目录结束记录，支持 4GB 以上的压缩包
+ * - 内存占用与压缩包大小无关，只有中央目录条目随文件数增长（每个文件几十字节）
+ * - 文件名使用 UTF-8 编码（通用标志位 11）
+ *
+ * @author ziwen
+ */
+public class ZipStreamWriter implements Closeable {
+
+    /** 原始大小达到该值的条目使用 ZIP64（预留 DEFLATE 最坏情况下的膨胀空间） */
+    static final long ZIP64_ENTRY_THRESHOLD = 0xF0000000L;
+
+    private static final long LIMIT_32 = 0xFFFFFFFFL;
+    private static final int LIMIT_16 = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    /** 通用标志：数据描述符 + UTF-8 文件名 */
+    private static final int FLAGS = 0x0808;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    /** 压缩方式：不压缩（以 DEFLATE 无压缩块写出） */
+    public static final int STORED = 0;
+    /** 压缩方式：DEFLATE */
+    public static final int DEFLATED = 8;
+
+    private final CountingOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Deflater storeDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** 当前条目 */
+    private Entry current;
+    private EntryOutputStream currentStream;
+    private boolean finished;
+
+    public ZipStreamWriter(OutputStream os) {
+        this.out = new CountingOutputStream(os);
+    }
+
+    /**
+     * 中央目录条目
+     */
+    private static class Entry {
+        private final byte[] name;
+        private final long dosTime;
+        private final long offset;
+        private final boolean zip64;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        Entry(byte[] name, long dosTime, long offset, boolean zip64) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.offset = offset;
+            this.zip64 = zip64;
+        }
+    }
+
+    /**
+     * 开始一个条目
+     *
+     * @param name 条目名称
+     * @param method 压缩方式 {@link #STORED} 或 {@link #DEFLATED}
+     * @param lastModified 最后修改时间（毫秒）
+     * @param expectedSize 预计原始大小（用于决定是否使用 ZIP64），未知时传 -1
+     * @return 条目内容输出流，写完后调用 {@link #closeEntry()}（不要关闭该流）
+     * @throws IOException 写出失败
+     */
+    public OutputStream putEntry(String name, int method, long lastModified, long expectedSize) throws IOException {
+        if (finished) {
+            throw new IOException("ZIP 已结束写出");
+        }
+        if (current != null) {
+            closeEntry();
+        }
+        if (method != STORED && method != DEFLATED) {
+            throw new IllegalArgumentException("不支持的压缩方式: " + method);
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > LIMIT_16) {
+            throw new IllegalArgumentException("条目名称过长: " + name);
+        }
+        boolean zip64 = expectedSize < 0 || expectedSize >= ZIP64_ENTRY_THRESHOLD;
+        current = new Entry(nameBytes, toDosTime(lastModified), out.count, zip64);
+
+        // 本地文件头：CRC 和大小置 0，由数据描述符给出；ZIP64 条目的大小置 0xFFFFFFFF 并附带 ZIP64 扩展字段
+        writeInt(LOCAL_HEADER_SIG);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeInt(current.dosTime);
+        writeInt(0);
+        writeInt(zip64 ? LIMIT_32 : 0);
+        writeInt(zip64 ? LIMIT_32 : 0);
+        writeShort(nameBytes.length);
+        writeShort(zip64 ? 20 : 0);
+        out.write(nameBytes);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(0);
+            writeLong(0);
+        }
+
+        currentStream = new EntryOutputStream(method == DEFLATED ? deflater : storeDeflater);
+        return currentStream;
+    }
+
+    /**
+     * 结束当前条目，写出数据描述符
+     *
+     * @throws IOException 写出失败
+     */
+    public void closeEntry() throws IOException {
+        if (current == null) {
+            return;
+        }
+        currentStream.target.finish();
+        currentStream.deflater.reset();
+        current.crc = currentStream.crc.getValue();
+        current.size = currentStream.size;
+        current.compressedSize = out.count - currentStream.dataStart;
+        if (!current.zip64 && (current.size >= LIMIT_32 || current.compressedSize >= LIMIT_32)) {
+            throw new IOException("条目大小超出预计，无法写出 ZIP64 数据描述符");
+        }
+
+        writeInt(DATA_DESCRIPTOR_SIG);
+        writeInt(current.crc);
+        if (current.zip64) {
+            writeLong(current.compressedSize);
+            writeLong(current.size);
+        } else {
+            writeInt(current.compressedSize);
+            writeInt(current.size);
+        }
+        entries.add(current);
+        current = null;
+        currentStream = null;
+    }
+
+    /**
+     * 写出中央目录和结束记录（不关闭底层输出流）
+     *
+     * @throws IOException 写出失败
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        closeEntry();
+        long centralStart = out.count;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = out.count - centralStart;
+
+        boolean zip64End = entries.size() >= LIMIT_16 || centralStart >= LIMIT_32 || centralSize >= LIMIT_32;
+        if (zip64End) {
+            long zip64EndOffset = out.count;
+            writeInt(ZIP64_END_SIG);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralSize);
+            writeLong(centralStart);
+
+            writeInt(ZIP64_LOCATOR_SIG);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+
+        writeInt(END_SIG);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), LIMIT_16));
+        writeShort(Math.min(entries.size(), LIMIT_16));
+        writeInt(Math.min(centralSize, LIMIT_32));
+        writeInt(Math.min(centralStart, LIMIT_32));
+        writeShort(0);
+        out.flush();
+        finished = true;
+    }
+
+    /**
+     * 已写出的字节数
+     */
+    public long bytesWritten() {
+        return out.count;
+    }
+
+    /**
+     * 释放压缩器（不关闭底层输出流，也不补写中央目录）
+     */
+    @Override
+    public void close() {
+        deflater.end();
+        storeDeflater.end();
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean sizes64 = entry.size >= LIMIT_32 || entry.compressedSize >= LIMIT_32;
+        boolean offset64 = entry.offset >= LIMIT_32;
+        int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+
+        writeInt(CENTRAL_HEADER_SIG);
+        writeShort(VERSION_ZIP64);
+        writeShort(entry.zip64 || extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(sizes64 ? LIMIT_32 : entry.compressedSize);
+        writeInt(sizes64 ? LIMIT_32 : entry.size);
+        writeShort(entry.name.length);
+        writeShort(extraLength > 0 ? extraLength + 4 : 0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(offset64 ? LIMIT_32 : entry.offset);
+        out.write(entry.name);
+        if (extraLength > 0) {
+            // ZIP64 扩展字段只包含值为 0xFFFFFFFF 的字段，顺序为 原始大小、压缩后大小、偏移
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+            if (sizes64) {
+                writeLong(entry.size);
+                writeLong(entry.compressedSize);
+            }
+            if (offset64) {
+                writeLong(entry.offset);
+            }
+        }
+    }
+
+    private DeflaterOutputStream newDeflaterStream(Deflater deflater) {
+        // 不关闭底层输出流
+        OutputStream shield = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        return new DeflaterOutputStream(shield, deflater, 64 * 1024);
+    }
+
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (long) (time.getYear() - 1980) << 25
+                | (long) time.getMonthValue() << 21
+                | (long) time.getDayOfMonth() << 16
+                | (long) time.getHour() << 11
+                | (long) time.getMinute() << 5
+                | (long) time.getSecond() >> 1;
+    }
+
+    private void writeShort(int v) throws IOException {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private void writeInt(long v) throws IOException {
+        out.write((int) (v & 0xff));
+        out.write((int) ((v >>> 8) & 0xff));
+        out.write((int) ((v >>> 16) & 0xff));
+        out.write((int) ((v >>> 24) & 0xff));
+    }
+
+    private void writeLong(long v) throws IOException {
+        writeInt(v & LIMIT_32);
+        writeInt(v >>> 32);
+    }
+
+    /**
+     * 统计已写出字节数的输出流（用于记录条目偏移和压缩后大小）
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * 条目内容输出流：计算原始内容的 CRC 和大小后交给压缩流
+     */
+    private class EntryOutputStream extends OutputStream {
+        private final Deflater deflater;
+        private final DeflaterOutputStream target;
+        private final CRC32 crc = new CRC32();
+        private final long dataStart = out.count;
+        private long size;
+
+        EntryOutputStream(Deflater deflater) {
+            this.deflater = deflater;
+            this.target = newDeflaterStream(deflater);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            crc.update(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            crc.update(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            // 由 closeEntry 结束条目
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.ziwen.moudle.service.file;
+
+import com.ziwen.moudle.utils.ContentHashUtil;
+import com.ziwen.moudle.utils.SegmentIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分片上传服务测试（分片日志回放、重传、CRC32C 校验、增量摘要）
+ */
+public class ChunkUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int TOTAL_SIZE = 3500;
+
+    private Path root;
+    private byte[] content;
+    private StorageVolumeService storageVolumeService;
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("chunk-upload");
+        content = new byte[TOTAL_SIZE];
+        new Random(7).nextBytes(content);
+
+        storageVolumeService = mock(StorageVolumeService.class);
+        when(storageVolumeService.allocate(anyString())).thenAnswer(invocation -> {
+            File file = root.resolve("data-" + System.nanoTime() + ".bin").toFile();
+            return new StorageVolumeService.Placement(file.getAbsolutePath(), file, "/files/" + file.getName());
+        });
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.getChunkDir(anyString())).thenAnswer(invocation ->
+                root.resolve("temp").toString() + File.separator + invocation.getArgument(0) + File.separator);
+        when(fileStorageService.resolve(anyString())).thenAnswer(invocation -> new File((String) invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    /**
+     * 新建服务实例，模拟服务重启（内存中的会话全部丢失）
+     */
+    private ChunkUploadService newService() {
+        return new ChunkUploadService(storageVolumeService, fileStorageService, DataSize.ofMegabytes(16), 24);
+    }
+
+    private MockMultipartFile chunkOf(int chunkNumber) {
+        int from = chunkNumber * CHUNK_SIZE;
+        return new MockMultipartFile("file", Arrays.copyOfRange(content, from, Math.min(TOTAL_SIZE, from + CHUNK_SIZE)));
+    }
+
+    private Path journalOf(String uploadId) {
+        return Path.of(fileStorageService.getChunkDir(uploadId), "chunks.log");
+    }
+
+    @Test
+    public void testReplayIgnoresTornLastRecord() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        service.writeChunk(uploadId, 0, chunkOf(0), null);
+        service.writeChunk(uploadId, 2, chunkOf(2), null);
+
+        // 写入第三条记录时宕机：只落盘了前 7 个字节
+        Files.write(journalOf(uploadId), new byte[]{0, 0, 0, 3, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        ChunkUploadService.ChunkUploadStatus status = newService().getStatus(uploadId);
+        assertEquals(2, status.getReceivedChunks(), "不完整的记录不应计入");
+        assertEquals(2 * CHUNK_SIZE, status.getReceivedBytes());
+        assertRanges(status.getMissingRanges(), new int[]{1, 1}, new int[]{3, 3});
+        assertFalse(status.isComplete());
+    }
+
+    @Test
+    public void testReplayAfterTornRecordAcceptsNewChunks() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        service.writeChunk(uploadId, 0, chunkOf(0), null);
+        Files.write(journalOf(uploadId), new byte[]{0, 0}, StandardOpenOption.APPEND);
+
+        // 重启后补传剩余分片，全部到齐
+        ChunkUploadService restarted = newService();
+        for (int i = 1; i < 4; i++) {
+            restarted.writeChunk(uploadId, i, chunkOf(i), null);
+        }
+        assertTrue(restarted.getStatus(uploadId).isComplete());
+        assertEquals(4L * 16, Files.size(journalOf(uploadId)), "不完整的记录应被截掉，新记录紧接完整记录之后");
+
+        // 再次重启，回放结果不受之前不完整记录的影响
+        assertTrue(newService().getStatus(uploadId).isComplete());
+    }
+
+    @Test
+    public void testResendWrittenChunk() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        service.writeChunk(uploadId, 1, chunkOf(1), null);
+        // 客户端未收到应答，重传同一分片
+        service.writeChunk(uploadId, 1, chunkOf(1), null);
+
+        ChunkUploadService.ChunkUploadStatus status = service.getStatus(uploadId);
+        assertEquals(1, status.getReceivedChunks(), "重传不应重复计数");
+        assertRanges(status.getMissingRanges(), new int[]{0, 0}, new int[]{2, 3});
+
+        // 日志里有两条相同记录，回放结果一致
+        assertEquals(1, newService().getStatus(uploadId).getReceivedChunks());
+    }
+
+    @Test
+    public void testWrongSizeChunkRejected() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, 3, chunkOf(0), null), "最后一片应为 500 字节");
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, 4, chunkOf(0), null), "序号越界");
+        assertEquals(0, service.getStatus(uploadId).getReceivedChunks());
+    }
+
+    @Test
+    public void testMissingRanges() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        assertRanges(service.getStatus(uploadId).getMissingRanges(), new int[]{0, 3});
+
+        service.writeChunk(uploadId, 3, chunkOf(3), null);
+        assertRanges(service.getStatus(uploadId).getMissingRanges(), new int[]{0, 2});
+        assertEquals(500, service.getStatus(uploadId).getReceivedBytes(), "最后一片不足分片大小");
+
+        service.writeChunk(uploadId, 1, chunkOf(1), null);
+        assertRanges(service.getStatus(uploadId).getMissingRanges(), new int[]{0, 0}, new int[]{2, 2});
+        assertThrows(IllegalStateException.class, () -> service.verifyComplete(uploadId));
+    }
+
+    @Test
+    public void testOversizedChunkRejected() {
+        ChunkUploadService service = newService();
+        long chunkSize = SegmentIndex.MAX_SEGMENT_SIZE + 1;
+        assertThrows(IllegalArgumentException.class,
+                () -> service.init("a.bin", 2, chunkSize, chunkSize + 1), "分片大小即段大小，不能超过上限");
+        assertThrows(IllegalArgumentException.class,
+                () -> service.init("a.bin", 1, Long.MAX_VALUE, 1), "超大分片大小不能溢出");
+    }
+
+    @Test
+    public void testUnknownOrInvalidUploadId() {
+        ChunkUploadService service = newService();
+        assertThrows(IllegalArgumentException.class, () -> service.getStatus("0123abcd"));
+        assertThrows(IllegalArgumentException.class, () -> service.getStatus("../../etc"), "不允许路径穿越");
+    }
+
+    @Test
+    public void testCrcMismatchRejectsChunk() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        int crc = crc32cOf(0);
+
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(uploadId, 0, chunkOf(0), crc ^ 1));
+        assertEquals(0, service.getStatus(uploadId).getReceivedChunks(), "校验失败的分片不应计入");
+        assertEquals(0, newService().getStatus(uploadId).getReceivedChunks(), "校验失败的分片不应写入日志");
+
+        // 重传正确内容后接收，摘要不受失败的那次写入影响
+        service.writeChunk(uploadId, 0, chunkOf(0), crc);
+        for (int i = 1; i < 4; i++) {
+            service.writeChunk(uploadId, i, chunkOf(i), crc32cOf(i));
+        }
+        assertEquals(expectedHash(), service.contentHash(service.verifyComplete(uploadId)));
+    }
+
+    @Test
+    public void testCrcMismatchInvalidatesReceivedChunk() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        service.writeChunk(uploadId, 1, chunkOf(1), crc32cOf(1));
+
+        // 重传时内容损坏：目标文件中该区间已被覆盖，分片作废
+        MockMultipartFile corrupted = new MockMultipartFile("file", new byte[CHUNK_SIZE]);
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(uploadId, 1, corrupted, crc32cOf(1)));
+        assertEquals(0, service.getStatus(uploadId).getReceivedChunks());
+        assertEquals(0, newService().getStatus(uploadId).getReceivedChunks(), "作废记录回放后分片仍为缺失");
+    }
+
+    @Test
+    public void testDigestWithOutOfOrderChunks() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        for (int i : new int[]{2, 0, 3, 1}) {
+            service.writeChunk(uploadId, i, chunkOf(i), crc32cOf(i));
+        }
+        ChunkUploadService.ChunkUploadSession session = service.verifyComplete(uploadId);
+        assertEquals(expectedHash(), service.contentHash(session));
+        assertEquals(expectedHash(), service.contentHash(session), "重复计算结果不变");
+    }
+
+    @Test
+    public void testDigestAfterRestart() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        service.writeChunk(uploadId, 0, chunkOf(0), null);
+        service.writeChunk(uploadId, 2, chunkOf(2), null);
+
+        // 重启后摘要状态丢失，从目标文件补算已接收的分片
+        ChunkUploadService restarted = newService();
+        restarted.writeChunk(uploadId, 3, chunkOf(3), null);
+        restarted.writeChunk(uploadId, 1, chunkOf(1), null);
+        assertEquals(expectedHash(), restarted.contentHash(restarted.verifyComplete(uploadId)));
+    }
+
+    @Test
+    public void testDigestAfterDigestedChunkReplaced() throws IOException {
+        ChunkUploadService service = newService();
+        String uploadId = service.init("a.bin", 4, CHUNK_SIZE, TOTAL_SIZE).getUploadId();
+        // 第一次上传的分片 0 内容有误（未提供校验值），已计入摘要
+        service.writeChunk(uploadId, 0, new MockMultipartFile("file", new byte[CHUNK_SIZE]), null);
+        service.writeChunk(uploadId, 1, chunkOf(1), null);
+
+        // 用正确内容覆盖后摘要从头重新计算
+        service.writeChunk(uploadId, 0, chunkOf(0), null);
+        service.writeChunk(uploadId, 2, chunkOf(2), null);
+        service.writeChunk(uploadId, 3, chunkOf(3), null);
+        assertEquals(expectedHash(), service.contentHash(service.verifyComplete(uploadId)));
+    }
+
+    private int crc32cOf(int chunkNumber) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(chunkOf(chunkNumber).getBytes());
+        return (int) crc.getValue();
+    }
+
+    private String expectedHash() {
+        MessageDigest digest = ContentHashUtil.newDigest();
+        digest.update(content);
+        return ContentHashUtil.toHex(digest);
+    }
+
+    private static void assertRanges(List<int[]> actual, int[]... expected) {
+        assertEquals(expected.length, actual.size(), "缺失区间数量");
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual.get(i));
+        }
+    }
+}
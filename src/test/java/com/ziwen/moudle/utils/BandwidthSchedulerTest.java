@@ -0,0 +1,97 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 下载带宽调度器测试
+ */
+public class BandwidthSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testTokenBucketBurstAndRate() {
+        long rate = 4L * 1024 * 1024;
+        BandwidthScheduler.TokenBucket bucket = new BandwidthScheduler.TokenBucket(rate, 0);
+
+        // 突发容量内（1 秒的速率）无需等待
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0, bucket.reserve(256 * 1024, 0));
+        }
+        // 突发耗尽后按速率等待：再取 1 秒的量需要等 1 秒
+        long wait = bucket.reserve(rate, 0);
+        assertTrue(Math.abs(wait - SECOND) < 1_000, "wait=" + wait);
+        assertFalse(bucket.isFull(SECOND));
+        assertTrue(bucket.isFull(2 * SECOND));
+
+        // 超过突发容量的单次请求不会永远等待
+        BandwidthScheduler.TokenBucket fresh = new BandwidthScheduler.TokenBucket(1024 * 1024, 0);
+        assertEquals(0, fresh.delay(100L * 1024 * 1024, 0));
+    }
+
+    @Test
+    public void testDisabledSchedulerOnlyCounts() throws Exception {
+        BandwidthScheduler scheduler = new BandwidthScheduler(0, 0, 0, 4, 1, 1024);
+        assertFalse(scheduler.isEnabled());
+        assertEquals(BandwidthScheduler.TrafficClass.INTERACTIVE, scheduler.classify(1024, false));
+        assertEquals(BandwidthScheduler.TrafficClass.INTERACTIVE, scheduler.classify(1 << 30, true));
+        assertEquals(BandwidthScheduler.TrafficClass.BULK, scheduler.classify(1025, false));
+
+        FileTransferUtil.TransferGuard guard = scheduler.guard("c", 1L, BandwidthScheduler.TrafficClass.INTERACTIVE);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(guard.allow(FileTransferUtil.SLICE_SIZE));
+        }
+        assertTrue(System.nanoTime() - start < SECOND);
+
+        // 交互类传输超过上限后按批量类统计
+        Map<String, Object> stats = scheduler.getStats();
+        assertEquals((long) FileTransferUtil.SLICE_SIZE, ((Map<?, ?>) stats.get("interactive")).get("bytes"));
+        assertEquals(999L * FileTransferUtil.SLICE_SIZE, ((Map<?, ?>) stats.get("bulk")).get("bytes"));
+    }
+
+    @Test
+    public void testWeightedFairShare() throws Exception {
+        long rate = 4L * 1024 * 1024;
+        BandwidthScheduler scheduler = new BandwidthScheduler(rate, 0, 0, 4, 1, Long.MAX_VALUE);
+        // 先耗尽突发容量，之后的分配完全由排队决定
+        scheduler.guard(null, null, BandwidthScheduler.TrafficClass.BULK).allow(rate);
+
+        AtomicLong interactiveBytes = new AtomicLong();
+        AtomicLong bulkBytes = new AtomicLong();
+        long deadline = System.nanoTime() + 2 * SECOND;
+        Thread interactive = pump(scheduler, BandwidthScheduler.TrafficClass.INTERACTIVE, interactiveBytes, deadline);
+        Thread bulk = pump(scheduler, BandwidthScheduler.TrafficClass.BULK, bulkBytes, deadline);
+        interactive.join();
+        bulk.join();
+
+        // 带宽紧张时按 4:1 分配，批量类仍有份额
+        double ratio = (double) interactiveBytes.get() / bulkBytes.get();
+        assertTrue(ratio > 2.5 && ratio < 6, "ratio=" + ratio);
+        long total = interactiveBytes.get() + bulkBytes.get();
+        assertTrue(total <= 3 * rate, "total=" + total);
+    }
+
+    private static Thread pump(BandwidthScheduler scheduler, BandwidthScheduler.TrafficClass trafficClass,
+                               AtomicLong counter, long deadline) {
+        Thread thread = new Thread(() -> {
+            FileTransferUtil.TransferGuard guard = scheduler.guard("client-" + trafficClass, null, trafficClass);
+            try {
+                while (System.nanoTime() < deadline) {
+                    guard.allow(64 * 1024);
+                    counter.addAndGet(64 * 1024);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,60 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有界读穿缓存测试
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void testReadThroughAndInvalidate() {
+        BoundedCache<Long, String> cache = new BoundedCache<>(10, TimeUnit.MINUTES.toNanos(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get(1L, key -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get(1L, key -> "v" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+
+        cache.invalidate(1L);
+        assertEquals("v2", cache.get(1L, key -> "v" + loads.incrementAndGet()));
+        assertNull(cache.get(2L, key -> null), "null 不缓存");
+        assertEquals(1L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    public void testInvalidateDuringLoadIsNotOverwritten() {
+        BoundedCache<Long, String> cache = new BoundedCache<>(10, TimeUnit.MINUTES.toNanos(1));
+        cache.get(1L, key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+        assertEquals("fresh", cache.get(1L, key -> "fresh"));
+    }
+
+    @Test
+    public void testClockEvictionKeepsReferencedEntries() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(3, TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 3; i++) {
+            cache.get(i, key -> key);
+        }
+        cache.get(0, key -> -1);
+        cache.get(3, key -> key);
+
+        assertEquals(3, cache.getStats().get("entries"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+        assertEquals(0, cache.get(0, key -> -1), "被访问过的条目获得二次机会");
+    }
+
+    @Test
+    public void testExpiredEntryReloaded() {
+        BoundedCache<Long, String> cache = new BoundedCache<>(10, 0);
+        cache.get(1L, key -> "old");
+        assertEquals("new", cache.get(1L, key -> "new"));
+    }
+}
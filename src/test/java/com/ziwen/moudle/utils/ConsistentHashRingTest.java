@@ -0,0 +1,65 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 一致性哈希环测试
+ */
+public class ConsistentHashRingTest {
+
+    private static ConsistentHashRing<String> ring(Map<String, Integer> weights) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : weights.keySet()) {
+            nodes.put(name, name);
+        }
+        return new ConsistentHashRing<>(nodes, weights);
+    }
+
+    @Test
+    public void testWeightedDistribution() {
+        ConsistentHashRing<String> ring = ring(Map.of("a", 1, "b", 1, "c", 2));
+        Map<String, Integer> counts = new HashMap<>();
+        int total = 40_000;
+        for (int i = 0; i < total; i++) {
+            counts.merge(ring.select("file-" + i, node -> true), 1, Integer::sum);
+        }
+        assertEquals(total * 0.25, counts.get("a"), total * 0.06);
+        assertEquals(total * 0.25, counts.get("b"), total * 0.06);
+        assertEquals(total * 0.5, counts.get("c"), total * 0.06);
+    }
+
+    @Test
+    public void testAddingNodeMovesOnlyItsShare() {
+        ConsistentHashRing<String> before = ring(Map.of("a", 1, "b", 1));
+        ConsistentHashRing<String> after = ring(Map.of("a", 1, "b", 1, "c", 1));
+        int moved = 0;
+        int total = 20_000;
+        for (int i = 0; i < total; i++) {
+            String key = "file-" + i;
+            String oldNode = before.select(key, node -> true);
+            String newNode = after.select(key, node -> true);
+            if (!oldNode.equals(newNode)) {
+                assertEquals("c", newNode, "只有新节点会接管键");
+                moved++;
+            }
+        }
+        assertEquals(total / 3.0, moved, total * 0.06);
+    }
+
+    @Test
+    public void testSkipRejectedNodes() {
+        ConsistentHashRing<String> ring = ring(Map.of("a", 1, "b", 1, "off", 0));
+        assertEquals(2, ring.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("b", ring.select("k" + i, node -> !node.equals("a")));
+        }
+        assertNull(ring.select("k", node -> false));
+        assertNull(ring(Map.of()).select("k", node -> true));
+    }
+}
@@ -0,0 +1,36 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内容哈希工具类测试
+ */
+public class ContentHashUtilTest {
+
+    @Test
+    public void testParseCrc32c() {
+        CRC32C crc = new CRC32C();
+        crc.update("hello world".getBytes(StandardCharsets.UTF_8));
+        int value = (int) crc.getValue();
+
+        assertEquals(value, ContentHashUtil.parseCrc32c(String.format("%08x", value)));
+        assertEquals(value, ContentHashUtil.parseCrc32c(String.format("0x%08X", value)));
+        byte[] bigEndian = {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        assertEquals(value, ContentHashUtil.parseCrc32c(Base64.getEncoder().encodeToString(bigEndian)));
+        // 高位为 1 的值
+        assertEquals(0xFFFFFFFF, ContentHashUtil.parseCrc32c("ffffffff"));
+    }
+
+    @Test
+    public void testParseCrc32cRejectsInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> ContentHashUtil.parseCrc32c("1234"));
+        assertThrows(IllegalArgumentException.class, () -> ContentHashUtil.parseCrc32c("zzzzzzzz"));
+        assertThrows(IllegalArgumentException.class, () -> ContentHashUtil.parseCrc32c("AAAAAAAAAAAA"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 向量化请求分批工具类测试
+ */
+public class EmbeddingBatcherTest {
+
+    @Test
+    public void testEstimateTokens() {
+        assertEquals(1, EmbeddingBatcher.estimateTokens(""));
+        assertEquals(4, EmbeddingBatcher.estimateTokens("hello world"));
+        assertEquals(4, EmbeddingBatcher.estimateTokens("向量检索"));
+        // 补充平面字符按一个字计
+        assertEquals(1, EmbeddingBatcher.estimateTokens("𠀀"));
+    }
+
+    @Test
+    public void testPackByItemLimit() {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            texts.add("chunk " + i);
+        }
+        List<int[]> batches = EmbeddingBatcher.pack(texts, 10, 100_000);
+        assertEquals(3, batches.size());
+        assertArrayEquals(new int[]{0, 10}, batches.get(0));
+        assertArrayEquals(new int[]{10, 20}, batches.get(1));
+        assertArrayEquals(new int[]{20, 25}, batches.get(2));
+    }
+
+    @Test
+    public void testPackByTokenLimit() {
+        String big = "字".repeat(600);
+        String small = "字".repeat(100);
+        List<int[]> batches = EmbeddingBatcher.pack(List.of(small, big, big, small, "字".repeat(5000), small), 10, 1000);
+        // 100+600 | 600+100 | 5000（超出上限，独占一批）| 100
+        assertEquals(4, batches.size());
+        assertArrayEquals(new int[]{0, 2}, batches.get(0));
+        assertArrayEquals(new int[]{2, 4}, batches.get(1));
+        assertArrayEquals(new int[]{4, 5}, batches.get(2));
+        assertArrayEquals(new int[]{5, 6}, batches.get(3));
+        assertTrue(EmbeddingBatcher.pack(List.of(), 10, 1000).isEmpty());
+    }
+}
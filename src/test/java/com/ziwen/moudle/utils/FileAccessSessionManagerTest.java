@@ -0,0 +1,83 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件访问令牌签名与撤销测试
+ */
+public class FileAccessSessionManagerTest {
+
+    private final FileAccessSessionManager manager =
+            new FileAccessSessionManager("k1:secret-1,k2:secret-2", "k2", 60);
+
+    @Test
+    public void testSignAndVerify() {
+        String token = manager.createAccessToken(42L, "user:1", 10);
+        FileAccessSessionManager.FileAccessSession session = manager.validateToken(token);
+        assertNotNull(session);
+        assertEquals(42L, session.getFileId());
+        assertEquals("user:1", session.getUserId(), "用户ID中的分隔符不影响解析");
+
+        // 其他节点使用相同密钥即可校验
+        FileAccessSessionManager other = new FileAccessSessionManager("k2:secret-2", "k2", 60);
+        assertNotNull(other.validateToken(token));
+        FileAccessSessionManager wrongKey = new FileAccessSessionManager("k2:another", "k2", 60);
+        assertNull(wrongKey.validateToken(token));
+    }
+
+    @Test
+    public void testTamperedToken() {
+        String token = manager.createAccessToken(42L, null, 10);
+        // 篡改载荷中的文件ID
+        String payload = new String(java.util.Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        String forged = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replace(":42:", ":43:").getBytes());
+        String tampered = forged + token.substring(token.indexOf('.'));
+        assertNull(manager.validateToken(tampered));
+        assertNull(manager.validateToken("not-a-token"));
+        assertNull(manager.validateToken(null));
+    }
+
+    @Test
+    public void testRevocation() throws Exception {
+        String token = manager.createAccessToken(7L, null, 10);
+        String sibling = manager.createAccessToken(7L, null, 10);
+        FileAccessSessionManager.FileAccessSession session = manager.validateToken(token);
+        FileTransferUtil.TransferGuard guard = manager.transferGuard(session);
+        assertTrue(guard.allow(1));
+
+        assertTrue(manager.applyTokenRevocation(session.getTokenId(), session.getExpiresAtMillis()));
+        assertFalse(guard.allow(1), "传输中的请求在下一个切片前停止");
+        assertNull(manager.validateToken(token));
+        assertNotNull(manager.validateToken(sibling));
+
+        manager.applyFileRevocation(7L, System.currentTimeMillis());
+        assertNull(manager.validateToken(sibling));
+        Thread.sleep(2);
+        assertNotNull(manager.validateToken(manager.createAccessToken(7L, null, 10)), "撤销之后签发的令牌仍然有效");
+    }
+
+    @Test
+    public void testCleanupOnlyExpired() {
+        long now = System.currentTimeMillis();
+        manager.applyTokenRevocation("expired", now - 1);
+        manager.applyTokenRevocation("active", now + 60_000);
+        manager.applyFileRevocation(1L, now - 61 * 60_000L);
+        manager.applyFileRevocation(2L, now);
+
+        assertEquals(2, manager.cleanupExpiredTokens());
+        assertEquals(1, manager.getRevokedTokenCount());
+        assertEquals(0, manager.cleanupExpiredTokens());
+    }
+
+    @Test
+    public void testPlaceholderKeyRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new FileAccessSessionManager("k1:change-me-to-a-long-random-secret", "k1", 60));
+        // 未配置密钥时使用随机密钥，仍可在本节点签发和校验
+        FileAccessSessionManager local = new FileAccessSessionManager("", "", 60);
+        assertNotNull(local.validateToken(local.createAccessToken(1L, "u1", 10)));
+    }
+}
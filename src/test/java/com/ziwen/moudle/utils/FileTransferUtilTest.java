@@ -0,0 +1,244 @@
+package com.ziwen.moudle.utils;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件传输工具测试（含与原 byte[] 循环的吞吐量对比，默认不运行）
+ */
+public class FileTransferUtilTest {
+
+    private static final int TEST_FILE_SIZE = 32 * 1024 * 1024;
+
+    private static Path testFile;
+
+    @BeforeAll
+    public static void createTestFile() throws IOException {
+        testFile = Files.createTempFile("transfer-test", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        try (OutputStream os = Files.newOutputStream(testFile)) {
+            for (int i = 0; i < TEST_FILE_SIZE / block.length; i++) {
+                os.write(block);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void deleteTestFile() throws IOException {
+        Files.deleteIfExists(testFile);
+    }
+
+    @Test
+    public void testServletOutputStreamRange() throws IOException {
+        // 内存映射路径：跨越多个映射窗口的区间
+        long position = 3 * 1024 * 1024 + 7;
+        long count = 20 * 1024 * 1024 + 13;
+        CrcServletOutputStream os = new CrcServletOutputStream();
+
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            long written = FileTransferUtil.transfer(channel, position, count, os, FileTransferUtil.TransferGuard.NONE);
+            assertEquals(count, written, "应写出完整区间");
+        }
+        assertEquals(expectedCrc(position, count), os.crc.getValue(), "写出内容应与文件区间一致");
+    }
+
+    @Test
+    public void testPlainOutputStreamRange() throws IOException {
+        // transferTo 路径
+        long position = 1000;
+        long count = 700_000;
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            long written = FileTransferUtil.transfer(channel, position, count, os, FileTransferUtil.TransferGuard.NONE);
+            assertEquals(count, written);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(os.toByteArray());
+        assertEquals(expectedCrc(position, count), crc.getValue());
+    }
+
+    @Test
+    public void testGuardAbortsTransfer() throws IOException {
+        CrcServletOutputStream os = new CrcServletOutputStream();
+        int[] calls = {0};
+
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            // 第三个切片前撤销
+            long written = FileTransferUtil.transfer(channel, 0, channel.size(), os, bytes -> ++calls[0] < 3);
+            assertEquals(2L * FileTransferUtil.SLICE_SIZE, written, "守卫拒绝后应立即停止");
+        }
+    }
+
+    @Test
+    public void testCountBeyondEndOfFile() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            long written = FileTransferUtil.transfer(channel, TEST_FILE_SIZE - 10, 100, os,
+                    FileTransferUtil.TransferGuard.NONE);
+            assertEquals(10, written, "超出文件末尾的部分不应输出");
+            assertEquals(0, FileTransferUtil.transfer(channel, TEST_FILE_SIZE + 1, 100, os,
+                    FileTransferUtil.TransferGuard.NONE));
+        }
+    }
+
+    /**
+     * 吞吐量对比：默认跳过，需要复现时去掉 @Disabled 后运行
+     * mvn test -Dtest=FileTransferUtilTest#testThroughputComparedWithByteArrayLoop
+     */
+    @Test
+    @Disabled("吞吐量基准测试，手动运行")
+    public void testThroughputComparedWithByteArrayLoop() throws IOException {
+        int rounds = 5;
+
+        // 预热
+        legacyLoop();
+        mappedTransfer();
+
+        long legacyNanos = 0;
+        long mappedNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            legacyNanos += legacyLoop();
+            mappedNanos += mappedTransfer();
+        }
+
+        double totalMb = (double) TEST_FILE_SIZE * rounds / (1024 * 1024);
+        System.out.println("byte[] 循环(16KB): " + String.format("%.1f", totalMb / (legacyNanos / 1e9)) + " MB/s");
+        System.out.println("FileTransferUtil: " + String.format("%.1f", totalMb / (mappedNanos / 1e9)) + " MB/s");
+    }
+
+    /**
+     * 原 accessFile 的实现：16KB 堆缓冲区循环读写
+     */
+    private long legacyLoop() throws IOException {
+        ByteArraySink sink = new ByteArraySink();
+        long start = System.nanoTime();
+        try (FileInputStream fis = new FileInputStream(testFile.toFile())) {
+            byte[] buffer = new byte[1024 * 16];
+            int len;
+            while ((len = fis.read(buffer)) != -1) {
+                sink.write(buffer, 0, len);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(TEST_FILE_SIZE, sink.count);
+        return elapsed;
+    }
+
+    private long mappedTransfer() throws IOException {
+        ByteBufferSink sink = new ByteBufferSink();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            FileTransferUtil.transfer(channel, 0, channel.size(), sink, FileTransferUtil.TransferGuard.NONE);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(TEST_FILE_SIZE, sink.count);
+        return elapsed;
+    }
+
+    private long expectedCrc(long position, long count) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) count);
+            channel.read(buffer, position);
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 模拟容器输出流：校验写出内容
+     */
+    private static class CrcServletOutputStream extends AbstractServletOutputStream {
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        public void write(int b) {
+            crc.update(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            crc.update(buffer);
+        }
+    }
+
+    /**
+     * 模拟容器输出流：ByteBuffer 写入容器的直接内存缓冲区
+     */
+    private static class ByteBufferSink extends AbstractServletOutputStream {
+        private final ByteBuffer socketBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                socketBuffer.clear();
+                int len = Math.min(socketBuffer.remaining(), buffer.remaining());
+                socketBuffer.put(buffer.slice(buffer.position(), len));
+                buffer.position(buffer.position() + len);
+                count += len;
+            }
+        }
+    }
+
+    /**
+     * 模拟容器输出流：byte[] 写入容器缓冲区
+     */
+    private static class ByteArraySink extends AbstractServletOutputStream {
+        private final byte[] socketBuffer = new byte[64 * 1024];
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, socketBuffer, 0, len);
+            count += len;
+        }
+    }
+
+    private abstract static class AbstractServletOutputStream extends ServletOutputStream {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 冷存储归档压缩工具类测试
+ */
+public class GzipArchiverTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void testRoundTripCompressesText() throws Exception {
+        File source = new File(dir, "a.txt");
+        Files.write(source.toPath(), "hello cold storage\n".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        File archive = new File(dir, "a.gz");
+        File restored = new File(dir, "a.restored");
+
+        long archivedSize = GzipArchiver.compress(source, archive, GzipArchiver.levelFor("text/plain"));
+        assertEquals(archive.length(), archivedSize);
+        assertTrue(archivedSize < source.length() / 10);
+        assertEquals(source.length(), GzipArchiver.decompress(archive, restored));
+        assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(restored.toPath()));
+    }
+
+    @Test
+    public void testStoresPrecompressedContent() throws Exception {
+        byte[] data = new byte[300_000];
+        new Random(1).nextBytes(data);
+        File source = new File(dir, "b.mp4");
+        Files.write(source.toPath(), data);
+        File archive = new File(dir, "b.gz");
+        File restored = new File(dir, "b.restored");
+
+        assertEquals(Deflater.NO_COMPRESSION, GzipArchiver.levelFor("video/mp4"));
+        long archivedSize = GzipArchiver.compress(source, archive, GzipArchiver.levelFor("video/mp4"));
+        // 仅存储：只多出 gzip 头尾和块头
+        assertTrue(archivedSize > data.length && archivedSize < data.length + 1024);
+        GzipArchiver.decompress(archive, restored);
+        assertArrayEquals(data, Files.readAllBytes(restored.toPath()));
+    }
+}
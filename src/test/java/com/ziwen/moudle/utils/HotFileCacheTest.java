@@ -0,0 +1,88 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点小文件缓存测试
+ */
+public class HotFileCacheTest {
+
+    private Path dir;
+
+    @BeforeEach
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("hot-cache");
+    }
+
+    @AfterEach
+    public void deleteDir() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testHitAndContent() throws IOException {
+        HotFileCache cache = new HotFileCache(1024, 16);
+        File file = write("a", "0123456789");
+
+        assertEquals("0123456789", read(cache.open(file), 0, 100));
+        assertEquals("345", read(cache.open(file), 3, 3));
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+        assertNull(cache.open(write("big", "01234567890123456789")), "超出单文件上限不缓存");
+    }
+
+    @Test
+    public void testLruEviction() throws IOException {
+        HotFileCache cache = new HotFileCache(20, 10);
+        File a = write("a", "aaaaaaaaaa");
+        File b = write("b", "bbbbbbbbbb");
+        File c = write("c", "cccccccccc");
+
+        cache.open(a);
+        cache.open(b);
+        cache.open(a);
+        cache.open(c);
+        assertEquals(1L, cache.getStats().get("evictions"));
+
+        cache.open(a);
+        assertEquals(2L, cache.getStats().get("hits"), "最近访问的 a 保留，淘汰 b");
+    }
+
+    @Test
+    public void testModifiedFileReloaded() throws IOException {
+        HotFileCache cache = new HotFileCache(1024, 16);
+        File file = write("a", "old");
+        cache.open(file);
+
+        Files.writeString(file.toPath(), "newer", StandardCharsets.US_ASCII);
+        assertEquals("newer", read(cache.open(file), 0, 100));
+        assertEquals(5L, cache.getStats().get("usedBytes"));
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path path = dir.resolve(name);
+        Files.writeString(path, content, StandardCharsets.US_ASCII);
+        return path.toFile();
+    }
+
+    private String read(FileContentSource source, long position, long count) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        source.transferTo(position, count, os, FileTransferUtil.TransferGuard.NONE);
+        return os.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP Range 工具测试
+ */
+public class HttpRangeUtilTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    private Path file;
+
+    @BeforeEach
+    public void createFile() throws IOException {
+        file = Files.createTempFile("range", ".txt");
+        Files.writeString(file, CONTENT);
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testResolveRanges() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertTrue(HttpRangeUtil.resolveRanges(request, "\"e\"", 0, 20).isEmpty(), "无 Range 头返回完整内容");
+
+        request.addHeader("Range", "bytes=5-9, -3");
+        List<HttpRangeUtil.ByteRange> ranges = HttpRangeUtil.resolveRanges(request, "\"e\"", 0, 20);
+        assertEquals(2, ranges.size());
+        assertEquals(5, ranges.get(0).getStart());
+        assertEquals(9, ranges.get(0).getEnd());
+        assertEquals(17, ranges.get(1).getStart());
+        assertEquals(19, ranges.get(1).getEnd());
+    }
+
+    @Test
+    public void testIfRange() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-4");
+        request.addHeader("If-Range", "\"old\"");
+        assertTrue(HttpRangeUtil.resolveRanges(request, "\"new\"", 0, 20).isEmpty(), "实体标签不匹配时返回完整内容");
+
+        MockHttpServletRequest matched = new MockHttpServletRequest();
+        matched.addHeader("Range", "bytes=0-4");
+        matched.addHeader("If-Range", "\"new\"");
+        assertEquals(1, HttpRangeUtil.resolveRanges(matched, "\"new\"", 0, 20).size());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=30-40");
+        assertThrows(IllegalArgumentException.class, () -> HttpRangeUtil.resolveRanges(request, "\"e\"", 0, 20));
+    }
+
+    @Test
+    public void testMalformedRangeIsIgnored() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=abc");
+        assertTrue(HttpRangeUtil.resolveRanges(request, "\"e\"", 0, 20).isEmpty(), "语法错误的 Range 应返回完整内容");
+
+        MockHttpServletRequest partial = new MockHttpServletRequest();
+        partial.addHeader("Range", "bytes=30-40, 0-4");
+        List<HttpRangeUtil.ByteRange> ranges = HttpRangeUtil.resolveRanges(partial, "\"e\"", 0, 20);
+        assertEquals(1, ranges.size(), "只保留可满足的区间");
+        assertEquals(0, ranges.get(0).getStart());
+    }
+
+    @Test
+    public void testWriteSingleRange() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try (FileContentSource source = new SingleFileSource(file.toFile())) {
+            assertTrue(HttpRangeUtil.writeRanges(response, source, 20, "text/plain",
+                    List.of(new HttpRangeUtil.ByteRange(10, 14)), FileTransferUtil.TransferGuard.NONE));
+        }
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-14/20", response.getHeader("Content-Range"));
+        assertEquals("abcde", response.getContentAsString());
+    }
+
+    @Test
+    public void testWriteMultipleRanges() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try (FileContentSource source = new SingleFileSource(file.toFile())) {
+            assertTrue(HttpRangeUtil.writeRanges(response, source, 20, "text/plain",
+                    List.of(new HttpRangeUtil.ByteRange(0, 1), new HttpRangeUtil.ByteRange(18, 19)),
+                    FileTransferUtil.TransferGuard.NONE));
+        }
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.US_ASCII);
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+        assertTrue(body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 18-19/20\r\n\r\nij\r\n"));
+    }
+
+    @Test
+    public void testMultipartPartsDefaultContentType() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try (FileContentSource source = new SingleFileSource(file.toFile())) {
+            HttpRangeUtil.writeRanges(response, source, 20, null,
+                    List.of(new HttpRangeUtil.ByteRange(0, 1), new HttpRangeUtil.ByteRange(18, 19)),
+                    FileTransferUtil.TransferGuard.NONE);
+        }
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.US_ASCII);
+        assertFalse(body.contains("Content-Type: null"));
+        assertTrue(body.contains("Content-Type: application/octet-stream\r\n"));
+    }
+
+    @Test
+    public void testAcceptsEncoding() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertFalse(HttpRangeUtil.acceptsEncoding(request, "gzip"), "无 Accept-Encoding 不压缩");
+
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        assertTrue(HttpRangeUtil.acceptsEncoding(request, "gzip"));
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "br;q=1.0, GZIP;q=0");
+        assertFalse(HttpRangeUtil.acceptsEncoding(request, "gzip"), "q=0 表示拒绝");
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "identity, *;q=0.5");
+        assertTrue(HttpRangeUtil.acceptsEncoding(request, "gzip"));
+
+        assertEquals("\"abc-gzip\"", HttpRangeUtil.encodedEtag("\"abc\"", "gzip"));
+    }
+}
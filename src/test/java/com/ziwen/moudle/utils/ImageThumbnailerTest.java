@@ -0,0 +1,88 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缩略图工具类测试
+ */
+public class ImageThumbnailerTest {
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static Map<Integer, BufferedImage> thumbnails(byte[] data, int... sizes) throws Exception {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            return ImageThumbnailer.thumbnails(input, sizes, 50_000_000L);
+        }
+    }
+
+    @Test
+    public void testSizesKeepAspectRatio() throws Exception {
+        BufferedImage source = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 2000, 3000);
+        g.dispose();
+
+        Map<Integer, BufferedImage> result = thumbnails(encode(source, "png"), 1024, 128);
+        assertEquals(1024, result.get(1024).getWidth());
+        assertEquals(768, result.get(1024).getHeight());
+        assertEquals(128, result.get(128).getWidth());
+        assertEquals(96, result.get(128).getHeight());
+        assertEquals("jpg", ImageThumbnailer.formatOf(result.get(128)));
+        // 左半红色、右半黑色
+        assertEquals(Color.RED.getRGB(), result.get(128).getRGB(10, 48));
+        assertEquals(Color.BLACK.getRGB(), result.get(128).getRGB(118, 48));
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageThumbnailer.write(result.get(1024), jpeg);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+        assertEquals(1024, decoded.getWidth());
+        assertEquals(768, decoded.getHeight());
+    }
+
+    @Test
+    public void testSmallAndTransparentImages() throws Exception {
+        BufferedImage source = new BufferedImage(60, 40, BufferedImage.TYPE_INT_ARGB);
+        Map<Integer, BufferedImage> result = thumbnails(encode(source, "png"), 128);
+        // 不放大
+        assertEquals(60, result.get(128).getWidth());
+        assertEquals(40, result.get(128).getHeight());
+        assertEquals("png", ImageThumbnailer.formatOf(result.get(128)));
+    }
+
+    @Test
+    public void testRejectsHugeImagesAndUnknownData() throws Exception {
+        byte[] png = encode(new BufferedImage(3000, 10, BufferedImage.TYPE_INT_RGB), "png");
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+            assertThrows(IOException.class, () -> ImageThumbnailer.thumbnails(input, new int[]{128}, 1000));
+        }
+        assertThrows(IOException.class, () -> thumbnails("not an image".getBytes(), 128));
+    }
+
+    @Test
+    public void testGeometry() {
+        assertArrayEquals(new int[]{320, 180}, ImageThumbnailer.fitWithin(1920, 1080, 320));
+        assertArrayEquals(new int[]{1, 320}, ImageThumbnailer.fitWithin(2, 5000, 320));
+        assertArrayEquals(new int[]{100, 50}, ImageThumbnailer.fitWithin(100, 50, 320));
+        assertEquals(4, ImageThumbnailer.subsampling(8000, 6000, 1500));
+        assertEquals(1, ImageThumbnailer.subsampling(100, 100, 2048));
+        assertTrue(ImageThumbnailer.isSupported("image/png"));
+        assertFalse(ImageThumbnailer.isSupported("video/mp4"));
+    }
+}
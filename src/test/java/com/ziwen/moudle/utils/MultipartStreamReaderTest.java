@@ -0,0 +1,82 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * multipart 流式解析器测试
+ */
+public class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @Test
+    public void testFieldsAndFile() throws IOException {
+        byte[] content = new byte[300_000];
+        new Random(42).nextBytes(content);
+        // 内容中夹带与分隔符相似的片段
+        byte[] fake = ("\r\n--" + BOUNDARY.substring(0, 20)).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(fake, 0, content, 1000, fake.length);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"desc\"\r\n\r\n"
+                + "说明\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"报告 1.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        // 每次最多返回 1000 字节，模拟网络分段到达
+        MultipartStreamReader reader = new MultipartStreamReader(trickle(body.toByteArray()), BOUNDARY);
+
+        MultipartStreamReader.Part field = reader.nextPart();
+        assertNotNull(field);
+        assertEquals("desc", field.getName());
+        assertFalse(field.isFile());
+        assertEquals("说明", field.readString(100));
+
+        MultipartStreamReader.Part file = reader.nextPart();
+        assertNotNull(file);
+        assertEquals("file", file.getName());
+        assertEquals("报告 1.pdf", file.getFileName());
+        assertEquals("application/pdf", file.getContentType());
+        assertArrayEquals(content, file.getInputStream().readAllBytes());
+
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    public void testSkipUnreadPartAndTruncatedBody() throws IOException {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n\r\n"
+                + "unread\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"b\"\r\n\r\n"
+                + "value";
+        MultipartStreamReader reader = new MultipartStreamReader(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.US_ASCII)), BOUNDARY);
+
+        assertEquals("a", reader.nextPart().getName());
+        MultipartStreamReader.Part b = reader.nextPart();
+        assertEquals("b", b.getName());
+        assertThrows(IOException.class, () -> b.getInputStream().readAllBytes(), "缺少结束边界");
+    }
+
+    private InputStream trickle(byte[] data) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * n-gram 索引测试
+ */
+public class NgramIndexTest {
+
+    @Test
+    public void testSubstringAndPrefix() {
+        NgramIndex index = new NgramIndex();
+        index.put(1, "Annual Report 2024.pdf");
+        index.put(2, "项目周报-第三周.docx");
+        index.put(3, "report-draft.txt");
+
+        assertEquals(List.of(3L, 1L), index.search("REPORT", false, 10), "不区分大小写，新文档在前");
+        assertEquals(List.of(3L), index.search("report", true, 10));
+        assertEquals(List.of(2L), index.search("周报", false, 10));
+        assertEquals(List.of(2L), index.search("周", false, 10), "单字查询");
+        assertEquals(List.of(2L), index.search("项目", true, 10));
+        assertTrue(index.search("周报告", false, 10).isEmpty());
+        assertTrue(index.search("rpt", false, 10).isEmpty());
+        assertEquals(List.of(3L), index.search("ｒｅｐｏｒｔ-", false, 10), "全角字符归一化");
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        NgramIndex index = new NgramIndex();
+        index.put(1, "old-name.txt");
+        index.put(1, "new-name.txt");
+        assertTrue(index.search("old", false, 10).isEmpty());
+        assertEquals(List.of(1L), index.search("new", false, 10));
+
+        index.remove(1);
+        assertTrue(index.search("name", false, 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testRebuildAfterManyDeletes() {
+        NgramIndex index = new NgramIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.put(i, "file-" + i + ".log");
+        }
+        for (int i = 0; i < 2000; i++) {
+            index.remove(i);
+        }
+        assertEquals(1000, index.size());
+        assertEquals(List.of(2999L), index.search("file-2999", true, 10));
+        assertEquals(List.of(2500L), index.search("-2500.", false, 10));
+        assertTrue(index.search("file-1999.", false, 10).isEmpty());
+        assertEquals(5, index.search(".log", false, 5).size());
+    }
+}
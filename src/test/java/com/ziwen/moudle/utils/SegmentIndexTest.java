@@ -0,0 +1,101 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段索引测试
+ */
+public class SegmentIndexTest {
+
+    private Path dir;
+    private File dataFile;
+
+    @BeforeEach
+    public void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("segment-index");
+        dataFile = dir.resolve("data.bin").toFile();
+        Files.writeString(dataFile.toPath(), "0123456789abcd", StandardCharsets.US_ASCII);
+    }
+
+    @AfterEach
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(SegmentIndex.indexFileOf(dataFile).toPath());
+        Files.deleteIfExists(dataFile.toPath());
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testBuildWriteRead() throws IOException {
+        SegmentIndex built = SegmentIndex.build(dataFile, 4);
+        assertEquals(4, built.getSegmentCount());
+        assertEquals(2, built.segmentLength(3), "最后一段不足段大小");
+
+        File indexFile = SegmentIndex.indexFileOf(dataFile);
+        built.write(indexFile);
+        SegmentIndex read = SegmentIndex.read(indexFile);
+        assertEquals(14, read.getDataLength());
+        for (int i = 0; i < built.getSegmentCount(); i++) {
+            assertEquals(built.segmentOffset(i), read.segmentOffset(i));
+            assertEquals(built.checksum(i), read.checksum(i));
+        }
+
+        assertEquals(0, read.segmentAt(0));
+        assertEquals(1, read.segmentAt(4));
+        assertEquals(2, read.segmentAt(11));
+        assertEquals(3, read.segmentAt(13));
+        assertEquals(-1, read.segmentAt(14));
+    }
+
+    @Test
+    public void testVerify() throws IOException {
+        SegmentIndex index = SegmentIndex.build(dataFile, 4);
+        assertEquals(-1, index.verify(dataFile));
+
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.seek(9);
+            raf.write('X');
+        }
+        assertEquals(2, index.verify(dataFile), "损坏位置所在的段");
+    }
+
+    @Test
+    public void testBuilderMatchesScan() throws IOException {
+        byte[] data = Files.readAllBytes(dataFile.toPath());
+        SegmentIndex.Builder builder = new SegmentIndex.Builder(4);
+        // 写入块与段边界不对齐
+        builder.update(data, 0, 3);
+        builder.update(data, 3, 6);
+        builder.update(data, 9, data.length - 9);
+        SegmentIndex built = builder.build();
+
+        SegmentIndex scanned = SegmentIndex.build(dataFile, 4);
+        assertEquals(scanned.getDataLength(), built.getDataLength());
+        assertEquals(scanned.getSegmentCount(), built.getSegmentCount());
+        for (int i = 0; i < scanned.getSegmentCount(); i++) {
+            assertEquals(scanned.checksum(i), built.checksum(i));
+        }
+    }
+
+    @Test
+    public void testMaxSegmentLength() {
+        assertEquals(4, SegmentIndex.of(4, 14, new int[4]).maxSegmentLength());
+        assertThrows(IllegalArgumentException.class,
+                () -> SegmentIndex.of(SegmentIndex.MAX_SEGMENT_SIZE + 1, 14, new int[1]), "段大小超过上限");
+    }
+
+    @Test
+    public void testChecksumCountMismatch() {
+        assertThrows(IllegalArgumentException.class, () -> SegmentIndex.of(4, 14, new int[3]));
+    }
+}
@@ -0,0 +1,71 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片文件内容源测试
+ */
+public class SegmentedFileSourceTest {
+
+    private Path dir;
+    private List<File> segments;
+
+    @BeforeEach
+    public void createSegments() throws IOException {
+        dir = Files.createTempDirectory("segments");
+        segments = new ArrayList<>();
+        // 包含一个空分片，验证定位时能跳过
+        String[] parts = {"0123", "4567", "", "89ab", "cd"};
+        for (int i = 0; i < parts.length; i++) {
+            Path part = dir.resolve(String.valueOf(i));
+            Files.writeString(part, parts[i]);
+            segments.add(part.toFile());
+        }
+    }
+
+    @AfterEach
+    public void deleteSegments() throws IOException {
+        for (File segment : segments) {
+            Files.deleteIfExists(segment.toPath());
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testFullContent() throws IOException {
+        try (SegmentedFileSource source = new SegmentedFileSource(segments)) {
+            assertEquals(14, source.length());
+            assertNull(source.singleFile());
+            assertEquals("0123456789abcd", read(source, 0, source.length()));
+        }
+    }
+
+    @Test
+    public void testRangesAcrossSegments() throws IOException {
+        try (SegmentedFileSource source = new SegmentedFileSource(segments)) {
+            assertEquals("3456", read(source, 3, 4), "跨越分片边界");
+            assertEquals("89", read(source, 8, 2), "从空分片之后的分片起点开始");
+            assertEquals("cd", read(source, 12, 100), "超出末尾时截断");
+            assertEquals("", read(source, 14, 10));
+        }
+    }
+
+    private String read(FileContentSource source, long position, long count) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        source.transferTo(position, count, os, FileTransferUtil.TransferGuard.NONE);
+        return os.toString(StandardCharsets.US_ASCII);
+    }
+}
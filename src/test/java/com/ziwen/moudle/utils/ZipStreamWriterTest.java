@@ -0,0 +1,110 @@
+package com.ziwen.moudle.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式 ZIP 写出测试（用 JDK 的 ZipFile 按中央目录读取、ZipInputStream 流式读取校验）
+ */
+public class ZipStreamWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testStoredAndDeflatedEntries() throws IOException {
+        byte[] text = "hello zip ".repeat(10000).getBytes(StandardCharsets.UTF_8);
+        byte[] binary = new byte[300_000];
+        new java.util.Random(1).nextBytes(binary);
+
+        File zipFile = tempDir.resolve("a.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(zipFile);
+             ZipStreamWriter zip = new ZipStreamWriter(fos)) {
+            OutputStream entry = zip.putEntry("说明.txt", ZipStreamWriter.DEFLATED, System.currentTimeMillis(), text.length);
+            entry.write(text);
+            zip.closeEntry();
+            entry = zip.putEntry("photo.jpg", ZipStreamWriter.STORED, System.currentTimeMillis(), binary.length);
+            entry.write(binary, 0, 1000);
+            entry.write(binary, 1000, binary.length - 1000);
+            zip.closeEntry();
+            // 大小未知的条目使用 ZIP64 本地头
+            entry = zip.putEntry("unknown.bin", ZipStreamWriter.DEFLATED, 0, -1);
+            entry.write(binary);
+            zip.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile, StandardCharsets.UTF_8)) {
+            assertEquals(3, zip.size());
+            ZipEntry textEntry = zip.getEntry("说明.txt");
+            assertEquals(ZipEntry.DEFLATED, textEntry.getMethod());
+            assertTrue(textEntry.getCompressedSize() < text.length / 10);
+            assertArrayEquals(text, zip.getInputStream(textEntry).readAllBytes());
+
+            // 不压缩的条目以 DEFLATE 无压缩块写出，只多出块头
+            ZipEntry binaryEntry = zip.getEntry("photo.jpg");
+            assertEquals(ZipEntry.DEFLATED, binaryEntry.getMethod());
+            assertTrue(binaryEntry.getCompressedSize() - binary.length < 100);
+            assertArrayEquals(binary, zip.getInputStream(binaryEntry).readAllBytes());
+
+            assertArrayEquals(binary, zip.getInputStream(zip.getEntry("unknown.bin")).readAllBytes());
+        }
+    }
+
+    @Test
+    public void testStreamingRead() throws IOException {
+        byte[] text = "hello zip ".repeat(10000).getBytes(StandardCharsets.UTF_8);
+        byte[] binary = new byte[300_000];
+        new java.util.Random(2).nextBytes(binary);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipStreamWriter zip = new ZipStreamWriter(bytes)) {
+            zip.putEntry("photo.jpg", ZipStreamWriter.STORED, System.currentTimeMillis(), binary.length).write(binary);
+            zip.putEntry("说明.txt", ZipStreamWriter.DEFLATED, System.currentTimeMillis(), text.length).write(text);
+            zip.putEntry("empty", ZipStreamWriter.STORED, 0, 0);
+            zip.finish();
+        }
+
+        // 流式读取只能依靠条目数据自身定位条目结尾
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8)) {
+            assertEquals("photo.jpg", in.getNextEntry().getName());
+            assertArrayEquals(binary, in.readAllBytes());
+            assertEquals("说明.txt", in.getNextEntry().getName());
+            assertArrayEquals(text, in.readAllBytes());
+            assertEquals("empty", in.getNextEntry().getName());
+            assertEquals(0, in.readAllBytes().length);
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    public void testZip64EndRecordForManyEntries() throws IOException {
+        int count = 70_000;
+        File zipFile = tempDir.resolve("many.zip").toFile();
+        try (OutputStream fos = new java.io.BufferedOutputStream(new FileOutputStream(zipFile));
+             ZipStreamWriter zip = new ZipStreamWriter(fos)) {
+            for (int i = 0; i < count; i++) {
+                zip.putEntry("f" + i, ZipStreamWriter.STORED, 0, 1).write('a' + i % 26);
+            }
+            zip.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(count, zip.size());
+            assertEquals('a' + 69_999 % 26, zip.getInputStream(zip.getEntry("f69999")).read());
+        }
+    }
+}